@@ -0,0 +1,226 @@
+package com.offbynull.peernetic;
+
+import com.offbynull.peernetic.actor.Actor;
+import com.offbynull.peernetic.actor.Cancellable;
+import com.offbynull.peernetic.actor.Endpoint;
+import com.offbynull.peernetic.actor.EndpointScheduler;
+import io.netty.channel.EventLoop;
+import io.netty.util.concurrent.Future;
+import io.netty.util.concurrent.ScheduledFuture;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.apache.commons.lang3.Validate;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+// Runs actors directly on a Netty event loop rather than on an ActorRunnable thread. Pass the same event loop to the gateway (e.g.
+// UdpGateway accepts an EventLoop as its EventLoopGroup) and wire the gateway up with a GatewayInputAdapter pointing at one of the actors
+// here, and inbound messages get decoded and handled on the loop thread in one go -- no queue, no lock, no thread hop.
+//
+// Sends made on the event loop thread are handled right away, unless an actor is already being stepped, in which case they're queued up and
+// handled once that step returns (actors never re-enter themselves). Sends from any other thread are handed to the loop as tasks. Messages
+// scheduled through getEndpointScheduler() are backed by the loop's own scheduled tasks, so they fire on the loop thread as well.
+//
+// Anything running on the loop holds up I/O for every channel on it, so this is only a good fit for actors that step quickly.
+public final class EventLoopActorHost {
+
+    private static final Logger LOG = LoggerFactory.getLogger(EventLoopActorHost.class);
+
+    private final EventLoop eventLoop;
+    private final Map<Actor, HostedEndpoint> endpoints;
+    private final ArrayDeque<Object> queue; // endpoint/source/message triples, only touched by loop thread
+    private final InternalScheduler scheduler;
+    private boolean dispatching; // only touched by loop thread
+    private volatile boolean shutdown;
+
+    public static EventLoopActorHost createAndStart(EventLoop eventLoop, Actor... actors) {
+        EventLoopActorHost host = new EventLoopActorHost(eventLoop, actors);
+        host.eventLoop.execute(host::startActors);
+        return host;
+    }
+
+    private EventLoopActorHost(EventLoop eventLoop, Actor... actors) {
+        Validate.notNull(eventLoop);
+        Validate.noNullElements(actors);
+        Validate.isTrue(actors.length > 0);
+
+        this.eventLoop = eventLoop;
+        Map<Actor, HostedEndpoint> endpointMap = new IdentityHashMap<>();
+        for (Actor actor : actors) {
+            Validate.isTrue(endpointMap.put(actor, new HostedEndpoint(actor)) == null, "Duplicate actor");
+        }
+        this.endpoints = Collections.unmodifiableMap(endpointMap);
+        this.queue = new ArrayDeque<>();
+        this.scheduler = new InternalScheduler();
+    }
+
+    public EventLoop getEventLoop() {
+        return eventLoop;
+    }
+
+    public Endpoint getEndpoint(Actor actor) {
+        Validate.notNull(actor);
+        HostedEndpoint endpoint = endpoints.get(actor);
+        Validate.isTrue(endpoint != null, "Actor not hosted here");
+        return endpoint;
+    }
+
+    // scheduled messages fire on the event loop thread
+    public EndpointScheduler getEndpointScheduler() {
+        return scheduler;
+    }
+
+    public void shutdown() {
+        if (shutdown) {
+            return;
+        }
+        shutdown = true;
+
+        if (eventLoop.inEventLoop()) {
+            stopActors();
+            return;
+        }
+
+        Future<?> future = eventLoop.submit(this::stopActors);
+        future.awaitUninterruptibly();
+        if (!future.isSuccess()) {
+            LOG.error("Unable to stop actors on event loop", future.cause());
+        }
+    }
+
+    private void startActors() {
+        for (HostedEndpoint endpoint : endpoints.values()) {
+            if (!endpoint.started) {
+                startActor(endpoint);
+            }
+        }
+    }
+
+    private void startActor(HostedEndpoint endpoint) {
+        endpoint.started = true;
+        try {
+            endpoint.actor.onStart(Instant.now());
+            endpoint.active = true;
+        } catch (Exception e) {
+            LOG.error("Actor encountered an error on start", e);
+            stopActor(endpoint);
+        }
+    }
+
+    private void stopActors() {
+        queue.clear();
+        for (HostedEndpoint endpoint : endpoints.values()) {
+            if (endpoint.active) {
+                stopActor(endpoint);
+            }
+        }
+    }
+
+    private void stopActor(HostedEndpoint endpoint) {
+        endpoint.active = false;
+        try {
+            endpoint.actor.onStop(Instant.now());
+        } catch (Exception e) {
+            LOG.error("Actor encountered an error on stop", e);
+        }
+    }
+
+    // only called on loop thread
+    private void dispatch(HostedEndpoint endpoint, Endpoint source, Object message) {
+        queue.add(endpoint);
+        queue.add(source);
+        queue.add(message);
+        if (dispatching) {
+            return; // called from inside a step, picked up by the loop below once the step returns
+        }
+
+        dispatching = true;
+        try {
+            Object next;
+            while ((next = queue.poll()) != null) {
+                stepActor((HostedEndpoint) next, (Endpoint) queue.poll(), queue.poll());
+            }
+        } finally {
+            dispatching = false;
+        }
+    }
+
+    private void stepActor(HostedEndpoint endpoint, Endpoint source, Object message) {
+        if (shutdown) {
+            return;
+        }
+
+        if (!endpoint.started) {
+            startActor(endpoint); // message raced ahead of the start task
+        }
+
+        if (!endpoint.active) {
+            return;
+        }
+
+        try {
+            endpoint.actor.onStep(Instant.now(), source, message);
+        } catch (Exception e) {
+            LOG.error("Actor encountered an error on run", e);
+            stopActor(endpoint);
+        }
+    }
+
+    private final class HostedEndpoint implements Endpoint {
+        private final Actor actor;
+        private boolean started; // only touched by loop thread
+        private boolean active; // only touched by loop thread
+
+        public HostedEndpoint(Actor actor) {
+            this.actor = actor;
+        }
+
+        @Override
+        public void send(Endpoint source, Object message) {
+            Validate.notNull(source);
+            Validate.notNull(message);
+
+            if (eventLoop.inEventLoop()) {
+                dispatch(this, source, message);
+            } else {
+                eventLoop.execute(() -> dispatch(this, source, message));
+            }
+        }
+
+        @Override
+        public String toString() {
+            return "HostedEndpoint{" + "actor=" + actor + '}';
+        }
+    }
+
+    private final class InternalScheduler implements EndpointScheduler {
+
+        @Override
+        public Cancellable scheduleMessage(Duration delay, Endpoint source, Endpoint destination, Object message) {
+            Validate.notNull(delay);
+            Validate.notNull(source);
+            Validate.notNull(destination);
+            Validate.notNull(message);
+            Validate.isTrue(!delay.isNegative());
+
+            ScheduledFuture<?> future = eventLoop.schedule(() -> {
+                try {
+                    destination.send(source, message);
+                } catch (RuntimeException re) {
+                    LOG.error("Unable to deliver scheduled message", re);
+                }
+            }, delay.toNanos(), TimeUnit.NANOSECONDS);
+            return () -> future.cancel(false);
+        }
+
+        @Override
+        public void close() throws Exception {
+            // do nothing, timers are owned by the event loop
+        }
+    }
+}
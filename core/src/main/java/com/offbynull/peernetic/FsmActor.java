@@ -7,12 +7,14 @@ import java.time.Instant;
 import org.apache.commons.lang3.Validate;
 
 public final class FsmActor implements Actor {
+    private final Object object;
     private final FiniteStateMachine<Endpoint> fsm;
 
     public FsmActor(Object object, String initialState) {
         Validate.notNull(object);
         Validate.notNull(initialState);
         
+        this.object = object;
         this.fsm = new FiniteStateMachine<>(object, initialState, Endpoint.class);
     }
 
@@ -31,4 +33,9 @@ public final class FsmActor implements Actor {
     public void onStop(Instant time) throws Exception {
         // do nothing
     }
+
+    @Override
+    public String toString() {
+        return "FsmActor{" + "object=" + object.getClass().getSimpleName() + '}';
+    }
 }
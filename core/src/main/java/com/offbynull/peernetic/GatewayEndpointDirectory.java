@@ -7,15 +7,22 @@ import org.apache.commons.lang3.Validate;
 
 public final class GatewayEndpointDirectory<A> implements EndpointDirectory<A> {
     private Gateway<A> gateway;
+    private GatewayOutputEndpointCache<A> endpointCache;
 
     public GatewayEndpointDirectory(Gateway<A> gateway) {
+        this(gateway, new GatewayOutputEndpointCache<>());
+    }
+
+    public GatewayEndpointDirectory(Gateway<A> gateway, GatewayOutputEndpointCache<A> endpointCache) {
         Validate.notNull(gateway);
+        Validate.notNull(endpointCache);
         this.gateway = gateway;
+        this.endpointCache = endpointCache;
     }
     
     @Override
     public Endpoint lookup(A id) {
-        return new GatewayOutputEndpoint<>(gateway, id);
+        return endpointCache.get(gateway, id);
     }
     
 }
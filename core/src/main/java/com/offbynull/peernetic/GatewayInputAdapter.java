@@ -7,11 +7,19 @@ import org.apache.commons.lang3.Validate;
 
 public final class GatewayInputAdapter<A> implements GatewayListener<A> {
     private final Endpoint endpoint;
+    private final GatewayOutputEndpointCache<A> endpointCache;
 
     public GatewayInputAdapter(Endpoint endpoint) {
+        this(endpoint, new GatewayOutputEndpointCache<>());
+    }
+
+    // pass in the same cache as the gateway's GatewayEndpointDirectory so that source endpoints are the same objects it hands out
+    public GatewayInputAdapter(Endpoint endpoint, GatewayOutputEndpointCache<A> endpointCache) {
         Validate.notNull(endpoint);
+        Validate.notNull(endpointCache);
         
         this.endpoint = endpoint;
+        this.endpointCache = endpointCache;
     }
     
 
@@ -20,7 +28,7 @@ public final class GatewayInputAdapter<A> implements GatewayListener<A> {
         Validate.notNull(incomingMessage);
         
         endpoint.send(
-                new GatewayOutputEndpoint(incomingMessage.getGateway(), incomingMessage.getRemoteAddress()),
+                endpointCache.get(incomingMessage.getGateway(), incomingMessage.getRemoteAddress()),
                 incomingMessage.getMessage());
     }
 }
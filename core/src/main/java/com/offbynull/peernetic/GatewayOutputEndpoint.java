@@ -32,6 +32,9 @@ public final class GatewayOutputEndpoint<A> implements Endpoint {
 
     @Override
     public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
         if (obj == null) {
             return false;
         }
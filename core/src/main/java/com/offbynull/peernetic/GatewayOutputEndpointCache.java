@@ -0,0 +1,72 @@
+package com.offbynull.peernetic;
+
+import com.offbynull.peernetic.network.Gateway;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import org.apache.commons.collections4.map.LRUMap;
+import org.apache.commons.lang3.Validate;
+
+// Hands out one GatewayOutputEndpoint per gateway/address pair, so the same peer is represented by the same object (equality checks
+// short-circuit on identity and nothing gets allocated per incoming message or lookup). Share one instance between the
+// GatewayInputAdapter and GatewayEndpointDirectory of a gateway to get the same objects on both the read and the write side.
+//
+// Each gateway gets a bounded LRU of addresses split over a fixed number of stripes, each with its own lock, so threads reading from or
+// writing to different peers rarely contend. Endpoints are held strongly until their address falls out of the LRU, after which the next
+// lookup for that address hands out a new (but equal) endpoint. Call remove() once a gateway is closed to let go of its endpoints.
+public final class GatewayOutputEndpointCache<A> {
+
+    public static final int DEFAULT_MAX_ADDRESSES_PER_GATEWAY = 4096;
+
+    private static final int STRIPE_COUNT = 16; // power of 2
+
+    private final int maxAddressesPerStripe;
+    private final ConcurrentMap<Gateway<A>, List<LRUMap<A, GatewayOutputEndpoint<A>>>> caches;
+
+    public GatewayOutputEndpointCache() {
+        this(DEFAULT_MAX_ADDRESSES_PER_GATEWAY);
+    }
+
+    public GatewayOutputEndpointCache(int maxAddressesPerGateway) {
+        Validate.isTrue(maxAddressesPerGateway >= STRIPE_COUNT);
+
+        this.maxAddressesPerStripe = maxAddressesPerGateway / STRIPE_COUNT;
+        this.caches = new ConcurrentHashMap<>();
+    }
+
+    public GatewayOutputEndpoint<A> get(Gateway<A> gateway, A address) {
+        Validate.notNull(gateway);
+        Validate.notNull(address);
+
+        List<LRUMap<A, GatewayOutputEndpoint<A>>> stripes = caches.get(gateway);
+        if (stripes == null) {
+            stripes = caches.computeIfAbsent(gateway, x -> createStripes());
+        }
+
+        int hash = address.hashCode();
+        hash ^= hash >>> 16;
+        LRUMap<A, GatewayOutputEndpoint<A>> stripe = stripes.get(hash & (STRIPE_COUNT - 1));
+        synchronized (stripe) { // LRUMap.get moves the entry to the front, so even a hit needs the lock
+            GatewayOutputEndpoint<A> endpoint = stripe.get(address);
+            if (endpoint == null) {
+                endpoint = new GatewayOutputEndpoint<>(gateway, address);
+                stripe.put(address, endpoint);
+            }
+            return endpoint;
+        }
+    }
+
+    public void remove(Gateway<A> gateway) {
+        Validate.notNull(gateway);
+        caches.remove(gateway);
+    }
+
+    private List<LRUMap<A, GatewayOutputEndpoint<A>>> createStripes() {
+        List<LRUMap<A, GatewayOutputEndpoint<A>>> stripes = new ArrayList<>(STRIPE_COUNT);
+        for (int i = 0; i < STRIPE_COUNT; i++) {
+            stripes.add(new LRUMap<>(maxAddressesPerStripe));
+        }
+        return stripes;
+    }
+}
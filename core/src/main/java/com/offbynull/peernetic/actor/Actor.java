@@ -1,10 +1,17 @@
 package com.offbynull.peernetic.actor;
 
 import java.time.Instant;
+import java.util.List;
 
 @FunctionalInterface
 public interface Actor {
     default void onStart(Instant time) throws Exception { };
     void onStep(Instant time, Endpoint source, Object message) throws Exception;
+    // Called with a run of messages for this actor, in the order they arrived. ActorRunnable only calls this for BatchActors.
+    default void onStepBatch(Instant time, List<Envelope> envelopes) throws Exception {
+        for (Envelope envelope : envelopes) {
+            onStep(time, envelope.getSource(), envelope.getMessage());
+        }
+    }
     default void onStop(Instant time) throws Exception { };
 }
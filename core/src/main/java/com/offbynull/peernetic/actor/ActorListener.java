@@ -0,0 +1,9 @@
+package com.offbynull.peernetic.actor;
+
+// Told when an actor comes or goes from an ActorRunnable/ActorRunnableGroup, see ActorMetricsJmx. May be called from any thread, including
+// actor threads, so implementations must be thread-safe and mustn't block.
+interface ActorListener {
+    void actorAdded(ActorMetrics actorMetrics);
+
+    void actorRemoved(ActorMetrics actorMetrics);
+}
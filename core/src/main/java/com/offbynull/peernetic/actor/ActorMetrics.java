@@ -0,0 +1,141 @@
+package com.offbynull.peernetic.actor;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import org.apache.commons.collections4.list.UnmodifiableList;
+import org.apache.commons.lang3.Validate;
+
+public final class ActorMetrics implements ActorMetricsMXBean {
+
+    private static final int SLOW_STEP_LOG_SIZE = 16;
+
+    private final String actorName;
+    private final MailboxCounters mailboxCounters;
+    private final LogHistogram stepLatency;
+    private final RateCounter processed;
+    private final AtomicLong busyNanos;
+    private final SlowStepLog slowSteps;
+
+    ActorMetrics(String actorName, MailboxCounters mailboxCounters) {
+        Validate.notNull(actorName);
+        Validate.notNull(mailboxCounters);
+
+        this.actorName = actorName;
+        this.mailboxCounters = mailboxCounters;
+        this.stepLatency = new LogHistogram();
+        this.processed = new RateCounter();
+        this.busyNanos = new AtomicLong();
+        this.slowSteps = new SlowStepLog(actorName, SLOW_STEP_LOG_SIZE);
+    }
+
+    // only ever called by the thread currently hosting the actor -- when an actor migrates, the handoff happens-before the new thread's
+    // first call
+    void recordStep(long endNanoTime, long durationNanos, int count) {
+        stepLatency.record(durationNanos);
+        processed.record(endNanoTime, count);
+        busyNanos.lazySet(busyNanos.get() + durationNanos);
+    }
+
+    // same threading rules as recordStep, message is the one being handled (first one of the batch for onStepBatch)
+    void sampleStep(Instant time, Object message, long durationNanos) {
+        slowSteps.recordStep(time, message, durationNanos);
+    }
+
+    void recordStall(SlowStep stall) {
+        slowSteps.recordStall(stall);
+    }
+
+    @Override
+    public String getActorName() {
+        return actorName;
+    }
+
+    public MailboxCounters getMailboxCounters() {
+        return mailboxCounters;
+    }
+
+    public LogHistogram getStepLatency() {
+        return stepLatency;
+    }
+
+    @Override
+    public int getMailboxDepth() {
+        return mailboxCounters.getPending();
+    }
+
+    @Override
+    public long getProcessedCount() {
+        return processed.getTotal();
+    }
+
+    @Override
+    public long getProcessedPerSecond() {
+        return processed.getPerSecond(System.nanoTime());
+    }
+
+    @Override
+    public long getStepLatencyP50Nanos() {
+        return stepLatency.getPercentile(50.0);
+    }
+
+    @Override
+    public long getStepLatencyP99Nanos() {
+        return stepLatency.getPercentile(99.0);
+    }
+
+    @Override
+    public long getStepLatencyMaxNanos() {
+        return stepLatency.getMax();
+    }
+
+    @Override
+    public long getBusyNanos() {
+        return busyNanos.get();
+    }
+
+    @Override
+    public long getShedCount() {
+        return mailboxCounters.getShed();
+    }
+
+    // slowest first
+    public UnmodifiableList<SlowStep> getSlowestSteps() {
+        return slowSteps.getSlowest();
+    }
+
+    // most recent stalls reported by ActorStallWatchdog, oldest first
+    public UnmodifiableList<SlowStep> getStalls() {
+        return slowSteps.getStalls();
+    }
+
+    @Override
+    public long getStallCount() {
+        return slowSteps.getStallCount();
+    }
+
+    @Override
+    public List<String> getSlowestStepDescriptions() {
+        return describe(getSlowestSteps());
+    }
+
+    @Override
+    public List<String> getStallDescriptions() {
+        return describe(getStalls());
+    }
+
+    private static List<String> describe(List<SlowStep> steps) {
+        List<String> ret = new ArrayList<>(steps.size());
+        for (SlowStep step : steps) {
+            ret.add(step.toString());
+        }
+        return ret;
+    }
+
+    @Override
+    public String toString() {
+        return "ActorMetrics{" + "actorName=" + actorName + ", mailboxDepth=" + getMailboxDepth() + ", processedCount="
+                + getProcessedCount() + ", processedPerSecond=" + getProcessedPerSecond() + ", stepLatency=" + stepLatency + '}';
+    }
+}
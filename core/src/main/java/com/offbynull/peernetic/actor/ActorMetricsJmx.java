@@ -0,0 +1,165 @@
+package com.offbynull.peernetic.actor;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import org.apache.commons.collections4.list.UnmodifiableList;
+import org.apache.commons.lang3.Validate;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+// Exposes the metrics of an ActorRunnable/ActorRunnableGroup as MBeans, until closed. Per-actor MBeans follow the actors -- ones added
+// later get registered and ones removed get unregistered. Per-actor names are keyed by the name registered under plus an id that stays with
+// the actor, not by the thread hosting it, so they stay put when an actor in a group gets migrated.
+public final class ActorMetricsJmx implements AutoCloseable {
+
+    private static final Logger LOG = LoggerFactory.getLogger(ActorMetricsJmx.class);
+
+    private static final String DOMAIN = "com.offbynull.peernetic";
+
+    private final MBeanServer server;
+    private final String ownerKey;
+    private final List<ObjectName> runnableNames; // guarded by this
+    private final Map<ActorMetrics, ObjectName> actorNames; // guarded by this, ActorMetrics compared by identity
+    private int nextActorId; // guarded by this
+    private boolean closed; // guarded by this
+    private final ActorListener listener;
+    private Runnable detach; // guarded by this
+
+    private ActorMetricsJmx(String ownerKey) {
+        this.server = ManagementFactory.getPlatformMBeanServer();
+        this.ownerKey = ownerKey;
+        this.runnableNames = new ArrayList<>();
+        this.actorNames = new LinkedHashMap<>();
+        this.listener = new ActorListener() {
+            @Override
+            public void actorAdded(ActorMetrics actorMetrics) {
+                try {
+                    registerActor(actorMetrics);
+                } catch (JMException | RuntimeException e) {
+                    LOG.error("Unable to register MBean for {}", actorMetrics.getActorName(), e);
+                }
+            }
+
+            @Override
+            public void actorRemoved(ActorMetrics actorMetrics) {
+                try {
+                    unregisterActor(actorMetrics);
+                } catch (JMException | RuntimeException e) {
+                    LOG.error("Unable to unregister MBean for {}", actorMetrics.getActorName(), e);
+                }
+            }
+        };
+    }
+
+    public static ActorMetricsJmx register(String name, ActorRunnableGroup actorRunnableGroup) throws JMException {
+        Validate.notNull(name);
+        Validate.notNull(actorRunnableGroup);
+
+        ActorMetricsJmx jmx = new ActorMetricsJmx("group=" + ObjectName.quote(name));
+        synchronized (jmx) {
+            // listening before the actors are listed, so one added in between can't be missed -- registering twice is a no-op
+            actorRunnableGroup.addActorListener(jmx.listener);
+            jmx.detach = () -> actorRunnableGroup.removeActorListener(jmx.listener);
+            try {
+                UnmodifiableList<ActorRunnable> actorRunnables = actorRunnableGroup.getActorRunnables();
+                for (int i = 0; i < actorRunnables.size(); i++) {
+                    jmx.registerRunnable(name + "-" + i, actorRunnables.get(i));
+                }
+                for (ActorMetrics actorMetrics : actorRunnableGroup.getAllActorMetrics()) {
+                    jmx.registerActor(actorMetrics);
+                }
+            } catch (JMException | RuntimeException e) {
+                jmx.close();
+                throw e;
+            }
+        }
+        return jmx;
+    }
+
+    public static ActorMetricsJmx register(String name, ActorRunnable actorRunnable) throws JMException {
+        Validate.notNull(name);
+        Validate.notNull(actorRunnable);
+
+        ActorMetricsJmx jmx = new ActorMetricsJmx("runnable=" + ObjectName.quote(name));
+        synchronized (jmx) {
+            actorRunnable.addActorListener(jmx.listener);
+            jmx.detach = () -> actorRunnable.removeActorListener(jmx.listener);
+            try {
+                jmx.registerRunnable(name, actorRunnable);
+                for (ActorMetrics actorMetrics : actorRunnable.getAllActorMetrics()) {
+                    jmx.registerActor(actorMetrics);
+                }
+            } catch (JMException | RuntimeException e) {
+                jmx.close();
+                throw e;
+            }
+        }
+        return jmx;
+    }
+
+    // runnable MBeans first, then actor MBeans in the order they were registered
+    public synchronized UnmodifiableList<ObjectName> getObjectNames() {
+        List<ObjectName> ret = new ArrayList<>(runnableNames);
+        ret.addAll(actorNames.values());
+        return (UnmodifiableList<ObjectName>) UnmodifiableList.<ObjectName>unmodifiableList(ret);
+    }
+
+    @Override
+    public synchronized void close() throws JMException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        detach.run();
+
+        List<ObjectName> names = new ArrayList<>(runnableNames);
+        names.addAll(actorNames.values());
+        runnableNames.clear();
+        actorNames.clear();
+
+        JMException failure = null;
+        for (ObjectName name : names) {
+            try {
+                if (server.isRegistered(name)) {
+                    server.unregisterMBean(name);
+                }
+            } catch (JMException jme) {
+                failure = jme;
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    private void registerRunnable(String name, ActorRunnable actorRunnable) throws JMException {
+        ObjectName runnableName = new ObjectName(DOMAIN + ":type=ActorRunnable,name=" + ObjectName.quote(name));
+        server.registerMBean(actorRunnable.getMetrics(), runnableName);
+        runnableNames.add(runnableName);
+    }
+
+    private synchronized void registerActor(ActorMetrics actorMetrics) throws JMException {
+        if (closed || actorNames.containsKey(actorMetrics)) {
+            return;
+        }
+
+        ObjectName actorName = new ObjectName(DOMAIN + ":type=Actor," + ownerKey + ",id=" + nextActorId
+                + ",name=" + ObjectName.quote(actorMetrics.getActorName()));
+        nextActorId++;
+        server.registerMBean(actorMetrics, actorName);
+        actorNames.put(actorMetrics, actorName);
+    }
+
+    private synchronized void unregisterActor(ActorMetrics actorMetrics) throws JMException {
+        ObjectName actorName = actorNames.remove(actorMetrics);
+        if (actorName != null && server.isRegistered(actorName)) {
+            server.unregisterMBean(actorName);
+        }
+    }
+}
@@ -0,0 +1,18 @@
+package com.offbynull.peernetic.actor;
+
+import java.util.List;
+
+public interface ActorMetricsMXBean {
+    String getActorName();
+    int getMailboxDepth();
+    long getProcessedCount();
+    long getProcessedPerSecond();
+    long getStepLatencyP50Nanos();
+    long getStepLatencyP99Nanos();
+    long getStepLatencyMaxNanos();
+    long getBusyNanos();
+    long getShedCount();
+    long getStallCount();
+    List<String> getSlowestStepDescriptions();
+    List<String> getStallDescriptions();
+}
@@ -1,32 +1,73 @@
 package com.offbynull.peernetic.actor;
 
+import java.time.Duration;
 import java.time.Instant;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
-import java.util.LinkedList;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
-import java.util.concurrent.BlockingQueue;
-import java.util.concurrent.LinkedBlockingQueue;
+import java.util.PriorityQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.atomic.AtomicReference;
 import java.util.concurrent.locks.Condition;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
 import org.apache.commons.collections4.list.UnmodifiableList;
-import org.apache.commons.collections4.map.UnmodifiableMap;
 import org.apache.commons.lang3.Validate;
-import org.apache.commons.lang3.mutable.MutableInt;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+// Actors can be added and removed while the runnable is running, and can be migrated to another ActorRunnable. Migration happens in two
+// steps, each at a safe point (between passes of the actor thread, when no message for the actor is half-processed):
+//
+// 1. The current owner parks the actor's endpoint. Anything sent to it from this point on goes through the gate as usual but is held in
+//    the endpoint itself rather than put in a mailbox. Messages that were already on their way in to the owner's mailbox still get
+//    processed by the owner. Once none are left (nobody is in the middle of a send, the only messages in the gate are the held ones, and
+//    nothing for the actor is sitting in the local queue), the owner drops the actor and hands it over to the target's mailbox.
+// 2. The target takes the actor in, points the endpoint at itself, and processes the held messages before anything newer for the actor.
+//
+// Messages are never dropped or reordered by a migration, but they're delayed by it. The actor's MailboxLimit applies to held messages
+// same as queued ones, except that BLOCK lets them through over capacity -- the actor can't make room while it's parked.
 public final class ActorRunnable implements Runnable {
 
     private static final Logger LOG = LoggerFactory.getLogger(ActorRunnable.class);
 
-    private final UnmodifiableList<Actor> actors;
-    private final UnmodifiableMap<Actor, Endpoint> endpoints;
-    private final LinkedBlockingQueue<InternalEnvelope> queue;
+    private static final int MAX_BATCH_SIZE = 4096;
+    private static final int MIN_PURGE_SIZE = 64;
+    private static final long MIGRATION_POLL_NANOS = 1000000L;
+    private static final long NOT_IN_STEP = Long.MIN_VALUE;
+
+    private final MailboxLimit mailboxLimit;
+    private final List<InternalEndpoint> actorEndpoints; // only modified by actor thread, except addActor
+    private final Map<Actor, InternalEndpoint> endpoints; // only modified by actor thread, except addActor
+    private final List<ActorListener> actorListeners; // told after an actor is added to/removed from actorEndpoints
+    private final Mailbox mailbox;
+    private final CoalescingClassifier timerClassifier; // null if mailbox doesn't coalesce
+    private final IdleStrategy idleStrategy;
+    private final ActorRunnableMetrics metrics;
+    private final List<InternalEndpoint> pendingBatches; // only touched by actor thread
+    private final ArrayDeque<Object> localQueue; // recipient/source/message triples, only touched by actor thread
+    private final List<InternalEndpoint> outgoing; // being migrated away, only touched by actor thread
+    private final List<InternalEndpoint> incoming; // migrated in but still has held messages, only touched by actor thread
+    private final Object controlRecipient;
+    private int activeCount; // only touched by actor thread
+    private boolean actorFailed; // only touched by actor thread
+    private final InternalScheduler scheduler;
+    private final PriorityQueue<Timer> timers; // only touched by actor thread
+    private final AtomicInteger cancelledTimerCount;
+    private long timerSequence; // only touched by actor thread
+    private final List<Timer> dueTimers; // only touched by actor thread
+    private final Map<Object, Timer> latestDueTimers; // only touched by actor thread
     private final AtomicReference<State> state;
     private final Lock lock;
     private final Condition startingCondition;
@@ -34,15 +75,45 @@ public final class ActorRunnable implements Runnable {
     private final Condition stoppedCondition;
     private final Condition stoppingCondition;
     private volatile Thread thread;
+    // handler currently running, for ActorStallWatchdog -- stepMetrics/stepMessage are written before stepStart is published and stepStart
+    // is re-checked after the stack is grabbed, which is good enough for diagnostics (worst case a stall is skipped, never misreported)
+    private final AtomicLong stepStart;
+    private ActorMetrics stepMetrics;
+    private Object stepMessage;
+    private long reportedStepStart; // only touched by watchdog thread
 
     public static ActorRunnable createAndStart(Actor... actors) {
-        ActorRunnable actorRunnable = new ActorRunnable(actors);
+        return createAndStart(new BlockingQueueMailbox(), actors);
+    }
+
+    public static ActorRunnable createAndStart(Mailbox mailbox, Actor... actors) {
+        return createAndStart(mailbox, MailboxLimit.UNBOUNDED, actors);
+    }
+
+    public static ActorRunnable createAndStart(Mailbox mailbox, MailboxLimit mailboxLimit, Actor... actors) {
+        return createAndStart(mailbox, mailboxLimit, BlockingIdleStrategy.INSTANCE, actors);
+    }
+
+    public static ActorRunnable createAndStart(Mailbox mailbox, MailboxLimit mailboxLimit, IdleStrategy idleStrategy, Actor... actors) {
+        String threadName = ActorRunnable.class.getSimpleName() + "-Thread";
+        return createAndStart(r -> {
+            Thread thread = new Thread(r);
+            thread.setDaemon(true);
+            thread.setName(threadName);
+            return thread;
+        }, mailbox, mailboxLimit, idleStrategy, actors);
+    }
+
+    static ActorRunnable createAndStart(ThreadFactory threadFactory, Mailbox mailbox, MailboxLimit mailboxLimit,
+            IdleStrategy idleStrategy, Actor... actors) {
+        Validate.notNull(threadFactory);
+        ActorRunnable actorRunnable = new ActorRunnable(mailbox, mailboxLimit, idleStrategy, actors);
 
+        Thread actorThread;
         actorRunnable.lock.lock();
         try {
-            Thread actorThread = new Thread(actorRunnable);
-            actorThread.setDaemon(true);
-            actorThread.setName(ActorRunnable.class.getSimpleName() + "-Thread");
+            actorThread = threadFactory.newThread(actorRunnable);
+            Validate.validState(actorThread != null, "Thread factory rejected Actor thread");
             actorThread.start();
 
             actorRunnable.awaitState(State.STARTING);
@@ -50,25 +121,62 @@ public final class ActorRunnable implements Runnable {
             actorRunnable.lock.unlock();
         }
 
-        LOG.info("Created and started Actor thread with the following Actors: {}", Arrays.asList(actors));
+        LOG.info("Created and started Actor thread {} with the following Actors: {}", actorThread.getName(), Arrays.asList(actors));
 
         return actorRunnable;
     }
 
     public ActorRunnable(Actor... actors) {
+        this(new BlockingQueueMailbox(), actors);
+    }
+
+    public ActorRunnable(Mailbox mailbox, Actor... actors) {
+        this(mailbox, MailboxLimit.UNBOUNDED, actors);
+    }
+
+    public ActorRunnable(Mailbox mailbox, MailboxLimit mailboxLimit, Actor... actors) {
+        this(mailbox, mailboxLimit, BlockingIdleStrategy.INSTANCE, actors);
+    }
+
+    public ActorRunnable(Mailbox mailbox, MailboxLimit mailboxLimit, IdleStrategy idleStrategy, Actor... actors) {
+        Validate.notNull(mailbox);
+        Validate.notNull(mailboxLimit);
+        Validate.notNull(idleStrategy);
         Validate.noNullElements(actors);
         Validate.isTrue(actors.length > 0);
+        Validate.isTrue(mailboxLimit.getPolicy() != OverloadPolicy.DROP_OLDEST || mailbox.isOrdered(),
+                "DROP_OLDEST needs a mailbox that drains in the order messages were put in");
 
-        this.actors = (UnmodifiableList<Actor>) UnmodifiableList.<Actor>unmodifiableList(new ArrayList<>(Arrays.asList(actors)));
-        this.queue = new LinkedBlockingQueue<>();
+        this.mailboxLimit = mailboxLimit;
+        this.mailbox = mailbox;
+        this.timerClassifier = mailbox instanceof CoalescingMailbox ? ((CoalescingMailbox) mailbox).getClassifier() : null;
+        this.idleStrategy = idleStrategy;
+        this.metrics = new ActorRunnableMetrics(mailbox, idleStrategy);
+        this.stepStart = new AtomicLong(NOT_IN_STEP);
+        this.reportedStepStart = NOT_IN_STEP;
+        this.pendingBatches = new ArrayList<>();
+        this.localQueue = new ArrayDeque<>();
+        this.outgoing = new ArrayList<>();
+        this.incoming = new ArrayList<>();
+        this.controlRecipient = new Object();
+        this.scheduler = new InternalScheduler();
+        this.timers = new PriorityQueue<>(new TimerComparator());
+        this.cancelledTimerCount = new AtomicInteger();
+        this.dueTimers = new ArrayList<>();
+        this.latestDueTimers = new HashMap<>();
 
-        Map<Actor, Endpoint> endpoints = new HashMap<>();
+        List<InternalEndpoint> actorEndpoints = new ArrayList<>(actors.length);
+        Map<Actor, InternalEndpoint> endpoints = Collections.synchronizedMap(new IdentityHashMap<>()); // actors keyed by identity
         for (int i = 0; i < actors.length; i++) {
-            Endpoint existing = endpoints.put(actors[i], new InternalEndpoint(i, queue));
+            InternalEndpoint endpoint = createEndpoint(actors[i]);
+            Endpoint existing = endpoints.put(actors[i], endpoint);
             Validate.isTrue(existing == null, "Duplicate actor");
+            actorEndpoints.add(endpoint);
         }
 
-        this.endpoints = (UnmodifiableMap<Actor, Endpoint>) UnmodifiableMap.<Actor, Endpoint>unmodifiableMap(endpoints);
+        this.actorEndpoints = new CopyOnWriteArrayList<>(actorEndpoints);
+        this.actorListeners = new CopyOnWriteArrayList<>();
+        this.endpoints = endpoints;
 
         this.state = new AtomicReference<>(State.CREATED);
         this.lock = new ReentrantLock();
@@ -78,6 +186,12 @@ public final class ActorRunnable implements Runnable {
         this.stoppingCondition = lock.newCondition();
     }
 
+    private InternalEndpoint createEndpoint(Actor actor) {
+        MailboxGate gate = new MailboxGate(mailboxLimit);
+        ActorMetrics actorMetrics = new ActorMetrics(actor.toString(), gate.getCounters());
+        return new InternalEndpoint(this, actor, gate, actorMetrics);
+    }
+
     public void awaitState(State state) {
         Validate.notNull(state);
 
@@ -114,15 +228,163 @@ public final class ActorRunnable implements Runnable {
         }
     }
 
+    public State getState() {
+        return state.get();
+    }
+
     public Endpoint getEndpoint(Actor actor) {
+        return getInternalEndpoint(actor);
+    }
+
+    public MailboxCounters getMailboxCounters(Actor actor) {
+        return getInternalEndpoint(actor).gate.getCounters();
+    }
+
+    public ActorMetrics getActorMetrics(Actor actor) {
+        return getInternalEndpoint(actor).metrics;
+    }
+
+    public UnmodifiableList<ActorMetrics> getAllActorMetrics() {
+        List<ActorMetrics> ret = new ArrayList<>(actorEndpoints.size());
+        for (InternalEndpoint endpoint : actorEndpoints) {
+            ret.add(endpoint.metrics);
+        }
+        return (UnmodifiableList<ActorMetrics>) UnmodifiableList.<ActorMetrics>unmodifiableList(ret);
+    }
+
+    // actors currently hosted by this runnable -- an actor in the middle of being migrated shows up in the list of the runnable it's
+    // moving away from until it's been handed over
+    public UnmodifiableList<Actor> getActors() {
+        List<Actor> ret = new ArrayList<>(actorEndpoints.size());
+        for (InternalEndpoint endpoint : actorEndpoints) {
+            ret.add(endpoint.actor);
+        }
+        return (UnmodifiableList<Actor>) UnmodifiableList.<Actor>unmodifiableList(ret);
+    }
+
+    public ActorRunnableMetrics getMetrics() {
+        return metrics;
+    }
+
+    // Scheduler backed by this runnable's own timer queue. Due messages are fired by the actor thread between mailbox drains, and if the
+    // destination is an actor hosted by this runnable the message is handed straight to it rather than going through the mailbox. Closing
+    // the returned scheduler does nothing, pending timers are discarded once this runnable stops.
+    public EndpointScheduler getEndpointScheduler() {
+        return scheduler;
+    }
+
+    // Scheduler that hands off to whichever runnable hosts the actor at the time a message gets scheduled, so an actor that's been
+    // migrated keeps having its timers fire on its own thread. Timers scheduled before a migration still fire from the old runnable.
+    public EndpointScheduler getEndpointScheduler(Actor actor) {
+        return getInternalEndpoint(actor).hostScheduler;
+    }
+
+    private InternalEndpoint getInternalEndpoint(Actor actor) {
         Validate.notNull(actor);
 
-        Endpoint endpoint = endpoints.get(actor);
+        InternalEndpoint endpoint = endpoints.get(actor);
         Validate.isTrue(endpoint != null, "Actor not found");
 
         return endpoint;
     }
 
+    // actor gets started by the actor thread shortly after this returns, messages sent to the returned endpoint before then are held on to
+    public Endpoint addActor(Actor actor) {
+        Validate.notNull(actor);
+        Validate.validState(state.get().ordinal() <= State.STARTED.ordinal(), "Already stopping");
+
+        InternalEndpoint endpoint = createEndpoint(actor);
+        Validate.isTrue(endpoints.putIfAbsent(actor, endpoint) == null, "Duplicate actor");
+        actorEndpoints.add(endpoint);
+        fireActorAdded(endpoint); // before the actor thread can see it, so a remove can't be reported ahead of this
+        putUninterruptibly(mailbox, controlRecipient, NullEndpoint.INSTANCE, new Control(ControlType.REGISTER, endpoint, null));
+
+        return endpoint;
+    }
+
+    // actor gets stopped by the actor thread shortly after this returns, anything sent to it from then on is dropped
+    public void removeActor(Actor actor) {
+        requestRemove(getInternalEndpoint(actor));
+    }
+
+    // actor moves over at the next safe point, see class comment
+    public void migrateActor(Actor actor, ActorRunnable target) {
+        requestMigrate(getInternalEndpoint(actor), target);
+    }
+
+    void addActorListener(ActorListener listener) {
+        Validate.notNull(listener);
+        actorListeners.add(listener);
+    }
+
+    void removeActorListener(ActorListener listener) {
+        Validate.notNull(listener);
+        actorListeners.remove(listener);
+    }
+
+    private void fireActorAdded(InternalEndpoint endpoint) {
+        for (ActorListener listener : actorListeners) {
+            listener.actorAdded(endpoint.metrics);
+        }
+    }
+
+    private void fireActorRemoved(InternalEndpoint endpoint) {
+        for (ActorListener listener : actorListeners) {
+            listener.actorRemoved(endpoint.metrics);
+        }
+    }
+
+    static ActorRunnable getOwner(Endpoint endpoint) {
+        return toInternalEndpoint(endpoint).owner;
+    }
+
+    static ActorMetrics getActorMetrics(Endpoint endpoint) {
+        return toInternalEndpoint(endpoint).metrics;
+    }
+
+    static MailboxCounters getMailboxCounters(Endpoint endpoint) {
+        return toInternalEndpoint(endpoint).gate.getCounters();
+    }
+
+    static EndpointScheduler getEndpointScheduler(Endpoint endpoint) {
+        return toInternalEndpoint(endpoint).hostScheduler;
+    }
+
+    static void requestRemove(Endpoint endpoint) {
+        InternalEndpoint internalEndpoint = toInternalEndpoint(endpoint);
+        ActorRunnable owner = internalEndpoint.owner;
+        putUninterruptibly(owner.mailbox, owner.controlRecipient, NullEndpoint.INSTANCE,
+                new Control(ControlType.UNREGISTER, internalEndpoint, null));
+    }
+
+    static void requestMigrate(Endpoint endpoint, ActorRunnable target) {
+        Validate.notNull(target);
+        Validate.validState(target.state.get().ordinal() <= State.STARTED.ordinal(), "Target already stopping");
+
+        InternalEndpoint internalEndpoint = toInternalEndpoint(endpoint);
+        ActorRunnable owner = internalEndpoint.owner;
+        putUninterruptibly(owner.mailbox, owner.controlRecipient, NullEndpoint.INSTANCE,
+                new Control(ControlType.MIGRATE, internalEndpoint, target));
+    }
+
+    // control messages and timer handoffs can't be dropped without losing track of an actor/timer, so if the mailbox makes this thread wait
+    // and it gets interrupted, keep trying and put the interrupt back after -- only gives up if the mailbox is closed
+    private static void putUninterruptibly(Mailbox mailbox, Object recipient, Endpoint source, Object message) {
+        boolean interrupted = false;
+        while (!mailbox.put(recipient, source, message) && Thread.interrupted()) {
+            interrupted = true;
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static InternalEndpoint toInternalEndpoint(Endpoint endpoint) {
+        Validate.notNull(endpoint);
+        Validate.isTrue(endpoint instanceof InternalEndpoint, "Not an actor endpoint");
+        return (InternalEndpoint) endpoint;
+    }
+
     public Thread getThread() {
         Validate.validState(this.state.get() != State.CREATED); // must be >= STARTING for thread to be non-null
 
@@ -142,39 +404,59 @@ public final class ActorRunnable implements Runnable {
 
         thread = Thread.currentThread(); // volatile field
 
-        MutableInt activeCount = new MutableInt(actors.size());
-        boolean[] active = new boolean[actors.size()];
-        Arrays.fill(active, true);
-
         try {
             updateState(State.STARTING);
             LOG.debug("Starting actor");
-            startActors(active, activeCount);
+            startActors();
             updateState(State.STARTED);
             LOG.debug("Started actor");
-            if (activeCount.getValue() == 0) {
+            if (activeCount == 0 && actorFailed) {
                 LOG.info("No more actors present in thread, shutting down");
                 return;
             }
 
-            InternalEnvelope firstEnv;
-            while ((firstEnv = queue.take()) != null) {
-                List<InternalEnvelope> envs = new LinkedList<>();
-                envs.add(firstEnv);
-                queue.drainTo(envs);
-
-                long start = System.currentTimeMillis();
-                Instant time = Instant.now();
-                for (InternalEnvelope env : envs) {
-                    runActor(time, env, active, activeCount);
-                    if (activeCount.getValue() == 0) {
-                        LOG.info("No more actors present in thread, shutting down");
-                        return;
+            BatchConsumer batchConsumer = new BatchConsumer();
+            long idleStart = System.nanoTime();
+            while (true) {
+                // wait on the mailbox for as long as the next timer allows, or not at all if actors on this thread left work behind
+                boolean ready;
+                Timer nextTimer = peekTimer();
+                if (!localQueue.isEmpty()) {
+                    ready = !mailbox.isEmpty();
+                } else {
+                    long waitNanos = Long.MAX_VALUE;
+                    if (nextTimer != null) {
+                        waitNanos = Math.max(0L, nextTimer.deadlineNanos - System.nanoTime());
+                    }
+                    if (!outgoing.isEmpty() || !incoming.isEmpty()) {
+                        waitNanos = Math.min(waitNanos, MIGRATION_POLL_NANOS); // keep checking up on migrations
                     }
+
+                    ready = waitNanos > 0L ? idleStrategy.idle(mailbox, waitNanos) : !mailbox.isEmpty();
+                }
+
+                long start = System.nanoTime();
+                metrics.recordIdle(start - idleStart);
+                batchConsumer.time = Instant.now();
+                // due timers go before anything drained from the mailbox, this is what gives them priority over queued data when they're
+                // scheduled on (and fire on) this thread -- they never pass through the mailbox, so MessagePriority isn't consulted
+                int count = fireTimers(batchConsumer.time, start);
+                if (ready) {
+                    count += mailbox.drain(batchConsumer, MAX_BATCH_SIZE);
+                }
+                count += drainLocalQueue(batchConsumer.time);
+                count += advanceIncoming(batchConsumer.time);
+                runBatches(batchConsumer.time);
+                advanceOutgoing(); // safe point, nothing is half-processed here
+                long end = System.nanoTime();
+                metrics.recordBatch(end, end - start, count);
+                idleStart = end;
+                if (activeCount == 0 && actorFailed) {
+                    LOG.info("No more actors present in thread, shutting down");
+                    return;
                 }
-                long end = System.currentTimeMillis();
 
-                LOG.debug("Processing batch of {} messages took {} ms", queue.size(), end - start);
+                LOG.debug("Processing batch of {} messages took {} ns", count, end - start);
             }
         } catch (InterruptedException ie) {
             LOG.error("Actor thread interrupted");
@@ -184,7 +466,7 @@ public final class ActorRunnable implements Runnable {
         } finally {
             updateState(State.STOPPING);
             LOG.debug("Stopping actor");
-            stopActors(active);
+            stopActors();
             updateState(State.STOPPED);
             LOG.debug("Stopped actor");
         }
@@ -216,117 +498,655 @@ public final class ActorRunnable implements Runnable {
         }
     }
 
-    private void startActors(boolean[] active, MutableInt activeCount) throws InterruptedException {
-        int counter = 0;
-        for (Actor actor : actors) {
-            try {
-                actor.onStart(Instant.now());
-            } catch (InterruptedException e) {
-                throw e;
-            } catch (Exception e) {
-                LOG.error("Actor encountered an error on start", e);
+    private void startActors() throws InterruptedException {
+        for (InternalEndpoint endpoint : actorEndpoints) {
+            startActor(endpoint);
+        }
+    }
 
-                active[counter] = false;
-                activeCount.decrement();
+    private void startActor(InternalEndpoint endpoint) throws InterruptedException {
+        if (endpoint.started) {
+            return;
+        }
+        endpoint.started = true;
 
-                try {
-                    actor.onStop(Instant.now());
-                } catch (Exception ex) {
-                    LOG.error("Actor encountered an error on stop", ex);
-                }
+        Actor actor = endpoint.actor;
+        try {
+            actor.onStart(Instant.now());
+            activeCount++;
+        } catch (InterruptedException e) {
+            throw e;
+        } catch (Exception e) {
+            LOG.error("Actor encountered an error on start", e);
+
+            endpoint.active = false;
+            actorFailed = true;
+
+            try {
+                actor.onStop(Instant.now());
+            } catch (Exception ex) {
+                LOG.error("Actor encountered an error on stop", ex);
             }
-            counter++;
         }
     }
 
-    private void stopActors(boolean[] active) {
-        int counter = 0;
-        for (Actor actor : actors) {
-            if (!active[counter]) {
-                return;
+    private void stopActors() {
+        // nothing drains the mailbox past this point, so make sure no producer stays blocked on it
+        mailbox.close();
+        for (InternalEndpoint endpoint : actorEndpoints) {
+            endpoint.gate.close();
+        }
+
+        for (InternalEndpoint endpoint : actorEndpoints) {
+            if (!endpoint.active || !endpoint.started) {
+                continue;
             }
 
             try {
-                actor.onStop(Instant.now());
+                endpoint.actor.onStop(Instant.now());
             } catch (Exception ex) {
                 LOG.error("Actor encountered an error on stop", ex);
             }
         }
     }
 
-    private void runActor(Instant time, InternalEnvelope env, boolean[] active, MutableInt activeCount) throws InterruptedException {
-        int actorIndex = env.getActorIndex();
+    private int drainLocalQueue(Instant time) throws InterruptedException {
+        // anything actors queue up while this runs gets picked up in this same pass, up to the batch limit
+        int count = 0;
+        while (count < MAX_BATCH_SIZE && !localQueue.isEmpty()) {
+            InternalEndpoint endpoint = (InternalEndpoint) localQueue.poll();
+            Endpoint source = (Endpoint) localQueue.poll();
+            Object message = localQueue.poll();
+            endpoint.localPending--;
+            stepActor(time, endpoint, source, message);
+            count++;
+        }
+        return count;
+    }
+
+    private void runActor(Instant time, InternalEndpoint endpoint, Endpoint source, Object message) throws InterruptedException {
+        if (!endpoint.gate.exit()) {
+            return;
+        }
+        stepActor(time, endpoint, source, message);
+    }
+
+    private void stepActor(Instant time, InternalEndpoint endpoint, Endpoint source, Object message) throws InterruptedException {
+        if (endpoint.draining) {
+            flushHeld(time, endpoint); // messages held during migration come before anything newer
+        }
+        invokeActor(time, endpoint, source, message);
+    }
 
-        if (!active[actorIndex]) {
+    private void invokeActor(Instant time, InternalEndpoint endpoint, Endpoint source, Object message) throws InterruptedException {
+        if (!endpoint.started) {
+            startActor(endpoint); // message raced ahead of the actor's registration
+        }
+
+        if (!endpoint.active) {
             return;
         }
 
-        Actor actor = actors.get(actorIndex);
+        if (endpoint.batch != null) {
+            // batch-aware actor, hold on to the message until the drain finishes and hand everything over in one go
+            if (endpoint.batch.isEmpty()) {
+                pendingBatches.add(endpoint);
+            }
+            endpoint.batch.add(new Envelope(source, message));
+            return;
+        }
+
+        long start = beginStep(endpoint, message);
         try {
-            actor.onStep(time, env.getSource(), env.getMessage());
+            endpoint.actor.onStep(time, source, message);
+            long end = System.nanoTime();
+            endpoint.metrics.recordStep(end, end - start, 1);
+            endpoint.metrics.sampleStep(time, message, end - start);
         } catch (InterruptedException e) {
             throw e;
         } catch (Exception e) {
-            LOG.error("Actor encountered an error on run", e);
+            failActor(endpoint, e);
+        } finally {
+            endStep();
+        }
+    }
 
-            active[actorIndex] = false;
-            activeCount.decrement();
+    private long beginStep(InternalEndpoint endpoint, Object message) {
+        stepMetrics = endpoint.metrics;
+        stepMessage = message;
+        long start = System.nanoTime();
+        stepStart.lazySet(start); // single writer, ordered store is enough
+        return start;
+    }
+
+    private void endStep() {
+        stepStart.lazySet(NOT_IN_STEP);
+        stepMessage = null; // don't hold on to the message until the next step
+    }
+
+    // only ever called by ActorStallWatchdog's thread -- returns the stall if the handler currently running has been at it for
+    // thresholdNanos or longer and hasn't been reported yet, null otherwise
+    SlowStep checkForStall(long thresholdNanos) {
+        long start = stepStart.get();
+        if (start == NOT_IN_STEP || start == reportedStepStart) {
+            return null;
+        }
+
+        ActorMetrics actorMetrics = stepMetrics;
+        Object message = stepMessage;
+        long duration = System.nanoTime() - start;
+        Thread actorThread = thread;
+        if (duration < thresholdNanos || actorMetrics == null || message == null || actorThread == null) {
+            return null;
+        }
+
+        StackTraceElement[] stackTrace = actorThread.getStackTrace();
+        if (stepStart.get() != start) {
+            return null; // step finished while grabbing the stack, so the stack is of something else
+        }
 
+        reportedStepStart = start;
+        SlowStep stall = new SlowStep(actorMetrics.getActorName(), message.getClass().getName(), duration, Instant.now(), stackTrace);
+        actorMetrics.recordStall(stall);
+        return stall;
+    }
+
+    private void runBatches(Instant time) throws InterruptedException {
+        for (int i = 0; i < pendingBatches.size(); i++) {
+            InternalEndpoint endpoint = pendingBatches.get(i);
+            List<Envelope> batch = endpoint.batch;
+            if (!endpoint.active) { // failed on an earlier message in this drain
+                batch.clear();
+                continue;
+            }
+
+            Object first = batch.get(0).getMessage();
+            long start = beginStep(endpoint, first);
             try {
-                actor.onStop(Instant.now());
+                endpoint.actor.onStepBatch(time, endpoint.batchView);
+                long end = System.nanoTime();
+                endpoint.metrics.recordStep(end, end - start, batch.size());
+                endpoint.metrics.sampleStep(time, first, end - start);
+            } catch (InterruptedException e) {
+                throw e;
+            } catch (Exception e) {
+                failActor(endpoint, e);
+            } finally {
+                endStep();
+                batch.clear();
+            }
+        }
+        pendingBatches.clear();
+    }
+
+    private void handleControl(Instant time, Control control) throws InterruptedException {
+        InternalEndpoint endpoint = control.endpoint;
+        switch (control.type) {
+            case REGISTER:
+                if (endpoint.owner == this) {
+                    startActor(endpoint);
+                }
+                break;
+            case UNREGISTER:
+                if (endpoint.owner != this) {
+                    // handed over to some other runnable since the request was made, pass it along
+                    ActorRunnable owner = endpoint.owner;
+                    putUninterruptibly(owner.mailbox, owner.controlRecipient, NullEndpoint.INSTANCE, control);
+                    break;
+                }
+                unregister(endpoint);
+                break;
+            case MIGRATE:
+                if (endpoint.owner != this || control.target == this || !endpoint.started || !endpoint.active || endpoint.migrating
+                        || endpoint.draining || !endpoints.containsKey(endpoint.actor)) {
+                    LOG.debug("Ignoring migration request for {}", endpoint.actor);
+                    break;
+                }
+                endpoint.migrating = true;
+                endpoint.migrationTarget = control.target;
+                endpoint.host = null; // volatile write, read of inFlight in advanceOutgoing must come after this
+                outgoing.add(endpoint);
+                break;
+            case ADOPT:
+                actorEndpoints.add(endpoint);
+                fireActorAdded(endpoint);
+                endpoints.put(endpoint.actor, endpoint);
+                activeCount++;
+                endpoint.draining = true;
+                incoming.add(endpoint);
+                endpoint.host = this; // new messages come here from now on
+                flushHeld(time, endpoint);
+                break;
+            default:
+                throw new IllegalStateException();
+        }
+    }
+
+    private void unregister(InternalEndpoint endpoint) {
+        if (!endpoints.remove(endpoint.actor, endpoint)) {
+            return; // already removed
+        }
+        actorEndpoints.remove(endpoint);
+        fireActorRemoved(endpoint);
+        outgoing.remove(endpoint);
+        incoming.remove(endpoint);
+        endpoint.gate.close();
+        dropHeld(endpoint);
+        endpoint.migrating = false;
+        endpoint.draining = false;
+        endpoint.host = this; // anything still coming in gets dropped by the gate (or by active below, for the local queue)
+
+        if (endpoint.active && endpoint.started) {
+            endpoint.active = false;
+            activeCount--;
+            try {
+                endpoint.actor.onStop(Instant.now());
             } catch (Exception ex) {
                 LOG.error("Actor encountered an error on stop", ex);
             }
         }
+        endpoint.active = false;
+    }
+
+    private void advanceOutgoing() {
+        Iterator<InternalEndpoint> it = outgoing.iterator();
+        while (it.hasNext()) {
+            InternalEndpoint endpoint = it.next();
+            if (!endpoint.active) {
+                // failed while waiting to move, keep it here and let whatever was held for it get dropped
+                it.remove();
+                endpoint.migrating = false;
+                dropHeld(endpoint);
+                endpoint.host = this;
+                continue;
+            }
+
+            // held count read before the gate, so a send racing with this can only make it look like there's still something queued
+            int heldCount = endpoint.heldCount.get();
+            if (endpoint.inFlight.get() != 0 || !endpoint.gate.isIdle(heldCount) || endpoint.localPending != 0) {
+                continue; // still has messages on their way through this runnable
+            }
+
+            it.remove();
+            actorEndpoints.remove(endpoint);
+            endpoints.remove(endpoint.actor);
+            fireActorRemoved(endpoint);
+            activeCount--;
+            endpoint.migrating = false;
+
+            ActorRunnable target = endpoint.migrationTarget;
+            endpoint.migrationTarget = null;
+            endpoint.owner = target;
+            putUninterruptibly(target.mailbox, target.controlRecipient, NullEndpoint.INSTANCE,
+                    new Control(ControlType.ADOPT, endpoint, null));
+            LOG.debug("Handed {} over to {}", endpoint.actor, target);
+        }
+    }
+
+    private int advanceIncoming(Instant time) throws InterruptedException {
+        int count = 0;
+        Iterator<InternalEndpoint> it = incoming.iterator();
+        while (it.hasNext()) {
+            InternalEndpoint endpoint = it.next();
+            count += flushHeld(time, endpoint);
+
+            // host was pointed here before this check, so once nobody's in the middle of a send nothing new can get held
+            if (endpoint.inFlight.get() == 0 && endpoint.held.isEmpty()) {
+                endpoint.draining = false;
+                it.remove();
+            }
+        }
+        return count;
     }
 
-    private static final class InternalEnvelope {
+    private int flushHeld(Instant time, InternalEndpoint endpoint) throws InterruptedException {
+        int count = 0;
+        Envelope envelope;
+        while ((envelope = endpoint.held.poll()) != null) {
+            endpoint.heldCount.decrementAndGet();
+            if (endpoint.gate.exit()) {
+                invokeActor(time, endpoint, envelope.getSource(), envelope.getMessage());
+            }
+            count++;
+        }
+        return count;
+    }
 
-        private int actorIndex;
-        private Endpoint source;
-        private Object message;
+    private void dropHeld(InternalEndpoint endpoint) {
+        while (endpoint.held.poll() != null) {
+            endpoint.heldCount.decrementAndGet();
+            endpoint.gate.exit();
+        }
+    }
+
+    private void addTimer(Timer timer) {
+        if (timer.isCancelled()) {
+            return;
+        }
 
-        public InternalEnvelope(int actorIndex, Endpoint source, Object message) {
-            Validate.isTrue(actorIndex >= 0);
+        timer.sequence = timerSequence++;
+        timers.add(timer);
+    }
+
+    private Timer peekTimer() {
+        // cancelled timers are normally left in the queue and skipped when they come up, but if they pile up (e.g. lots of long timers
+        // being cancelled) sweep them out so they don't hold on to memory
+        int cancelled = cancelledTimerCount.get();
+        if (cancelled > MIN_PURGE_SIZE && cancelled > timers.size() / 2) {
+            timers.removeIf(x -> x.isCancelled());
+            cancelledTimerCount.set(0);
+        }
+
+        Timer timer;
+        while ((timer = timers.peek()) != null && timer.isCancelled()) {
+            timers.poll();
+        }
+        return timer;
+    }
+
+    private int fireTimers(Instant time, long nanoTime) throws InterruptedException {
+        Timer timer;
+        while ((timer = timers.peek()) != null && timer.deadlineNanos - nanoTime <= 0L) {
+            timers.poll();
+            if (!timer.isCancelled()) {
+                dueTimers.add(timer);
+            }
+        }
+
+        if (dueTimers.isEmpty()) {
+            return 0;
+        }
+
+        try {
+            // timers never pass through the mailbox, so a CoalescingMailbox can't do this for them -- if there is one, its classifier gets
+            // applied here too, and of the timers that came due together only the last one for each key gets delivered
+            if (timerClassifier != null && dueTimers.size() > 1) {
+                for (Timer dueTimer : dueTimers) {
+                    Object key = timerClassifier.classify(dueTimer.getDestination(), dueTimer.getSource(), dueTimer.getMessage());
+                    dueTimer.coalescingKey = key;
+                    if (key != null) {
+                        latestDueTimers.put(key, dueTimer);
+                    }
+                }
+            }
+
+            return deliverDueTimers(time);
+        } finally {
+            dueTimers.clear();
+            latestDueTimers.clear();
+        }
+    }
+
+    private int deliverDueTimers(Instant time) throws InterruptedException {
+        int count = 0;
+        for (Timer timer : dueTimers) {
+            Timer latest = timer.coalescingKey == null ? timer : latestDueTimers.get(timer.coalescingKey);
+            if (latest != timer && !latest.isCancelled()) {
+                // superseded, checked as each one comes up rather than up front so handlers that ran earlier in this pass can still cancel
+                if (timer.claim() && timer.getDestination() instanceof InternalEndpoint) {
+                    ((InternalEndpoint) timer.getDestination()).gate.getCounters().coalesced.increment();
+                }
+                continue;
+            }
+
+            if (!timer.claim()) {
+                continue; // cancelled
+            }
+
+            Endpoint destination = timer.getDestination();
+            Endpoint source = timer.getSource();
+            Object message = timer.getMessage();
+            if (destination instanceof InternalEndpoint && ((InternalEndpoint) destination).host == this) {
+                // hosted by this thread, skip the mailbox and run it right here -- it never takes up a spot in the mailbox, so it stays out
+                // of the gate as well (going through it under DROP_OLDEST would throw the timer away in place of the oldest queued message)
+                stepActor(time, (InternalEndpoint) destination, source, message);
+            } else {
+                // goes through the destination's mailbox, so the message's own MessagePriority decides where it lands there
+                try {
+                    destination.send(source, message);
+                } catch (RuntimeException re) {
+                    LOG.error("Unable to deliver scheduled message", re);
+                }
+            }
+            count++;
+        }
+        return count;
+    }
+
+    private void failActor(InternalEndpoint endpoint, Exception e) {
+        LOG.error("Actor encountered an error on run", e);
+
+        endpoint.active = false;
+        activeCount--;
+        actorFailed = true;
+
+        try {
+            endpoint.actor.onStop(Instant.now());
+        } catch (Exception ex) {
+            LOG.error("Actor encountered an error on stop", ex);
+        }
+    }
+
+    private final class BatchConsumer implements MailboxConsumer {
+
+        private Instant time;
+
+        @Override
+        public void accept(Object recipient, Endpoint source, Object message) throws InterruptedException {
+            if (recipient == scheduler) { // timer scheduled from some other thread
+                addTimer((Timer) message);
+                return;
+            }
+            if (recipient == controlRecipient) {
+                handleControl(time, (Control) message);
+                return;
+            }
+            runActor(time, (InternalEndpoint) recipient, source, message);
+        }
+
+        @Override
+        public void discarded(Object recipient, int count) {
+            if (!(recipient instanceof InternalEndpoint)) {
+                return;
+            }
+
+            // superseded messages went through the gate on the way in, so they have to go back out through it
+            InternalEndpoint endpoint = (InternalEndpoint) recipient;
+            for (int i = 0; i < count; i++) {
+                endpoint.gate.exit();
+            }
+            endpoint.gate.getCounters().coalesced.add(count);
+        }
+    }
+
+    private final class InternalScheduler implements EndpointScheduler {
+
+        @Override
+        public Cancellable scheduleMessage(Duration delay, Endpoint source, Endpoint destination, Object message) {
+            Validate.notNull(delay);
             Validate.notNull(source);
+            Validate.notNull(destination);
             Validate.notNull(message);
+            Validate.isTrue(!delay.isNegative());
+
+            Timer timer = new Timer(System.nanoTime() + delay.toNanos(), source, destination, message);
+            if (Thread.currentThread() == thread) {
+                addTimer(timer);
+            } else {
+                // hand it over through the mailbox, which also wakes up the actor thread so it can recalculate how long to wait for
+                putUninterruptibly(mailbox, this, source, timer);
+            }
+
+            return timer;
+        }
+
+        @Override
+        public void close() throws Exception {
+            // do nothing, timers are owned by the actor thread
+        }
+    }
+
+    private static final class HostScheduler implements EndpointScheduler {
+
+        private final InternalEndpoint endpoint;
+
+        public HostScheduler(InternalEndpoint endpoint) {
+            this.endpoint = endpoint;
+        }
 
-            this.actorIndex = actorIndex;
-            this.source = source;
-            this.message = message;
+        @Override
+        public Cancellable scheduleMessage(Duration delay, Endpoint source, Endpoint destination, Object message) {
+            ActorRunnable target = endpoint.host;
+            if (target == null) {
+                target = endpoint.owner; // parked mid-migration, the runnable it's leaving still fires timers out to wherever it lands
+            }
+            return target.scheduler.scheduleMessage(delay, source, destination, message);
         }
 
-        public int getActorIndex() {
-            return actorIndex;
+        @Override
+        public void close() throws Exception {
+            // do nothing, timers are owned by the actor threads
         }
+    }
+
+    @MessagePriority(Priority.HIGH) // handed over through mailbox when scheduled from another thread, don't let it queue behind data
+    private final class Timer extends ScheduledMessage {
+        private final long deadlineNanos;
+        private long sequence; // only touched by actor thread
+        private Object coalescingKey; // only touched by actor thread
 
-        public Endpoint getSource() {
-            return source;
+        public Timer(long deadlineNanos, Endpoint source, Endpoint destination, Object message) {
+            super(source, destination, message);
+            this.deadlineNanos = deadlineNanos;
         }
 
-        public Object getMessage() {
-            return message;
+        @Override
+        void onCancelled() {
+            cancelledTimerCount.incrementAndGet();
+        }
+    }
+
+    private static final class TimerComparator implements Comparator<Timer> {
+
+        @Override
+        public int compare(Timer o1, Timer o2) {
+            int ret = Long.compare(o1.deadlineNanos - o2.deadlineNanos, 0L); // nanoTime may wrap, so compare the difference
+            if (ret == 0) {
+                ret = Long.compare(o1.sequence, o2.sequence); // same deadline, fire in order scheduled
+            }
+            return ret;
         }
+    }
 
+    private enum ControlType {
+        REGISTER,
+        UNREGISTER,
+        MIGRATE,
+        ADOPT
+    }
+
+    @MessagePriority(Priority.HIGH)
+    private static final class Control {
+        private final ControlType type;
+        private final InternalEndpoint endpoint;
+        private final ActorRunnable target;
+
+        public Control(ControlType type, InternalEndpoint endpoint, ActorRunnable target) {
+            this.type = type;
+            this.endpoint = endpoint;
+            this.target = target;
+        }
     }
 
     private static final class InternalEndpoint implements Endpoint {
 
-        private int actorIndex;
-        private BlockingQueue<InternalEnvelope> queue;
+        private final Actor actor;
+        private final MailboxGate gate;
+        private final ActorMetrics metrics;
+        private final List<Envelope> batch; // null if actor isn't a BatchActor, only touched by owner thread
+        private final List<Envelope> batchView;
+        private final boolean localFastPath;
+        private final AtomicInteger inFlight; // cross-thread sends in progress
+        private final ConcurrentLinkedQueue<Envelope> held; // messages sent while migrating
+        private final AtomicInteger heldCount;
+        private final HostScheduler hostScheduler;
+
+        private volatile ActorRunnable host; // runnable messages get routed to, null while migrating
+        private volatile ActorRunnable owner; // runnable responsible for the actor
 
-        public InternalEndpoint(int actorIndex, BlockingQueue<InternalEnvelope> queue) {
-            Validate.isTrue(actorIndex >= 0);
-            Validate.notNull(queue);
+        // only touched by owner thread
+        private boolean active = true;
+        private boolean started;
+        private boolean migrating;
+        private ActorRunnable migrationTarget;
+        private boolean draining;
+        private int localPending;
 
-            this.actorIndex = actorIndex;
-            this.queue = queue;
+        public InternalEndpoint(ActorRunnable owner, Actor actor, MailboxGate gate, ActorMetrics metrics) {
+            Validate.notNull(owner);
+            Validate.notNull(actor);
+            Validate.notNull(gate);
+            Validate.notNull(metrics);
+
+            this.actor = actor;
+            this.gate = gate;
+            this.metrics = metrics;
+            this.localFastPath = !gate.getLimit().isBounded(); // bounded limits need every message to go through the gate
+            this.inFlight = new AtomicInteger();
+            this.held = new ConcurrentLinkedQueue<>();
+            this.heldCount = new AtomicInteger();
+            this.hostScheduler = new HostScheduler(this);
+            this.host = owner;
+            this.owner = owner;
+            if (actor instanceof BatchActor) {
+                this.batch = new ArrayList<>();
+                this.batchView = Collections.unmodifiableList(batch);
+            } else {
+                this.batch = null;
+                this.batchView = null;
+            }
         }
 
         @Override
         public void send(Endpoint source, Object message) {
-            InternalEnvelope envelope = new InternalEnvelope(actorIndex, source, message);
-            queue.add(envelope);
+            Validate.notNull(source);
+            Validate.notNull(message);
+
+            Thread current = Thread.currentThread();
+            ActorRunnable currentHost = host;
+            if (currentHost != null && current == currentHost.thread && localFastPath) {
+                // sent by an actor hosted on this same thread, skip the mailbox (and the locks/atomics that come with it) entirely -- host
+                // can only be moved off of this runnable by this same thread, so there's no race with a migration here
+                localPending++;
+                currentHost.localQueue.add(this);
+                currentHost.localQueue.add(source);
+                currentHost.localQueue.add(message);
+                return;
+            }
+
+            inFlight.incrementAndGet(); // volatile write before reading host, see advanceOutgoing/advanceIncoming
+            try {
+                currentHost = host;
+                if (currentHost == null) {
+                    if (gate.enter(this, source, message, false)) {
+                        held.add(new Envelope(source, message));
+                        heldCount.incrementAndGet(); // after the gate, see advanceOutgoing
+                    }
+                    return;
+                }
+
+                if (gate.enter(this, source, message, current != currentHost.thread)
+                        && !currentHost.mailbox.put(this, source, message)) {
+                    gate.exit(); // dropped by the mailbox (closed, or this thread got interrupted waiting on it), give the spot back
+                }
+            } finally {
+                inFlight.decrementAndGet();
+            }
+        }
+
+        @Override
+        public String toString() {
+            return "InternalEndpoint{" + "actor=" + actor + '}';
         }
     }
 
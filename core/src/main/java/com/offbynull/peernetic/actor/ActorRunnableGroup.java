@@ -0,0 +1,392 @@
+package com.offbynull.peernetic.actor;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+import org.apache.commons.collections4.list.UnmodifiableList;
+import org.apache.commons.lang3.Validate;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+public final class ActorRunnableGroup {
+
+    private static final Logger LOG = LoggerFactory.getLogger(ActorRunnableGroup.class);
+
+    // a migration is only worth doing if the busiest thread is doing at least this much more work than the least busy one
+    private static final double REBALANCE_THRESHOLD = 0.25;
+
+    private final UnmodifiableList<ActorRunnable> actorRunnables;
+    private final Map<Actor, Endpoint> endpoints;
+    private final Map<Actor, Long> lastBusyNanos; // only touched while holding this
+    private final List<ActorListener> actorListeners;
+    private ScheduledExecutorService rebalancer; // only touched while holding this
+
+    public static ActorRunnableGroup createAndStart(Actor... actors) {
+        return createAndStart(Runtime.getRuntime().availableProcessors(), actors);
+    }
+
+    public static ActorRunnableGroup createAndStart(int shardCount, Actor... actors) {
+        return createAndStart(shardCount, BlockingQueueMailbox::new, actors);
+    }
+
+    public static ActorRunnableGroup createAndStart(int shardCount, Supplier<Mailbox> mailboxFactory, Actor... actors) {
+        return createAndStart(shardCount, mailboxFactory, MailboxLimit.UNBOUNDED, actors);
+    }
+
+    public static ActorRunnableGroup createAndStart(int shardCount, Supplier<Mailbox> mailboxFactory, MailboxLimit mailboxLimit,
+            Actor... actors) {
+        return createAndStart(shardCount, mailboxFactory, mailboxLimit, BlockingIdleStrategy.INSTANCE, actors);
+    }
+
+    public static ActorRunnableGroup createAndStart(int shardCount, Supplier<Mailbox> mailboxFactory, MailboxLimit mailboxLimit,
+            IdleStrategy idleStrategy, Actor... actors) {
+        Validate.isTrue(shardCount > 0);
+        Validate.notNull(mailboxFactory);
+        Validate.notNull(mailboxLimit);
+        Validate.notNull(idleStrategy);
+        Validate.noNullElements(actors);
+        Validate.isTrue(actors.length > 0);
+
+        // Each actor is pinned to exactly one shard, so it keeps being driven by a single thread and messages from a sender are still
+        // consumed in the order they were put on that shard's queue
+        int count = Math.min(shardCount, actors.length);
+        List<List<Actor>> shards = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            shards.add(new ArrayList<>());
+        }
+        for (int i = 0; i < actors.length; i++) {
+            shards.get(i % count).add(actors[i]);
+        }
+
+        ActorRunnableGroup group = start(shards, mailboxFactory, mailboxLimit, idleStrategy,
+                new DaemonThreadFactory(ActorRunnable.class.getSimpleName() + "-Thread-"));
+        LOG.info("Spread {} Actors across {} Actor threads", actors.length, count);
+        return group;
+    }
+
+    public static ActorRunnableGroup createAndStartThreadPerActor(Actor... actors) {
+        return createAndStartThreadPerActor(new DaemonThreadFactory(ActorRunnable.class.getSimpleName() + "-Actor-"), actors);
+    }
+
+    public static ActorRunnableGroup createAndStartThreadPerActor(ThreadFactory threadFactory, Actor... actors) {
+        return createAndStartThreadPerActor(threadFactory, BlockingQueueMailbox::new, actors);
+    }
+
+    public static ActorRunnableGroup createAndStartThreadPerActor(ThreadFactory threadFactory, Supplier<Mailbox> mailboxFactory,
+            Actor... actors) {
+        return createAndStartThreadPerActor(threadFactory, mailboxFactory, MailboxLimit.UNBOUNDED, actors);
+    }
+
+    public static ActorRunnableGroup createAndStartThreadPerActor(ThreadFactory threadFactory, Supplier<Mailbox> mailboxFactory,
+            MailboxLimit mailboxLimit, Actor... actors) {
+        return createAndStartThreadPerActor(threadFactory, mailboxFactory, mailboxLimit, BlockingIdleStrategy.INSTANCE, actors);
+    }
+
+    public static ActorRunnableGroup createAndStartThreadPerActor(ThreadFactory threadFactory, Supplier<Mailbox> mailboxFactory,
+            MailboxLimit mailboxLimit, IdleStrategy idleStrategy, Actor... actors) {
+        Validate.notNull(threadFactory);
+        Validate.notNull(mailboxFactory);
+        Validate.notNull(mailboxLimit);
+        Validate.notNull(idleStrategy);
+        Validate.noNullElements(actors);
+        Validate.isTrue(actors.length > 0);
+
+        // Every actor gets its own mailbox and its own thread, so an actor that blocks inside onStep only holds up itself. Pass in a
+        // factory that hands out cheap threads (e.g. Thread.ofVirtual().factory() on a runtime that has them) when running many actors.
+        List<List<Actor>> shards = new ArrayList<>(actors.length);
+        for (Actor actor : actors) {
+            shards.add(Collections.singletonList(actor));
+        }
+
+        ActorRunnableGroup group = start(shards, mailboxFactory, mailboxLimit, idleStrategy, threadFactory);
+        LOG.info("Started {} Actors on a thread each", actors.length);
+        return group;
+    }
+
+    private static ActorRunnableGroup start(List<List<Actor>> shards, Supplier<Mailbox> mailboxFactory, MailboxLimit mailboxLimit,
+            IdleStrategy idleStrategy, ThreadFactory threadFactory) {
+        // actors are told apart by identity, same as in ActorRunnable -- check every shard before any thread gets started
+        Set<Actor> seen = Collections.newSetFromMap(new IdentityHashMap<>());
+        for (List<Actor> shard : shards) {
+            for (Actor actor : shard) {
+                Validate.isTrue(seen.add(actor), "Duplicate actor");
+            }
+        }
+
+        Map<Actor, Endpoint> endpoints = new IdentityHashMap<>();
+        List<ActorRunnable> actorRunnables = new ArrayList<>(shards.size());
+        try {
+            for (List<Actor> shard : shards) {
+                Actor[] shardActors = shard.toArray(new Actor[0]);
+                ActorRunnable actorRunnable = ActorRunnable.createAndStart(threadFactory, mailboxFactory.get(), mailboxLimit,
+                        idleStrategy, shardActors);
+                actorRunnables.add(actorRunnable);
+                for (Actor actor : shardActors) {
+                    endpoints.put(actor, actorRunnable.getEndpoint(actor));
+                }
+            }
+        } catch (RuntimeException re) {
+            // don't leave the shards that did get going running with nothing pointing at them
+            for (ActorRunnable actorRunnable : actorRunnables) {
+                actorRunnable.getThread().interrupt();
+            }
+            throw re;
+        }
+
+        return new ActorRunnableGroup(actorRunnables, endpoints);
+    }
+
+    private ActorRunnableGroup(List<ActorRunnable> actorRunnables, Map<Actor, Endpoint> endpoints) {
+        this.actorRunnables = (UnmodifiableList<ActorRunnable>) UnmodifiableList.<ActorRunnable>unmodifiableList(
+                new ArrayList<>(actorRunnables));
+        this.endpoints = Collections.synchronizedMap(new IdentityHashMap<>(endpoints));
+        this.lastBusyNanos = new IdentityHashMap<>();
+        this.actorListeners = new CopyOnWriteArrayList<>();
+    }
+
+    // endpoint stays the same for as long as the actor is in the group, even if the actor gets moved to another thread
+    public Endpoint getEndpoint(Actor actor) {
+        Validate.notNull(actor);
+
+        Endpoint endpoint = endpoints.get(actor);
+        Validate.isTrue(endpoint != null, "Actor not found");
+
+        return endpoint;
+    }
+
+    public MailboxCounters getMailboxCounters(Actor actor) {
+        return ActorRunnable.getMailboxCounters(getEndpoint(actor));
+    }
+
+    public ActorMetrics getActorMetrics(Actor actor) {
+        return ActorRunnable.getActorMetrics(getEndpoint(actor));
+    }
+
+    // every actor in the group, wherever it's currently running
+    public UnmodifiableList<ActorMetrics> getAllActorMetrics() {
+        List<ActorMetrics> ret;
+        synchronized (endpoints) {
+            ret = new ArrayList<>(endpoints.size());
+            for (Endpoint endpoint : endpoints.values()) {
+                ret.add(ActorRunnable.getActorMetrics(endpoint));
+            }
+        }
+        return (UnmodifiableList<ActorMetrics>) UnmodifiableList.<ActorMetrics>unmodifiableList(ret);
+    }
+
+    void addActorListener(ActorListener listener) {
+        Validate.notNull(listener);
+        actorListeners.add(listener);
+    }
+
+    void removeActorListener(ActorListener listener) {
+        Validate.notNull(listener);
+        actorListeners.remove(listener);
+    }
+
+    // adds to whichever thread is hosting the fewest actors
+    public Endpoint addActor(Actor actor) {
+        Validate.notNull(actor);
+        Validate.isTrue(!endpoints.containsKey(actor), "Duplicate actor");
+
+        ActorRunnable target = null;
+        int targetSize = Integer.MAX_VALUE;
+        for (ActorRunnable actorRunnable : actorRunnables) {
+            int size = actorRunnable.getActors().size();
+            if (isRunning(actorRunnable) && size < targetSize) {
+                target = actorRunnable;
+                targetSize = size;
+            }
+        }
+        Validate.validState(target != null, "No running Actor threads");
+
+        Endpoint endpoint = target.addActor(actor);
+        Validate.isTrue(endpoints.putIfAbsent(actor, endpoint) == null, "Duplicate actor");
+        ActorMetrics actorMetrics = ActorRunnable.getActorMetrics(endpoint);
+        for (ActorListener listener : actorListeners) {
+            listener.actorAdded(actorMetrics);
+        }
+        return endpoint;
+    }
+
+    public void removeActor(Actor actor) {
+        Validate.notNull(actor);
+
+        Endpoint endpoint = endpoints.remove(actor);
+        Validate.isTrue(endpoint != null, "Actor not found");
+        ActorMetrics actorMetrics = ActorRunnable.getActorMetrics(endpoint);
+        for (ActorListener listener : actorListeners) {
+            listener.actorRemoved(actorMetrics);
+        }
+
+        ActorRunnable.requestRemove(endpoint);
+    }
+
+    public void migrateActor(Actor actor, ActorRunnable target) {
+        Validate.isTrue(actorRunnables.contains(target), "Target not in group");
+        ActorRunnable.requestMigrate(getEndpoint(actor), target);
+    }
+
+    // Looks at how much time each actor spent processing messages since the last call, and if the busiest thread is doing noticeably
+    // more work than the least busy one, moves one actor over. The actor picked is the one that gets the two threads closest to even.
+    // Returns true if a migration was kicked off.
+    public synchronized boolean rebalance() {
+        Map<ActorRunnable, Long> loads = new HashMap<>();
+        Map<ActorRunnable, Integer> sizes = new HashMap<>();
+        Map<Actor, Long> deltas = new IdentityHashMap<>();
+        for (ActorRunnable actorRunnable : actorRunnables) {
+            loads.put(actorRunnable, 0L);
+            sizes.put(actorRunnable, 0);
+        }
+
+        synchronized (endpoints) { // addActor/removeActor don't hold this, so guard the walk on the map itself
+            for (Map.Entry<Actor, Endpoint> entry : endpoints.entrySet()) {
+                Actor actor = entry.getKey();
+                Endpoint endpoint = entry.getValue();
+
+                long busyNanos = ActorRunnable.getActorMetrics(endpoint).getBusyNanos();
+                Long lastNanos = lastBusyNanos.put(actor, busyNanos);
+                long delta = busyNanos - (lastNanos == null ? 0L : lastNanos);
+                deltas.put(actor, delta);
+
+                ActorRunnable owner = ActorRunnable.getOwner(endpoint);
+                loads.merge(owner, delta, Long::sum);
+                sizes.merge(owner, 1, Integer::sum);
+            }
+            lastBusyNanos.keySet().retainAll(endpoints.keySet());
+        }
+
+        ActorRunnable busiest = null;
+        ActorRunnable idlest = null;
+        for (ActorRunnable actorRunnable : actorRunnables) {
+            if (!isRunning(actorRunnable)) {
+                continue;
+            }
+            long load = loads.get(actorRunnable);
+            if (busiest == null || load > loads.get(busiest)) {
+                busiest = actorRunnable;
+            }
+            if (idlest == null || load < loads.get(idlest)) {
+                idlest = actorRunnable;
+            }
+        }
+
+        if (busiest == null || busiest == idlest || sizes.get(busiest) < 2) {
+            return false;
+        }
+
+        long busiestLoad = loads.get(busiest);
+        long gap = busiestLoad - loads.get(idlest);
+        if (gap <= 0L || gap < busiestLoad * REBALANCE_THRESHOLD) {
+            return false;
+        }
+
+        Actor candidate = null;
+        long candidateDistance = Long.MAX_VALUE;
+        for (Actor actor : busiest.getActors()) {
+            Long delta = deltas.get(actor);
+            if (delta == null || delta <= 0L || delta >= gap) { // moving something as heavy as the gap just flips which one is busiest
+                continue;
+            }
+            long distance = Math.abs(gap / 2L - delta);
+            if (distance < candidateDistance) {
+                candidate = actor;
+                candidateDistance = distance;
+            }
+        }
+
+        if (candidate == null) {
+            return false;
+        }
+
+        LOG.debug("Rebalancing {} from {} to {}", candidate, busiest, idlest);
+        ActorRunnable.requestMigrate(endpoints.get(candidate), idlest);
+        return true;
+    }
+
+    public synchronized void startRebalancing(Duration interval) {
+        Validate.notNull(interval);
+        Validate.isTrue(!interval.isNegative() && !interval.isZero());
+        Validate.validState(rebalancer == null, "Already rebalancing");
+
+        long intervalNanos = interval.toNanos();
+        rebalancer = Executors.newSingleThreadScheduledExecutor(
+                new DaemonThreadFactory(ActorRunnableGroup.class.getSimpleName() + "-Rebalancer-"));
+        rebalancer.scheduleWithFixedDelay(() -> {
+            try {
+                rebalance();
+            } catch (RuntimeException re) {
+                LOG.error("Unable to rebalance", re);
+            }
+        }, intervalNanos, intervalNanos, TimeUnit.NANOSECONDS);
+    }
+
+    public synchronized void stopRebalancing() {
+        if (rebalancer != null) {
+            rebalancer.shutdownNow();
+            rebalancer = null;
+        }
+    }
+
+    // follows the actor around as it gets migrated, see ActorRunnable.getEndpointScheduler(Actor)
+    public EndpointScheduler getEndpointScheduler(Actor actor) {
+        return ActorRunnable.getEndpointScheduler(getEndpoint(actor));
+    }
+
+    // runnable currently responsible for the actor, this changes if the actor gets migrated
+    public ActorRunnable getActorRunnable(Actor actor) {
+        return ActorRunnable.getOwner(getEndpoint(actor));
+    }
+
+    public UnmodifiableList<ActorRunnable> getActorRunnables() {
+        return actorRunnables;
+    }
+
+    public void shutdown() throws InterruptedException {
+        stopRebalancing();
+
+        // Interrupt everything first so the shards wind down in parallel rather than one after the other
+        for (ActorRunnable actorRunnable : actorRunnables) {
+            actorRunnable.getThread().interrupt();
+        }
+
+        for (ActorRunnable actorRunnable : actorRunnables) {
+            actorRunnable.shutdown();
+        }
+    }
+
+    private static boolean isRunning(ActorRunnable actorRunnable) {
+        return actorRunnable.getState().ordinal() <= ActorRunnable.State.STARTED.ordinal();
+    }
+
+    private static final class DaemonThreadFactory implements ThreadFactory {
+
+        private final String namePrefix;
+        private final AtomicInteger counter = new AtomicInteger();
+
+        public DaemonThreadFactory(String namePrefix) {
+            Validate.notNull(namePrefix);
+            this.namePrefix = namePrefix;
+        }
+
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread thread = new Thread(r);
+            thread.setDaemon(true);
+            thread.setName(namePrefix + counter.getAndIncrement());
+            return thread;
+        }
+    }
+}
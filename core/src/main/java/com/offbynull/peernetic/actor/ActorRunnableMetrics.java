@@ -0,0 +1,104 @@
+package com.offbynull.peernetic.actor;
+
+import java.util.concurrent.atomic.AtomicLong;
+import org.apache.commons.lang3.Validate;
+
+public final class ActorRunnableMetrics implements ActorRunnableMetricsMXBean {
+
+    private final Mailbox mailbox;
+    private final IdleStrategy idleStrategy;
+    private final LogHistogram batchSize;
+    private final RateCounter processed;
+    private final AtomicLong busyNanos;
+    private final AtomicLong idleNanos;
+
+    ActorRunnableMetrics(Mailbox mailbox, IdleStrategy idleStrategy) {
+        Validate.notNull(mailbox);
+        Validate.notNull(idleStrategy);
+
+        this.mailbox = mailbox;
+        this.idleStrategy = idleStrategy;
+        this.batchSize = new LogHistogram();
+        this.processed = new RateCounter();
+        this.busyNanos = new AtomicLong();
+        this.idleNanos = new AtomicLong();
+    }
+
+    void recordIdle(long durationNanos) {
+        idleNanos.lazySet(idleNanos.get() + durationNanos);
+    }
+
+    void recordBatch(long endNanoTime, long durationNanos, int count) {
+        batchSize.record(count);
+        processed.record(endNanoTime, count);
+        busyNanos.lazySet(busyNanos.get() + durationNanos);
+    }
+
+    public LogHistogram getBatchSize() {
+        return batchSize;
+    }
+
+    @Override
+    public int getMailboxDepth() {
+        return mailbox.size();
+    }
+
+    @Override
+    public long getProcessedCount() {
+        return processed.getTotal();
+    }
+
+    @Override
+    public long getProcessedPerSecond() {
+        return processed.getPerSecond(System.nanoTime());
+    }
+
+    @Override
+    public long getBatchCount() {
+        return batchSize.getCount();
+    }
+
+    @Override
+    public long getBatchSizeP50() {
+        return batchSize.getPercentile(50.0);
+    }
+
+    @Override
+    public long getBatchSizeP99() {
+        return batchSize.getPercentile(99.0);
+    }
+
+    @Override
+    public long getBatchSizeMax() {
+        return batchSize.getMax();
+    }
+
+    @Override
+    public long getBusyNanos() {
+        return busyNanos.get();
+    }
+
+    @Override
+    public long getIdleNanos() {
+        return idleNanos.get();
+    }
+
+    @Override
+    public double getBusyRatio() {
+        long busy = getBusyNanos();
+        long total = busy + getIdleNanos();
+        return total == 0L ? 0.0 : (double) busy / total;
+    }
+
+    @Override
+    public String getIdleStrategy() {
+        return idleStrategy.toString();
+    }
+
+    @Override
+    public String toString() {
+        return "ActorRunnableMetrics{" + "mailboxDepth=" + getMailboxDepth() + ", processedCount=" + getProcessedCount()
+                + ", processedPerSecond=" + getProcessedPerSecond() + ", batchSize=" + batchSize + ", busyNanos=" + getBusyNanos()
+                + ", idleNanos=" + getIdleNanos() + ", idleStrategy=" + getIdleStrategy() + '}';
+    }
+}
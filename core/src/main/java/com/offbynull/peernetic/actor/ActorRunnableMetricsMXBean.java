@@ -0,0 +1,15 @@
+package com.offbynull.peernetic.actor;
+
+public interface ActorRunnableMetricsMXBean {
+    int getMailboxDepth();
+    long getProcessedCount();
+    long getProcessedPerSecond();
+    long getBatchCount();
+    long getBatchSizeP50();
+    long getBatchSizeP99();
+    long getBatchSizeMax();
+    long getBusyNanos();
+    long getIdleNanos();
+    double getBusyRatio();
+    String getIdleStrategy();
+}
@@ -0,0 +1,85 @@
+package com.offbynull.peernetic.actor;
+
+import java.time.Duration;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import org.apache.commons.lang3.Validate;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+// Periodically checks watched ActorRunnables for a handler (onStep/onStepBatch) that's been running for longer than the threshold. A
+// stalled handler holds up every other actor on the same thread, so when one is found the watchdog grabs the actor thread's stack, logs it,
+// and records it against the actor (see ActorMetrics.getStalls). Each stalled step is reported once.
+//
+// Checks run every threshold / 2, so a stall is caught somewhere between 1x and 1.5x the threshold in to the step.
+public final class ActorStallWatchdog implements AutoCloseable {
+
+    private static final Logger LOG = LoggerFactory.getLogger(ActorStallWatchdog.class);
+
+    private final long thresholdNanos;
+    private final Set<ActorRunnable> actorRunnables;
+    private final ScheduledExecutorService executor;
+
+    public ActorStallWatchdog(Duration threshold) {
+        Validate.notNull(threshold);
+        Validate.isTrue(!threshold.isNegative() && !threshold.isZero());
+
+        this.thresholdNanos = threshold.toNanos();
+        this.actorRunnables = new CopyOnWriteArraySet<>();
+        this.executor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "Actor stall watchdog");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        long periodNanos = Math.max(1L, thresholdNanos / 2L);
+        executor.scheduleAtFixedRate(this::check, periodNanos, periodNanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void watch(ActorRunnable actorRunnable) {
+        Validate.notNull(actorRunnable);
+        actorRunnables.add(actorRunnable);
+    }
+
+    public void watch(ActorRunnableGroup actorRunnableGroup) {
+        Validate.notNull(actorRunnableGroup);
+        actorRunnables.addAll(actorRunnableGroup.getActorRunnables());
+    }
+
+    public void unwatch(ActorRunnable actorRunnable) {
+        Validate.notNull(actorRunnable);
+        actorRunnables.remove(actorRunnable);
+    }
+
+    public void unwatch(ActorRunnableGroup actorRunnableGroup) {
+        Validate.notNull(actorRunnableGroup);
+        actorRunnables.removeAll(actorRunnableGroup.getActorRunnables());
+    }
+
+    @Override
+    public void close() {
+        executor.shutdownNow();
+        actorRunnables.clear();
+    }
+
+    private void check() {
+        for (ActorRunnable actorRunnable : actorRunnables) {
+            if (actorRunnable.getState() == ActorRunnable.State.STOPPED) {
+                actorRunnables.remove(actorRunnable);
+                continue;
+            }
+
+            try {
+                SlowStep stall = actorRunnable.checkForStall(thresholdNanos);
+                if (stall != null) {
+                    LOG.warn("Actor handler stalled: {}", stall);
+                }
+            } catch (RuntimeException re) {
+                LOG.error("Unable to check actor thread for stalls", re);
+            }
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package com.offbynull.peernetic.actor;
+
+import java.util.Objects;
+
+// Coalesces messages with the Idempotent annotation on their class, keyed by recipient, message class and (if the message implements
+// CoalescingKey) its coalescing key. Lookups are cached per class.
+public final class AnnotationCoalescingClassifier implements CoalescingClassifier {
+
+    public static final AnnotationCoalescingClassifier INSTANCE = new AnnotationCoalescingClassifier();
+
+    private static final ClassValue<Boolean> IDEMPOTENT = new ClassValue<Boolean>() {
+        @Override
+        protected Boolean computeValue(Class<?> type) {
+            return type.isAnnotationPresent(Idempotent.class);
+        }
+    };
+
+    private AnnotationCoalescingClassifier() {
+        // do nothing
+    }
+
+    @Override
+    public Object classify(Object recipient, Endpoint source, Object message) {
+        Class<?> type = message.getClass();
+        if (!IDEMPOTENT.get(type)) {
+            return null;
+        }
+
+        Object key = message instanceof CoalescingKey ? ((CoalescingKey) message).getCoalescingKey() : null;
+        return new Key(recipient, type, key);
+    }
+
+    private static final class Key {
+        private final Object recipient;
+        private final Class<?> type;
+        private final Object key;
+
+        public Key(Object recipient, Class<?> type, Object key) {
+            this.recipient = recipient;
+            this.type = type;
+            this.key = key;
+        }
+
+        @Override
+        public int hashCode() {
+            int hash = 7;
+            hash = 41 * hash + System.identityHashCode(recipient);
+            hash = 41 * hash + type.hashCode();
+            hash = 41 * hash + Objects.hashCode(key);
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (obj == null) {
+                return false;
+            }
+            if (getClass() != obj.getClass()) {
+                return false;
+            }
+            final Key other = (Key) obj;
+            return recipient == other.recipient && type == other.type && Objects.equals(key, other.key);
+        }
+    }
+}
@@ -0,0 +1,24 @@
+package com.offbynull.peernetic.actor;
+
+// Classifies messages by the MessagePriority annotation on their class, anything not annotated is NORMAL. Lookups are cached per class.
+public final class AnnotationPriorityClassifier implements PriorityClassifier {
+
+    public static final AnnotationPriorityClassifier INSTANCE = new AnnotationPriorityClassifier();
+
+    private static final ClassValue<Priority> PRIORITIES = new ClassValue<Priority>() {
+        @Override
+        protected Priority computeValue(Class<?> type) {
+            MessagePriority messagePriority = type.getAnnotation(MessagePriority.class);
+            return messagePriority == null ? Priority.NORMAL : messagePriority.value();
+        }
+    };
+
+    private AnnotationPriorityClassifier() {
+        // do nothing
+    }
+
+    @Override
+    public Priority classify(Object recipient, Endpoint source, Object message) {
+        return PRIORITIES.get(message.getClass());
+    }
+}
@@ -0,0 +1,11 @@
+package com.offbynull.peernetic.actor;
+
+import java.time.Instant;
+import java.util.List;
+
+// Actors implementing this have all messages drained for them in a single pass of ActorRunnable handed over in one onStepBatch call,
+// instead of having onStep invoked for each message as it's drained.
+public interface BatchActor extends Actor {
+    @Override
+    void onStepBatch(Instant time, List<Envelope> envelopes) throws Exception;
+}
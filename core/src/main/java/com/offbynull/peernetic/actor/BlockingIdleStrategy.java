@@ -0,0 +1,25 @@
+package com.offbynull.peernetic.actor;
+
+// Blocks on the mailbox until something arrives. Uses no CPU while idle, but every burst pays the cost of waking the thread back up.
+public final class BlockingIdleStrategy implements IdleStrategy {
+
+    public static final BlockingIdleStrategy INSTANCE = new BlockingIdleStrategy();
+
+    private BlockingIdleStrategy() {
+        // do nothing
+    }
+
+    @Override
+    public boolean idle(Mailbox mailbox, long timeoutNanos) throws InterruptedException {
+        if (timeoutNanos == Long.MAX_VALUE) {
+            mailbox.await();
+            return true;
+        }
+        return mailbox.await(timeoutNanos);
+    }
+
+    @Override
+    public String toString() {
+        return "BlockingIdleStrategy";
+    }
+}
@@ -0,0 +1,85 @@
+package com.offbynull.peernetic.actor;
+
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import org.apache.commons.lang3.Validate;
+
+public final class BlockingQueueMailbox implements Mailbox {
+
+    private final LinkedBlockingQueue<Entry> queue;
+    private Entry taken; // entry pulled off by await() but not yet drained, only touched by consumer thread
+
+    public BlockingQueueMailbox() {
+        queue = new LinkedBlockingQueue<>();
+    }
+
+    @Override
+    public boolean put(Object recipient, Endpoint source, Object message) {
+        return queue.add(new Entry(recipient, source, message));
+    }
+
+    @Override
+    public int drain(MailboxConsumer consumer, int maxCount) throws InterruptedException {
+        Validate.notNull(consumer);
+        Validate.isTrue(maxCount > 0);
+
+        int count = 0;
+        Entry env = taken;
+        taken = null;
+        if (env == null) {
+            env = queue.poll();
+        }
+
+        while (env != null) {
+            consumer.accept(env.recipient, env.source, env.message);
+            count++;
+            if (count == maxCount) {
+                break;
+            }
+            env = queue.poll();
+        }
+
+        return count;
+    }
+
+    @Override
+    public void await() throws InterruptedException {
+        if (taken == null) {
+            taken = queue.take();
+        }
+    }
+
+    @Override
+    public boolean await(long timeoutNanos) throws InterruptedException {
+        if (taken == null) {
+            taken = queue.poll(timeoutNanos, TimeUnit.NANOSECONDS);
+        }
+        return taken != null;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return taken == null && queue.isEmpty();
+    }
+
+    @Override
+    public int size() {
+        return queue.size() + (taken == null ? 0 : 1);
+    }
+
+    private static final class Entry {
+        private final Object recipient;
+        private final Endpoint source;
+        private final Object message;
+
+        public Entry(Object recipient, Endpoint source, Object message) {
+            Validate.notNull(recipient);
+            Validate.notNull(source);
+            Validate.notNull(message);
+
+            this.recipient = recipient;
+            this.source = source;
+            this.message = message;
+        }
+    }
+}
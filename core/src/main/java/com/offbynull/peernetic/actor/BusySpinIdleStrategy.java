@@ -0,0 +1,31 @@
+package com.offbynull.peernetic.actor;
+
+// Polls the mailbox in a tight loop. Lowest possible wake-up latency, but burns a full core while idle -- only use when there's a core
+// to spare for each actor thread.
+public final class BusySpinIdleStrategy implements IdleStrategy {
+
+    public static final BusySpinIdleStrategy INSTANCE = new BusySpinIdleStrategy();
+
+    private BusySpinIdleStrategy() {
+        // do nothing
+    }
+
+    @Override
+    public boolean idle(Mailbox mailbox, long timeoutNanos) throws InterruptedException {
+        long start = System.nanoTime();
+        while (mailbox.isEmpty()) {
+            if (Thread.interrupted()) {
+                throw new InterruptedException();
+            }
+            if (timeoutNanos != Long.MAX_VALUE && System.nanoTime() - start >= timeoutNanos) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public String toString() {
+        return "BusySpinIdleStrategy";
+    }
+}
@@ -0,0 +1,7 @@
+package com.offbynull.peernetic.actor;
+
+@FunctionalInterface
+public interface Cancellable {
+    // returns true if this call prevented the scheduled message from being delivered, false if it was already delivered or cancelled
+    boolean cancel();
+}
@@ -0,0 +1,8 @@
+package com.offbynull.peernetic.actor;
+
+@FunctionalInterface
+public interface CoalescingClassifier {
+    // called by producer threads, so implementations must be thread-safe -- return null if message shouldn't be coalesced, otherwise
+    // return a key (with proper equals/hashCode) that matches every other message this one is allowed to replace
+    Object classify(Object recipient, Endpoint source, Object message);
+}
@@ -0,0 +1,7 @@
+package com.offbynull.peernetic.actor;
+
+// Optionally implemented by Idempotent messages to narrow down which pending instances replace each other -- instances only coalesce if
+// their keys are equal.
+public interface CoalescingKey {
+    Object getCoalescingKey();
+}
@@ -0,0 +1,188 @@
+package com.offbynull.peernetic.actor;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import org.apache.commons.lang3.Validate;
+
+// Wraps another mailbox and keeps at most one pending instance of each coalescable message (as decided by the classifier). The first
+// instance puts a slot in to the wrapped mailbox, and every instance that comes in before that slot gets drained replaces the message in
+// the slot rather than being queued up. The consumer gets the latest message at the position of the first one, and is told how many
+// older ones got thrown away through MailboxConsumer.discarded(). Once an actor falls behind, the amount of work waiting for it from
+// periodic ticks stays the same no matter how long it was stalled for.
+//
+// Anything the classifier doesn't coalesce passes straight through to the wrapped mailbox. The recipient, source and message handed to the
+// wrapped mailbox on put are the original ones, so classifiers of the wrapped mailbox (e.g. PriorityLaneMailbox) still see exactly what
+// was put. Slots are found again on drain by classifying what comes out, so the classifier has to give back the same key every time.
+public final class CoalescingMailbox implements Mailbox {
+
+    private final Mailbox delegate;
+    private final CoalescingClassifier classifier;
+    private final ConcurrentMap<Object, Slot> slots;
+    private final ConcurrentLinkedQueue<Slot> abandoned;
+    private final SlotConsumer slotConsumer; // only touched by consumer thread
+
+    public CoalescingMailbox(Mailbox delegate) {
+        this(delegate, AnnotationCoalescingClassifier.INSTANCE);
+    }
+
+    public CoalescingMailbox(Mailbox delegate, CoalescingClassifier classifier) {
+        Validate.notNull(delegate);
+        Validate.notNull(classifier);
+
+        this.delegate = delegate;
+        this.classifier = classifier;
+        this.slots = new ConcurrentHashMap<>();
+        this.abandoned = new ConcurrentLinkedQueue<>();
+        this.slotConsumer = new SlotConsumer();
+    }
+
+    @Override
+    public boolean put(Object recipient, Endpoint source, Object message) {
+        Validate.notNull(recipient);
+        Validate.notNull(source);
+        Validate.notNull(message);
+
+        Object key = classifier.classify(recipient, source, message);
+        if (key == null) {
+            return delegate.put(recipient, source, message);
+        }
+
+        while (true) {
+            Slot slot = new Slot(key, recipient, source, message);
+            Slot existing = slots.putIfAbsent(key, slot);
+            if (existing == null) {
+                if (delegate.put(recipient, source, message)) {
+                    return true;
+                }
+                abandon(slot);
+                return false;
+            }
+
+            synchronized (existing) {
+                if (existing.open) {
+                    existing.source = source;
+                    existing.message = message;
+                    existing.discarded++;
+                    return true;
+                }
+            }
+            // slot got drained between the lookup and the lock, it's removed from the map (or is about to be) so try again
+            slots.remove(key, existing);
+        }
+    }
+
+    // wrapped mailbox dropped the slot, so nothing more can be coalesced in to it -- whatever already was got accepted by put and is now
+    // gone, so it's reported as discarded on the next drain
+    private void abandon(Slot slot) {
+        synchronized (slot) {
+            slot.open = false;
+        }
+        slots.remove(slot.key, slot);
+        if (slot.discarded > 0) {
+            abandoned.add(slot);
+        }
+    }
+
+    public CoalescingClassifier getClassifier() {
+        return classifier;
+    }
+
+    @Override
+    public int drain(MailboxConsumer consumer, int maxCount) throws InterruptedException {
+        Validate.notNull(consumer);
+        Slot abandonedSlot;
+        while ((abandonedSlot = abandoned.poll()) != null) {
+            consumer.discarded(abandonedSlot.recipient, abandonedSlot.discarded);
+        }
+
+        slotConsumer.consumer = consumer;
+        try {
+            return delegate.drain(slotConsumer, maxCount);
+        } finally {
+            slotConsumer.consumer = null;
+        }
+    }
+
+    @Override
+    public void await() throws InterruptedException {
+        delegate.await();
+    }
+
+    @Override
+    public boolean await(long timeoutNanos) throws InterruptedException {
+        return delegate.await(timeoutNanos);
+    }
+
+    @Override
+    public boolean isOrdered() {
+        return delegate.isOrdered();
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return delegate.isEmpty();
+    }
+
+    @Override
+    public int size() {
+        return delegate.size();
+    }
+
+    @Override
+    public void close() {
+        delegate.close();
+    }
+
+    private final class SlotConsumer implements MailboxConsumer {
+        private MailboxConsumer consumer;
+
+        @Override
+        public void accept(Object recipient, Endpoint source, Object message) throws InterruptedException {
+            // anything with a key went in as a slot, and at most one slot per key is ever waiting in the wrapped mailbox
+            Object key = classifier.classify(recipient, source, message);
+            Slot slot = key == null ? null : slots.get(key);
+            if (slot == null) {
+                consumer.accept(recipient, source, message);
+                return;
+            }
+
+            Endpoint latestSource;
+            Object latestMessage;
+            int discarded;
+            synchronized (slot) {
+                slot.open = false;
+                latestSource = slot.source;
+                latestMessage = slot.message;
+                discarded = slot.discarded;
+            }
+            slots.remove(slot.key, slot);
+
+            if (discarded > 0) {
+                consumer.discarded(slot.recipient, discarded);
+            }
+            consumer.accept(slot.recipient, latestSource, latestMessage);
+        }
+
+        @Override
+        public void discarded(Object recipient, int count) throws InterruptedException {
+            consumer.discarded(recipient, count);
+        }
+    }
+
+    private static final class Slot {
+        private final Object key;
+        private final Object recipient;
+        private Endpoint source; // guarded by this
+        private Object message; // guarded by this
+        private int discarded; // guarded by this
+        private boolean open = true; // guarded by this
+
+        public Slot(Object key, Object recipient, Endpoint source, Object message) {
+            this.key = key;
+            this.recipient = recipient;
+            this.source = source;
+            this.message = message;
+        }
+    }
+}
@@ -0,0 +1,29 @@
+package com.offbynull.peernetic.actor;
+
+import org.apache.commons.lang3.Validate;
+
+public final class Envelope {
+    private final Endpoint source;
+    private final Object message;
+
+    public Envelope(Endpoint source, Object message) {
+        Validate.notNull(source);
+        Validate.notNull(message);
+
+        this.source = source;
+        this.message = message;
+    }
+
+    public Endpoint getSource() {
+        return source;
+    }
+
+    public Object getMessage() {
+        return message;
+    }
+
+    @Override
+    public String toString() {
+        return "Envelope{" + "source=" + source + ", message=" + message + '}';
+    }
+}
@@ -0,0 +1,19 @@
+package com.offbynull.peernetic.actor;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Inherited;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+// Marks a message type where handling the latest pending instance is as good as handling all of them (e.g. timer ticks), so
+// CoalescingMailbox is free to throw away older instances still waiting in the mailbox. An ActorRunnable with a CoalescingMailbox does the
+// same for timers in its own timer queue that come due together, since those never go through the mailbox. Implement CoalescingKey on the
+// message if only instances with the same key should replace each other.
+@Documented
+@Inherited
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.TYPE)
+public @interface Idempotent {
+}
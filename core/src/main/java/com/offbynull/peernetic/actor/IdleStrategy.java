@@ -0,0 +1,9 @@
+package com.offbynull.peernetic.actor;
+
+// How an actor thread waits when it has nothing to do. Implementations must be safe to share between actor threads (keep any state
+// local to the call).
+public interface IdleStrategy {
+    // Waits until mailbox has something in it or timeoutNanos is up (Long.MAX_VALUE means wait forever). Returns true if there's something
+    // to drain. Only ever called by the mailbox's consumer thread.
+    boolean idle(Mailbox mailbox, long timeoutNanos) throws InterruptedException;
+}
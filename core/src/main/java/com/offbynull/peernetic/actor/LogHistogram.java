@@ -0,0 +1,78 @@
+package com.offbynull.peernetic.actor;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import org.apache.commons.lang3.Validate;
+
+// Histogram with power-of-2 buckets. Bucket i holds values in [2^(i-1), 2^i), so percentiles are only accurate to within a factor of 2, but
+// recording is a handful of instructions and the footprint is fixed. Must only be written to by a single thread (the actor thread), any
+// thread can read.
+public final class LogHistogram {
+
+    private static final int BUCKET_COUNT = 64;
+
+    private final AtomicLongArray buckets;
+    private final AtomicLong count;
+    private final AtomicLong max;
+
+    public LogHistogram() {
+        buckets = new AtomicLongArray(BUCKET_COUNT);
+        count = new AtomicLong();
+        max = new AtomicLong();
+    }
+
+    void record(long value) {
+        long clamped = Math.max(0L, value);
+        int bucket = Math.min(BUCKET_COUNT - 1, 64 - Long.numberOfLeadingZeros(clamped));
+
+        // single writer, so lazySet is enough to publish to readers without paying for a full fence on each record
+        buckets.lazySet(bucket, buckets.get(bucket) + 1L);
+        count.lazySet(count.get() + 1L);
+        if (clamped > max.get()) {
+            max.lazySet(clamped);
+        }
+    }
+
+    public long getCount() {
+        return count.get();
+    }
+
+    public long getMax() {
+        return max.get();
+    }
+
+    public long getPercentile(double percentile) {
+        Validate.isTrue(percentile >= 0.0 && percentile <= 100.0);
+
+        long[] snapshot = new long[BUCKET_COUNT];
+        long total = 0L;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            snapshot[i] = buckets.get(i);
+            total += snapshot[i];
+        }
+        if (total == 0L) {
+            return 0L;
+        }
+
+        long threshold = Math.max(1L, (long) Math.ceil(total * percentile / 100.0));
+        long seen = 0L;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            seen += snapshot[i];
+            if (seen >= threshold) {
+                if (i == 0) {
+                    return 0L;
+                }
+                long upperBound = i >= 63 ? Long.MAX_VALUE : (1L << i) - 1L;
+                return Math.min(upperBound, getMax());
+            }
+        }
+
+        return getMax();
+    }
+
+    @Override
+    public String toString() {
+        return "LogHistogram{" + "count=" + getCount() + ", p50=" + getPercentile(50.0) + ", p99=" + getPercentile(99.0) + ", max="
+                + getMax() + '}';
+    }
+}
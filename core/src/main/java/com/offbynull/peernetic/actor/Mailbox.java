@@ -0,0 +1,31 @@
+package com.offbynull.peernetic.actor;
+
+// Mailboxes are multi-producer/single-consumer. Any thread may put, but drain and await must only ever be called by the one thread
+// that consumes the mailbox. The recipient is an opaque token supplied by the runtime and is handed back as-is on drain.
+public interface Mailbox {
+    // returns false if the message was dropped instead of queued (e.g. mailbox was closed, or the calling thread got interrupted while
+    // waiting for room) -- the interrupt flag is left set in that case
+    boolean put(Object recipient, Endpoint source, Object message);
+
+    int drain(MailboxConsumer consumer, int maxCount) throws InterruptedException;
+
+    void await() throws InterruptedException;
+
+    // like await, but gives up after timeoutNanos -- returns true if there's something to drain
+    boolean await(long timeoutNanos) throws InterruptedException;
+
+    boolean isEmpty();
+
+    int size();
+
+    // true if drain hands back each recipient's messages in the order they were put in -- MailboxGate relies on this for DROP_OLDEST
+    default boolean isOrdered() {
+        return true;
+    }
+
+    // called once the consumer has stopped for good, nothing gets drained past this point -- mailboxes that can make producers wait should
+    // let them go (and drop whatever they were putting)
+    default void close() {
+        // do nothing
+    }
+}
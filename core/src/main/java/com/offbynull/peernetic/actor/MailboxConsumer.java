@@ -0,0 +1,12 @@
+package com.offbynull.peernetic.actor;
+
+@FunctionalInterface
+public interface MailboxConsumer {
+    void accept(Object recipient, Endpoint source, Object message) throws InterruptedException;
+
+    // called when the mailbox threw away count messages for recipient without handing them to accept (e.g. superseded by a newer message
+    // in CoalescingMailbox) -- lets the consumer keep its accounting for recipient straight
+    default void discarded(Object recipient, int count) throws InterruptedException {
+        // do nothing
+    }
+}
@@ -0,0 +1,58 @@
+package com.offbynull.peernetic.actor;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+public final class MailboxCounters {
+
+    final AtomicInteger pending = new AtomicInteger();
+    final LongAdder accepted = new LongAdder();
+    final LongAdder blocked = new LongAdder();
+    final LongAdder droppedNewest = new LongAdder();
+    final LongAdder droppedOldest = new LongAdder();
+    final LongAdder rejected = new LongAdder();
+    final LongAdder coalesced = new LongAdder();
+
+    MailboxCounters() {
+        // only created by MailboxGate
+    }
+
+    public int getPending() {
+        return pending.get();
+    }
+
+    public long getAccepted() {
+        return accepted.sum();
+    }
+
+    public long getBlocked() {
+        return blocked.sum();
+    }
+
+    public long getDroppedNewest() {
+        return droppedNewest.sum();
+    }
+
+    public long getDroppedOldest() {
+        return droppedOldest.sum();
+    }
+
+    public long getRejected() {
+        return rejected.sum();
+    }
+
+    public long getCoalesced() {
+        return coalesced.sum();
+    }
+
+    public long getShed() {
+        return droppedNewest.sum() + droppedOldest.sum() + rejected.sum();
+    }
+
+    @Override
+    public String toString() {
+        return "MailboxCounters{" + "pending=" + getPending() + ", accepted=" + getAccepted() + ", blocked=" + getBlocked()
+                + ", droppedNewest=" + getDroppedNewest() + ", droppedOldest=" + getDroppedOldest() + ", rejected=" + getRejected() + ", coalesced="
+                + getCoalesced() + '}';
+    }
+}
@@ -0,0 +1,173 @@
+package com.offbynull.peernetic.actor;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import org.apache.commons.lang3.Validate;
+
+// Enforces a MailboxLimit for a single actor. Every message put in to the shared mailbox for the actor must pass through enter(), and
+// every message taken out must pass through exit(), so that pending tracks how many live messages the actor has queued up.
+//
+// DROP_OLDEST can't pull the oldest message back out of the mailbox, so instead it bumps a skip counter and lets the new message take over
+// the oldest one's spot. The next skip messages the consumer sees for the actor are the oldest ones queued, and they get thrown away in
+// exit(). Skip is never allowed to go over capacity (anything past that drops the newest message instead), so the mailbox holds at most
+// twice the capacity for an actor.
+final class MailboxGate {
+
+    private final MailboxLimit limit;
+    private final MailboxCounters counters;
+    private final AtomicInteger skip;
+
+    private final Lock lock;
+    private final Condition notFullCondition;
+    private volatile int waiters;
+    private volatile boolean closed;
+
+    public MailboxGate(MailboxLimit limit) {
+        Validate.notNull(limit);
+
+        this.limit = limit;
+        this.counters = new MailboxCounters();
+        this.skip = new AtomicInteger();
+        this.lock = new ReentrantLock();
+        this.notFullCondition = lock.newCondition();
+    }
+
+    public MailboxLimit getLimit() {
+        return limit;
+    }
+
+    public MailboxCounters getCounters() {
+        return counters;
+    }
+
+    // returns true if message should be put in to the mailbox
+    public boolean enter(Endpoint destination, Endpoint source, Object message, boolean mayBlock) {
+        if (closed) {
+            return false;
+        }
+
+        AtomicInteger pending = counters.pending;
+        if (!limit.isBounded()) {
+            pending.incrementAndGet();
+            counters.accepted.increment();
+            return true;
+        }
+
+        int capacity = limit.getCapacity();
+        boolean waited = false;
+        while (true) {
+            int current = pending.get();
+            if (current < capacity) {
+                if (pending.compareAndSet(current, current + 1)) {
+                    counters.accepted.increment();
+                    return true;
+                }
+                continue;
+            }
+
+            switch (limit.getPolicy()) {
+                case BLOCK: {
+                    if (!mayBlock) {
+                        // the actor's own thread can't wait for itself to make room, let it go over capacity
+                        pending.incrementAndGet();
+                        counters.accepted.increment();
+                        return true;
+                    }
+                    if (!waited) {
+                        waited = true;
+                        counters.blocked.increment();
+                    }
+                    if (!awaitNotFull(capacity)) {
+                        counters.droppedNewest.increment();
+                        return false;
+                    }
+                    break;
+                }
+                case DROP_NEWEST: {
+                    counters.droppedNewest.increment();
+                    return false;
+                }
+                case DROP_OLDEST: {
+                    int currentSkip = skip.get();
+                    if (currentSkip >= capacity) {
+                        counters.droppedNewest.increment();
+                        return false;
+                    }
+                    if (skip.compareAndSet(currentSkip, currentSkip + 1)) {
+                        counters.droppedOldest.increment();
+                        counters.accepted.increment();
+                        return true;
+                    }
+                    break;
+                }
+                case REJECT: {
+                    counters.rejected.increment();
+                    limit.getRejectionHandler().rejected(destination, source, message);
+                    return false;
+                }
+                default:
+                    throw new IllegalStateException();
+            }
+        }
+    }
+
+    // returns true if message should be processed, false if it was displaced by DROP_OLDEST
+    public boolean exit() {
+        while (true) {
+            int currentSkip = skip.get();
+            if (currentSkip == 0) {
+                break;
+            }
+            if (skip.compareAndSet(currentSkip, currentSkip - 1)) {
+                return false; // newer message took over this one's spot in pending, so don't decrement
+            }
+        }
+
+        counters.pending.decrementAndGet();
+        if (waiters > 0) { // volatile read after pending was decremented, see awaitNotFull
+            lock.lock();
+            try {
+                notFullCondition.signal();
+            } finally {
+                lock.unlock();
+            }
+        }
+        return true;
+    }
+
+    // true if every message that went through enter() has come back out through exit(), other than the held ones the caller has kept
+    // out of the mailbox itself
+    public boolean isIdle(int held) {
+        return counters.pending.get() + skip.get() == held;
+    }
+
+    public void close() {
+        closed = true;
+        lock.lock();
+        try {
+            notFullCondition.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private boolean awaitNotFull(int capacity) {
+        lock.lock();
+        try {
+            waiters++;
+            while (!closed && counters.pending.get() >= capacity) {
+                notFullCondition.await();
+            }
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+            return false;
+        } finally {
+            waiters--;
+            lock.unlock();
+        }
+
+        return !closed;
+    }
+}
@@ -0,0 +1,47 @@
+package com.offbynull.peernetic.actor;
+
+import org.apache.commons.lang3.Validate;
+
+public final class MailboxLimit {
+
+    public static final MailboxLimit UNBOUNDED = new MailboxLimit(Integer.MAX_VALUE, OverloadPolicy.BLOCK);
+
+    private final int capacity;
+    private final OverloadPolicy policy;
+    private final RejectionHandler rejectionHandler;
+
+    public MailboxLimit(int capacity, OverloadPolicy policy) {
+        this(capacity, policy, (destination, source, message) -> { });
+    }
+
+    public MailboxLimit(int capacity, OverloadPolicy policy, RejectionHandler rejectionHandler) {
+        Validate.isTrue(capacity > 0);
+        Validate.notNull(policy);
+        Validate.notNull(rejectionHandler);
+
+        this.capacity = capacity;
+        this.policy = policy;
+        this.rejectionHandler = rejectionHandler;
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public OverloadPolicy getPolicy() {
+        return policy;
+    }
+
+    public RejectionHandler getRejectionHandler() {
+        return rejectionHandler;
+    }
+
+    public boolean isBounded() {
+        return capacity != Integer.MAX_VALUE;
+    }
+
+    @Override
+    public String toString() {
+        return "MailboxLimit{" + "capacity=" + capacity + ", policy=" + policy + '}';
+    }
+}
@@ -0,0 +1,19 @@
+package com.offbynull.peernetic.actor;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Inherited;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+// Picks the PriorityLaneMailbox lane for a message type. Timers from an ActorRunnable's own EndpointScheduler that fire on the thread
+// hosting their destination skip the mailbox and already run before anything queued, this only matters for them when the destination is
+// hosted elsewhere or the scheduler is an external one (e.g. TimingWheelEndpointScheduler).
+@Documented
+@Inherited
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.TYPE)
+public @interface MessagePriority {
+    Priority value();
+}
@@ -0,0 +1,8 @@
+package com.offbynull.peernetic.actor;
+
+public enum OverloadPolicy {
+    BLOCK,
+    DROP_NEWEST,
+    DROP_OLDEST,
+    REJECT
+}
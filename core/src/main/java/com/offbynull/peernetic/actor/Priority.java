@@ -0,0 +1,8 @@
+package com.offbynull.peernetic.actor;
+
+public enum Priority {
+    // control traffic -- timers, start/stop, maintenance
+    HIGH,
+    // everything else
+    NORMAL
+}
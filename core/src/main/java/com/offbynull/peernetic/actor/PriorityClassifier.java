@@ -0,0 +1,7 @@
+package com.offbynull.peernetic.actor;
+
+@FunctionalInterface
+public interface PriorityClassifier {
+    // called by producer threads, so implementations must be thread-safe
+    Priority classify(Object recipient, Endpoint source, Object message);
+}
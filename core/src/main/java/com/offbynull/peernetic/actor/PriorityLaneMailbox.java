@@ -0,0 +1,178 @@
+package com.offbynull.peernetic.actor;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+import org.apache.commons.lang3.Validate;
+
+// Mailbox with a separate FIFO lane for HIGH priority (control) messages, so that things like timer ticks don't end up waiting behind
+// thousands of queued data messages. While both lanes have messages waiting, drain hands out up to highWeight HIGH messages for every
+// NORMAL message, so control traffic gets through quickly without being able to starve the data plane outright.
+//
+// Ordering is FIFO per lane. Messages from the same sender that land in different lanes may be consumed out of order, which is also why
+// ActorRunnable won't take this mailbox with OverloadPolicy.DROP_OLDEST.
+//
+// Only messages that actually get put into the mailbox are classified. Timers an ActorRunnable schedules for actors it hosts itself never
+// are, they fire ahead of each drain instead (see ActorRunnable.fireTimers).
+public final class PriorityLaneMailbox implements Mailbox {
+
+    public static final int DEFAULT_HIGH_WEIGHT = 8;
+
+    private final int highWeight;
+    private final PriorityClassifier classifier;
+    private final Queue<Entry> highLane;
+    private final Queue<Entry> normalLane;
+    private final AtomicInteger size;
+
+    private volatile Thread waitingThread;
+    private int highRun; // only touched by consumer thread
+
+    public PriorityLaneMailbox() {
+        this(DEFAULT_HIGH_WEIGHT, AnnotationPriorityClassifier.INSTANCE);
+    }
+
+    public PriorityLaneMailbox(int highWeight) {
+        this(highWeight, AnnotationPriorityClassifier.INSTANCE);
+    }
+
+    public PriorityLaneMailbox(int highWeight, PriorityClassifier classifier) {
+        Validate.isTrue(highWeight > 0);
+        Validate.notNull(classifier);
+
+        this.highWeight = highWeight;
+        this.classifier = classifier;
+        this.highLane = new ConcurrentLinkedQueue<>();
+        this.normalLane = new ConcurrentLinkedQueue<>();
+        this.size = new AtomicInteger();
+    }
+
+    @Override
+    public boolean put(Object recipient, Endpoint source, Object message) {
+        Entry entry = new Entry(recipient, source, message);
+
+        Priority priority = classifier.classify(recipient, source, message);
+        Validate.validState(priority != null, "Classifier returned null");
+        if (priority == Priority.HIGH) {
+            highLane.add(entry);
+        } else {
+            normalLane.add(entry);
+        }
+        size.incrementAndGet(); // volatile write, must be visible before checking for a parked consumer below
+
+        Thread waiting = waitingThread;
+        if (waiting != null) {
+            LockSupport.unpark(waiting);
+        }
+        return true;
+    }
+
+    @Override
+    public int drain(MailboxConsumer consumer, int maxCount) throws InterruptedException {
+        Validate.notNull(consumer);
+        Validate.isTrue(maxCount > 0);
+
+        int count = 0;
+        while (count < maxCount) {
+            Entry entry = null;
+            if (highRun < highWeight) {
+                entry = highLane.poll();
+            }
+
+            if (entry != null) {
+                highRun++;
+            } else {
+                entry = normalLane.poll();
+                highRun = 0;
+                if (entry == null) {
+                    entry = highLane.poll(); // nothing in normal lane, so high lane isn't held back by its weight
+                    if (entry == null) {
+                        break;
+                    }
+                    highRun = 1;
+                }
+            }
+
+            size.decrementAndGet();
+            count++;
+            consumer.accept(entry.recipient, entry.source, entry.message);
+        }
+
+        return count;
+    }
+
+    @Override
+    public void await() throws InterruptedException {
+        if (!isEmpty()) {
+            return;
+        }
+
+        waitingThread = Thread.currentThread();
+        try {
+            while (isEmpty()) { // volatile read of size after volatile write of waitingThread, so a concurrent put can't be missed
+                if (Thread.interrupted()) {
+                    throw new InterruptedException();
+                }
+                LockSupport.park(this);
+            }
+        } finally {
+            waitingThread = null;
+        }
+    }
+
+    @Override
+    public boolean await(long timeoutNanos) throws InterruptedException {
+        if (!isEmpty()) {
+            return true;
+        }
+
+        long deadline = System.nanoTime() + timeoutNanos;
+        waitingThread = Thread.currentThread();
+        try {
+            while (isEmpty()) {
+                if (Thread.interrupted()) {
+                    throw new InterruptedException();
+                }
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0L) {
+                    return false;
+                }
+                LockSupport.parkNanos(this, remaining);
+            }
+            return true;
+        } finally {
+            waitingThread = null;
+        }
+    }
+
+    @Override
+    public boolean isOrdered() {
+        return false; // HIGH messages jump ahead, they'd use up DROP_OLDEST's skips in place of the older NORMAL ones
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return size.get() == 0;
+    }
+
+    @Override
+    public int size() {
+        return size.get();
+    }
+
+    private static final class Entry {
+        private final Object recipient;
+        private final Endpoint source;
+        private final Object message;
+
+        public Entry(Object recipient, Endpoint source, Object message) {
+            Validate.notNull(recipient);
+            Validate.notNull(source);
+            Validate.notNull(message);
+
+            this.recipient = recipient;
+            this.source = source;
+            this.message = message;
+        }
+    }
+}
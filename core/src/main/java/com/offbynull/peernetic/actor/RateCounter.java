@@ -0,0 +1,37 @@
+package com.offbynull.peernetic.actor;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Counts events in 1 second windows and exposes the count of the last full window. Written by a single thread, read by any.
+final class RateCounter {
+
+    private static final long WINDOW_NANOS = TimeUnit.SECONDS.toNanos(1L);
+
+    private final AtomicLong total = new AtomicLong();
+    private final AtomicLong lastWindow = new AtomicLong(Long.MIN_VALUE);
+    private final AtomicLong lastWindowCount = new AtomicLong();
+    private long currentWindow = Long.MIN_VALUE; // only touched by writer
+    private long currentWindowCount; // only touched by writer
+
+    public void record(long nanoTime, long amount) {
+        long window = nanoTime / WINDOW_NANOS;
+        if (window != currentWindow) {
+            lastWindowCount.lazySet(currentWindowCount);
+            lastWindow.lazySet(currentWindow);
+            currentWindow = window;
+            currentWindowCount = 0L;
+        }
+        currentWindowCount += amount;
+        total.lazySet(total.get() + amount);
+    }
+
+    public long getTotal() {
+        return total.get();
+    }
+
+    public long getPerSecond(long nanoTime) {
+        long window = nanoTime / WINDOW_NANOS;
+        return lastWindow.get() == window - 1L ? lastWindowCount.get() : 0L;
+    }
+}
@@ -0,0 +1,6 @@
+package com.offbynull.peernetic.actor;
+
+@FunctionalInterface
+public interface RejectionHandler {
+    void rejected(Endpoint destination, Endpoint source, Object message);
+}
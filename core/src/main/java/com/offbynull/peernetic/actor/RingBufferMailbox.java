@@ -0,0 +1,277 @@
+package com.offbynull.peernetic.actor;
+
+import java.util.ArrayDeque;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+import org.apache.commons.lang3.Validate;
+
+// Lock-free multi-producer/single-consumer mailbox backed by a fixed ring of envelope slots. Producers claim a position with a single
+// atomic increment, fill in the slot and then publish it by bumping the slot's sequence number. The consumer releases a slot back to
+// producers once it has copied out its contents, so slots are reused forever and nothing is allocated per message.
+//
+// The ring is bounded. A producer that finds the ring full waits for the consumer to catch up. The consumer thread itself can never wait
+// on its own mailbox (an actor messaging a co-hosted actor would deadlock), so when it finds the ring full it spills into an unbounded
+// overflow queue instead. A waiting producer that gets interrupted gives up and drops its message, leaving the interrupt flag set. Once
+// the mailbox is closed, waiting producers give up and anything put from then on is dropped.
+public final class RingBufferMailbox implements Mailbox {
+
+    public static final int DEFAULT_CAPACITY = 8192;
+
+    private final int capacity;
+    private final int mask;
+    private final AtomicLongArray sequences;
+    private final Object[] recipients;
+    private final Endpoint[] sources;
+    private final Object[] messages;
+
+    private final AtomicLong tail;
+    private final AtomicLong head;
+
+    private volatile Thread consumerThread;
+    private volatile Thread waitingThread;
+    private volatile boolean closed;
+
+    // only touched by consumer thread
+    private final ArrayDeque<Object> overflow;
+    private volatile int overflowSize; // messages in overflow, only written by consumer thread so size() can be read from anywhere
+    private long overflowBoundary;
+    private long lastConsumerPosition = -1L;
+    private boolean preferOverflow;
+
+    public RingBufferMailbox() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    public RingBufferMailbox(int capacity) {
+        Validate.isTrue(capacity > 0 && capacity <= (1 << 30));
+
+        int actualCapacity = 2; // with a single slot, "published for this lap" and "free for the next lap" would be the same sequence
+        while (actualCapacity < capacity) {
+            actualCapacity <<= 1;
+        }
+
+        this.capacity = actualCapacity;
+        this.mask = actualCapacity - 1;
+        this.sequences = new AtomicLongArray(actualCapacity);
+        this.recipients = new Object[actualCapacity];
+        this.sources = new Endpoint[actualCapacity];
+        this.messages = new Object[actualCapacity];
+        this.tail = new AtomicLong();
+        this.head = new AtomicLong();
+        this.overflow = new ArrayDeque<>();
+
+        for (int i = 0; i < actualCapacity; i++) {
+            sequences.set(i, i);
+        }
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    @Override
+    public boolean put(Object recipient, Endpoint source, Object message) {
+        Validate.notNull(recipient);
+        Validate.notNull(source);
+        Validate.notNull(message);
+
+        if (closed) {
+            return false;
+        }
+
+        long pos;
+        if (Thread.currentThread() == consumerThread) {
+            pos = claimFromConsumer();
+            if (pos == -1L) {
+                overflow.add(recipient);
+                overflow.add(source);
+                overflow.add(message);
+                overflowSize++;
+                return true;
+            }
+        } else {
+            pos = claimFromProducer();
+            if (pos == -1L) {
+                return false; // closed or interrupted while waiting for a slot
+            }
+        }
+
+        int idx = (int) pos & mask;
+        recipients[idx] = recipient;
+        sources[idx] = source;
+        messages[idx] = message;
+        sequences.set(idx, pos + 1L); // volatile write, must be visible before checking for a parked consumer below
+
+        Thread waiting = waitingThread;
+        if (waiting != null) {
+            LockSupport.unpark(waiting);
+        }
+        return true;
+    }
+
+    private long claimFromProducer() {
+        int spins = 0;
+        while (true) {
+            long pos = tail.get();
+            int idx = (int) pos & mask;
+            long seq = sequences.get(idx);
+            if (seq == pos) {
+                if (tail.compareAndSet(pos, pos + 1L)) {
+                    return pos;
+                }
+                continue; // another producer claimed it first
+            } else if (seq > pos) {
+                continue; // another producer claimed it first and tail has moved on since it was read
+            }
+
+            // ring is full, wait for consumer to free up this slot -- unless it's never going to or this thread is asked to stop. A
+            // position is only ever claimed once its slot is free, so giving up here can't leave a hole the consumer would wait on.
+            if (closed || Thread.currentThread().isInterrupted()) {
+                return -1L;
+            }
+            spins++;
+            if (spins < 100) {
+                Thread.yield();
+            } else {
+                LockSupport.parkNanos(this, 10000L);
+            }
+        }
+    }
+
+    private long claimFromConsumer() {
+        if (overflowSize != 0) {
+            return -1L; // once spilling has started, keep spilling until overflow is drained so this thread's messages stay in order
+        }
+
+        while (true) {
+            long pos = tail.get();
+            int idx = (int) pos & mask;
+            if (sequences.get(idx) != pos) {
+                // ring is full -- anything this thread put in to the ring before now has to be consumed before what's about to spill
+                overflowBoundary = lastConsumerPosition + 1L;
+                return -1L;
+            }
+
+            if (tail.compareAndSet(pos, pos + 1L)) {
+                lastConsumerPosition = pos;
+                return pos;
+            }
+        }
+    }
+
+    @Override
+    public int drain(MailboxConsumer consumer, int maxCount) throws InterruptedException {
+        Validate.notNull(consumer);
+        Validate.isTrue(maxCount > 0);
+        bindConsumerThread();
+
+        int count = 0;
+        while (count < maxCount) {
+            long pos = head.get();
+            int idx = (int) pos & mask;
+            boolean ringReady = sequences.get(idx) == pos + 1L;
+            boolean overflowReady = overflowSize != 0 && pos >= overflowBoundary;
+
+            if (overflowReady && (!ringReady || preferOverflow)) {
+                Object recipient = overflow.poll();
+                Endpoint source = (Endpoint) overflow.poll();
+                Object message = overflow.poll();
+                overflowSize--;
+
+                preferOverflow = false;
+                count++;
+                consumer.accept(recipient, source, message);
+            } else if (ringReady) {
+                Object recipient = recipients[idx];
+                Endpoint source = sources[idx];
+                Object message = messages[idx];
+                recipients[idx] = null;
+                sources[idx] = null;
+                messages[idx] = null;
+                sequences.lazySet(idx, pos + capacity); // hand slot back to producers for the next lap
+                head.lazySet(pos + 1L);
+
+                preferOverflow = true; // alternate so neither side can starve the other
+                count++;
+                consumer.accept(recipient, source, message);
+            } else {
+                break;
+            }
+        }
+
+        return count;
+    }
+
+    @Override
+    public void await() throws InterruptedException {
+        bindConsumerThread();
+        if (!isEmpty()) {
+            return;
+        }
+
+        waitingThread = Thread.currentThread();
+        try {
+            while (isEmpty()) { // volatile read of sequence after volatile write of waitingThread, so a concurrent put can't be missed
+                if (Thread.interrupted()) {
+                    throw new InterruptedException();
+                }
+                LockSupport.park(this);
+            }
+        } finally {
+            waitingThread = null;
+        }
+    }
+
+    @Override
+    public boolean await(long timeoutNanos) throws InterruptedException {
+        bindConsumerThread();
+        if (!isEmpty()) {
+            return true;
+        }
+
+        long deadline = System.nanoTime() + timeoutNanos;
+        waitingThread = Thread.currentThread();
+        try {
+            while (isEmpty()) {
+                if (Thread.interrupted()) {
+                    throw new InterruptedException();
+                }
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0L) {
+                    return false;
+                }
+                LockSupport.parkNanos(this, remaining);
+            }
+            return true;
+        } finally {
+            waitingThread = null;
+        }
+    }
+
+    @Override
+    public boolean isEmpty() {
+        long pos = head.get();
+        int idx = (int) pos & mask;
+        return sequences.get(idx) != pos + 1L && overflowSize == 0;
+    }
+
+    @Override
+    public int size() {
+        long size = Math.max(0L, tail.get() - head.get());
+        return (int) Math.min(Integer.MAX_VALUE, size + overflowSize);
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+    }
+
+    private void bindConsumerThread() {
+        Thread current = Thread.currentThread();
+        if (consumerThread != current) {
+            Validate.validState(consumerThread == null, "Mailbox already bound to another consumer thread");
+            consumerThread = current;
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package com.offbynull.peernetic.actor;
+
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import org.apache.commons.lang3.Validate;
+
+// Base for the entries EndpointScheduler implementations keep track of. Cancelling only flips a flag (O(1), no locks), the scheduler is
+// expected to drop cancelled entries when it comes across them.
+abstract class ScheduledMessage implements Cancellable {
+
+    private static final int PENDING = 0;
+    private static final int CANCELLED = 1;
+    private static final int DELIVERED = 2;
+
+    private static final AtomicIntegerFieldUpdater<ScheduledMessage> STATE_UPDATER
+            = AtomicIntegerFieldUpdater.newUpdater(ScheduledMessage.class, "state");
+
+    private final Endpoint source;
+    private final Endpoint destination;
+    private final Object message;
+    private volatile int state;
+
+    ScheduledMessage(Endpoint source, Endpoint destination, Object message) {
+        Validate.notNull(source);
+        Validate.notNull(destination);
+        Validate.notNull(message);
+
+        this.source = source;
+        this.destination = destination;
+        this.message = message;
+    }
+
+    @Override
+    public final boolean cancel() {
+        boolean cancelled = STATE_UPDATER.compareAndSet(this, PENDING, CANCELLED);
+        if (cancelled) {
+            onCancelled();
+        }
+        return cancelled;
+    }
+
+    final boolean isCancelled() {
+        return state == CANCELLED;
+    }
+
+    // returns false if message was cancelled
+    final boolean deliver() {
+        if (!claim()) {
+            return false;
+        }
+        destination.send(source, message);
+        return true;
+    }
+
+    // marks as delivered without sending, for schedulers that hand the message over themselves -- returns false if message was cancelled
+    final boolean claim() {
+        return STATE_UPDATER.compareAndSet(this, PENDING, DELIVERED);
+    }
+
+    final Endpoint getSource() {
+        return source;
+    }
+
+    final Endpoint getDestination() {
+        return destination;
+    }
+
+    final Object getMessage() {
+        return message;
+    }
+
+    void onCancelled() {
+        // do nothing by default
+    }
+}
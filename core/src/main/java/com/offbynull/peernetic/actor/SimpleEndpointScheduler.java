@@ -5,19 +5,24 @@ import java.time.Instant;
 import java.util.Comparator;
 import java.util.PriorityQueue;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.locks.Condition;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
 import org.apache.commons.lang3.Validate;
 
 public final class SimpleEndpointScheduler implements EndpointScheduler {
+    private static final int MIN_PURGE_SIZE = 64;
+
     private PriorityQueue<Event> events;
+    private AtomicInteger cancelledCount;
     private Lock lock;
     private Condition condition;
     private Thread thread;
     
     public SimpleEndpointScheduler() {
         events = new PriorityQueue<>(new EventComparator());
+        cancelledCount = new AtomicInteger();
         lock = new ReentrantLock();
         condition = lock.newCondition();
         thread = new Thread(() -> {
@@ -29,13 +34,22 @@ public final class SimpleEndpointScheduler implements EndpointScheduler {
                         condition.await(waitDuration, TimeUnit.MILLISECONDS);
                     }
                     
+                    // cancelled events are normally left in the queue and skipped when they come up, but if they pile up (e.g. lots of
+                    // long timers being cancelled) sweep them out so they don't hold on to memory
+                    int cancelled = cancelledCount.get();
+                    if (cancelled > MIN_PURGE_SIZE && cancelled > events.size() / 2) {
+                        events.removeIf(x -> x.isCancelled());
+                        cancelledCount.set(0);
+                    }
+                    
                     int counter =0;
                     Event e;
                     Instant currentTime = Instant.now();
                     while ((e = events.peek()) != null && !e.time.isAfter(currentTime)) {
                         events.poll();
-                        e.destination.send(e.source, e.message);
-                        counter++;
+                        if (e.deliver()) {
+                            counter++;
+                        }
                     }
                     
                     if (e != null) {
@@ -56,7 +70,7 @@ public final class SimpleEndpointScheduler implements EndpointScheduler {
     }
     
     @Override
-    public void scheduleMessage(Duration delay, Endpoint source, Endpoint destination, Object message) {
+    public Cancellable scheduleMessage(Duration delay, Endpoint source, Endpoint destination, Object message) {
         Validate.notNull(delay);
         Validate.notNull(source);
         Validate.notNull(destination);
@@ -73,6 +87,8 @@ public final class SimpleEndpointScheduler implements EndpointScheduler {
             if (prevFirstTime == null || events.peek().time.isBefore(prevFirstTime)) {
                 condition.signal();
             }
+            
+            return e;
         } finally {
             lock.unlock();
         }
@@ -84,19 +100,18 @@ public final class SimpleEndpointScheduler implements EndpointScheduler {
         thread.join();
     }
     
-    private static final class Event {
+    private final class Event extends ScheduledMessage {
         private final Instant time;
-        private final Endpoint source;
-        private final Endpoint destination;
-        private final Object message;
 
         public Event(Instant time, Endpoint source, Endpoint destination, Object message) {
+            super(source, destination, message);
             this.time = time;
-            this.source = source;
-            this.destination = destination;
-            this.message = message;
         }
-        
+
+        @Override
+        void onCancelled() {
+            cancelledCount.incrementAndGet();
+        }
     }
     
     private static final class EventComparator implements Comparator<Event> {
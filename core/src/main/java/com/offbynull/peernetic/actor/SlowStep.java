@@ -0,0 +1,63 @@
+package com.offbynull.peernetic.actor;
+
+import java.time.Instant;
+import java.util.Arrays;
+import org.apache.commons.collections4.list.UnmodifiableList;
+import org.apache.commons.lang3.Validate;
+
+// A single slow handler invocation. Entries in the slowest-steps log only have the message type and duration (the stack is long gone by
+// the time the step finishes). Entries logged by ActorStallWatchdog were caught while still running, so they also carry the actor
+// thread's stack at the time, and the duration is how long the step had been running when it was caught.
+public final class SlowStep {
+
+    private final String actorName;
+    private final String messageType;
+    private final long durationNanos;
+    private final Instant time;
+    private final UnmodifiableList<StackTraceElement> stackTrace;
+
+    SlowStep(String actorName, String messageType, long durationNanos, Instant time, StackTraceElement[] stackTrace) {
+        Validate.notNull(actorName);
+        Validate.notNull(messageType);
+        Validate.notNull(time);
+        Validate.noNullElements(stackTrace);
+
+        this.actorName = actorName;
+        this.messageType = messageType;
+        this.durationNanos = durationNanos;
+        this.time = time;
+        this.stackTrace = (UnmodifiableList<StackTraceElement>) UnmodifiableList.unmodifiableList(Arrays.asList(stackTrace.clone()));
+    }
+
+    public String getActorName() {
+        return actorName;
+    }
+
+    public String getMessageType() {
+        return messageType;
+    }
+
+    public long getDurationNanos() {
+        return durationNanos;
+    }
+
+    public Instant getTime() {
+        return time;
+    }
+
+    // empty if not captured by the watchdog
+    public UnmodifiableList<StackTraceElement> getStackTrace() {
+        return stackTrace;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("SlowStep{actorName=").append(actorName).append(", messageType=").append(messageType).append(", durationNanos=")
+                .append(durationNanos).append(", time=").append(time).append('}');
+        for (StackTraceElement element : stackTrace) {
+            sb.append("\n\tat ").append(element);
+        }
+        return sb.toString();
+    }
+}
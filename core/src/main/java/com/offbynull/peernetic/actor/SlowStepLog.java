@@ -0,0 +1,78 @@
+package com.offbynull.peernetic.actor;
+
+import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.List;
+import java.util.PriorityQueue;
+import org.apache.commons.collections4.list.UnmodifiableList;
+import org.apache.commons.lang3.Validate;
+
+// Keeps the slowest steps seen for an actor along with the most recent stalls reported by the watchdog. Only steps slower than the
+// fastest one currently kept take the lock, so once the log fills up the actor thread pays a single volatile read per step.
+final class SlowStepLog {
+
+    private static final StackTraceElement[] NO_STACK_TRACE = new StackTraceElement[0];
+
+    private final String actorName;
+    private final int capacity;
+    private final PriorityQueue<SlowStep> slowest; // fastest of the kept steps at the head, guarded by this
+    private final Deque<SlowStep> stalls; // newest last, guarded by this
+    private long stallCount; // guarded by this
+    private volatile long floorNanos; // steps at or below this don't make it in to slowest
+
+    SlowStepLog(String actorName, int capacity) {
+        Validate.notNull(actorName);
+        Validate.isTrue(capacity > 0);
+
+        this.actorName = actorName;
+        this.capacity = capacity;
+        this.slowest = new PriorityQueue<>(capacity, Comparator.comparingLong(SlowStep::getDurationNanos));
+        this.stalls = new ArrayDeque<>(capacity);
+        this.floorNanos = -1L;
+    }
+
+    void recordStep(Instant time, Object message, long durationNanos) {
+        if (durationNanos <= floorNanos) {
+            return;
+        }
+
+        SlowStep step = new SlowStep(actorName, message.getClass().getName(), durationNanos, time, NO_STACK_TRACE);
+        synchronized (this) {
+            slowest.add(step);
+            if (slowest.size() > capacity) {
+                slowest.poll();
+            }
+            if (slowest.size() == capacity) {
+                floorNanos = slowest.peek().getDurationNanos();
+            }
+        }
+    }
+
+    synchronized void recordStall(SlowStep stall) {
+        Validate.notNull(stall);
+        stallCount++;
+        stalls.addLast(stall);
+        if (stalls.size() > capacity) {
+            stalls.removeFirst();
+        }
+    }
+
+    // slowest first
+    synchronized UnmodifiableList<SlowStep> getSlowest() {
+        List<SlowStep> ret = new ArrayList<>(slowest);
+        ret.sort(Comparator.comparingLong(SlowStep::getDurationNanos).reversed());
+        return (UnmodifiableList<SlowStep>) UnmodifiableList.unmodifiableList(ret);
+    }
+
+    // oldest first
+    synchronized UnmodifiableList<SlowStep> getStalls() {
+        return (UnmodifiableList<SlowStep>) UnmodifiableList.unmodifiableList(new ArrayList<>(stalls));
+    }
+
+    synchronized long getStallCount() {
+        return stallCount;
+    }
+}
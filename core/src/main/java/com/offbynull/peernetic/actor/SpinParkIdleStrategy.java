@@ -0,0 +1,74 @@
+package com.offbynull.peernetic.actor;
+
+import org.apache.commons.lang3.Validate;
+
+// Spins, then yields, then falls back to blocking on the mailbox for exponentially longer stretches (minParkNanos doubling up to
+// maxParkNanos). A message arriving while blocked still wakes the thread straight away -- the backoff only limits how often an idle thread
+// wakes up on its own to poll again. Short gaps between messages are covered by the spin/yield phases, long ones cost next to no CPU.
+public final class SpinParkIdleStrategy implements IdleStrategy {
+
+    public static final int DEFAULT_SPINS = 100;
+    public static final int DEFAULT_YIELDS = 10;
+    public static final long DEFAULT_MIN_PARK_NANOS = 1000L;
+    public static final long DEFAULT_MAX_PARK_NANOS = 1000000L;
+
+    private final int spins;
+    private final int yields;
+    private final long minParkNanos;
+    private final long maxParkNanos;
+
+    public SpinParkIdleStrategy() {
+        this(DEFAULT_SPINS, DEFAULT_YIELDS, DEFAULT_MIN_PARK_NANOS, DEFAULT_MAX_PARK_NANOS);
+    }
+
+    public SpinParkIdleStrategy(int spins, int yields, long minParkNanos, long maxParkNanos) {
+        Validate.isTrue(spins >= 0);
+        Validate.isTrue(yields >= 0);
+        Validate.isTrue(minParkNanos > 0L);
+        Validate.isTrue(maxParkNanos >= minParkNanos);
+
+        this.spins = spins;
+        this.yields = yields;
+        this.minParkNanos = minParkNanos;
+        this.maxParkNanos = maxParkNanos;
+    }
+
+    @Override
+    public boolean idle(Mailbox mailbox, long timeoutNanos) throws InterruptedException {
+        long start = System.nanoTime();
+        int count = 0;
+        long parkNanos = minParkNanos;
+        while (mailbox.isEmpty()) {
+            if (Thread.interrupted()) {
+                throw new InterruptedException();
+            }
+
+            long remaining = Long.MAX_VALUE;
+            if (timeoutNanos != Long.MAX_VALUE) {
+                remaining = start + timeoutNanos - System.nanoTime();
+                if (remaining <= 0L) {
+                    return false;
+                }
+            }
+
+            if (count < spins) {
+                count++;
+            } else if (count < spins + yields) {
+                count++;
+                Thread.yield();
+            } else {
+                if (mailbox.await(Math.min(parkNanos, remaining))) {
+                    return true;
+                }
+                parkNanos = Math.min(parkNanos * 2L, maxParkNanos);
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public String toString() {
+        return "SpinParkIdleStrategy{" + "spins=" + spins + ", yields=" + yields + ", minParkNanos=" + minParkNanos + ", maxParkNanos="
+                + maxParkNanos + '}';
+    }
+}
@@ -0,0 +1,47 @@
+package com.offbynull.peernetic.actor;
+
+import org.apache.commons.lang3.Validate;
+
+// Polls the mailbox in a tight loop for a while, then keeps polling but yields the CPU between polls. Never blocks, so wake-up latency
+// stays low, but other threads get a chance to run on the core while this one is idle.
+public final class SpinYieldIdleStrategy implements IdleStrategy {
+
+    public static final int DEFAULT_SPINS = 1000;
+
+    private final int spins;
+
+    public SpinYieldIdleStrategy() {
+        this(DEFAULT_SPINS);
+    }
+
+    public SpinYieldIdleStrategy(int spins) {
+        Validate.isTrue(spins >= 0);
+        this.spins = spins;
+    }
+
+    @Override
+    public boolean idle(Mailbox mailbox, long timeoutNanos) throws InterruptedException {
+        long start = System.nanoTime();
+        int count = 0;
+        while (mailbox.isEmpty()) {
+            if (Thread.interrupted()) {
+                throw new InterruptedException();
+            }
+            if (timeoutNanos != Long.MAX_VALUE && System.nanoTime() - start >= timeoutNanos) {
+                return false;
+            }
+
+            if (count < spins) {
+                count++;
+            } else {
+                Thread.yield();
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public String toString() {
+        return "SpinYieldIdleStrategy{" + "spins=" + spins + '}';
+    }
+}
@@ -0,0 +1,233 @@
+package com.offbynull.peernetic.actor;
+
+import java.time.Duration;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.locks.LockSupport;
+import org.apache.commons.lang3.Validate;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+// EndpointScheduler backed by a hierarchical hashed timing wheel. Time is chopped up in to ticks of a configurable duration, and a
+// message's deadline is expressed as a tick number. The wheel has several levels, each with the same number of buckets. A tick number is
+// treated as a sequence of digits in base wheelSize, and a message goes in to the level of the most significant digit where its deadline
+// differs from the current tick (bucket = that digit of the deadline). Whenever the lower digits of the current tick roll over to 0, the
+// bucket for the current tick at the next level up gets cascaded down, and every message in the level 0 bucket for the current tick is
+// due. Insertion, expiry and cancellation are all O(1) -- a cancelled message stays in its bucket and is dropped when the wheel reaches it.
+//
+// Producers never touch the wheel. They push on to a lock-free queue that the wheel thread drains at the start of each tick, so
+// scheduleMessage never blocks.
+public final class TimingWheelEndpointScheduler implements EndpointScheduler {
+
+    private static final Logger LOG = LoggerFactory.getLogger(TimingWheelEndpointScheduler.class);
+
+    public static final Duration DEFAULT_TICK_DURATION = Duration.ofMillis(10L);
+    public static final int DEFAULT_WHEEL_SIZE = 256;
+
+    private final long tickNanos;
+    private final int bits;
+    private final int mask;
+    private final Bucket[][] levels;
+    private final long startNanos;
+
+    private final ConcurrentLinkedQueue<Timeout> incoming;
+    private final Thread thread;
+    private volatile boolean parkedIndefinitely;
+
+    // only touched by wheel thread
+    private long currentTick;
+    private int timeoutCount;
+
+    public TimingWheelEndpointScheduler() {
+        this(DEFAULT_TICK_DURATION, DEFAULT_WHEEL_SIZE);
+    }
+
+    public TimingWheelEndpointScheduler(Duration tickDuration) {
+        this(tickDuration, DEFAULT_WHEEL_SIZE);
+    }
+
+    public TimingWheelEndpointScheduler(Duration tickDuration, int wheelSize) {
+        Validate.notNull(tickDuration);
+        Validate.isTrue(!tickDuration.isNegative() && !tickDuration.isZero());
+        Validate.isTrue(wheelSize >= 2 && wheelSize <= (1 << 16) && Integer.bitCount(wheelSize) == 1, "Wheel size must be power of 2");
+
+        this.tickNanos = tickDuration.toNanos();
+        this.bits = Integer.numberOfTrailingZeros(wheelSize);
+        this.mask = wheelSize - 1;
+
+        int levelCount = (63 + bits - 1) / bits; // enough levels to represent any non-negative long tick
+        this.levels = new Bucket[levelCount][wheelSize];
+        for (int i = 0; i < levelCount; i++) {
+            for (int j = 0; j < wheelSize; j++) {
+                levels[i][j] = new Bucket();
+            }
+        }
+
+        this.incoming = new ConcurrentLinkedQueue<>();
+        this.startNanos = System.nanoTime();
+
+        thread = new Thread(this::run);
+        thread.setName(TimingWheelEndpointScheduler.class.getSimpleName());
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    @Override
+    public Cancellable scheduleMessage(Duration delay, Endpoint source, Endpoint destination, Object message) {
+        Validate.notNull(delay);
+        Validate.notNull(source);
+        Validate.notNull(destination);
+        Validate.notNull(message);
+        Validate.isTrue(!delay.isNegative());
+
+        long deadlineNanos = System.nanoTime() - startNanos + delay.toNanos();
+        long deadlineTick = (deadlineNanos + tickNanos - 1L) / tickNanos; // round up so nothing is ever delivered early
+
+        Timeout timeout = new Timeout(deadlineTick, source, destination, message);
+        incoming.add(timeout);
+
+        if (parkedIndefinitely) { // volatile read after the add above, see run
+            LockSupport.unpark(thread);
+        }
+
+        return timeout;
+    }
+
+    @Override
+    public void close() throws Exception {
+        thread.interrupt();
+        thread.join();
+    }
+
+    private void run() {
+        try {
+            while (!Thread.currentThread().isInterrupted()) {
+                long nowTick = (System.nanoTime() - startNanos) / tickNanos;
+                if (timeoutCount == 0) {
+                    // nothing in the wheel, skip over the ticks that went by while parked before anything new gets placed relative to
+                    // currentTick -- otherwise the loop below would walk every one of them
+                    currentTick = Math.max(currentTick, nowTick);
+                }
+
+                transferIncoming();
+
+                while (currentTick <= nowTick) {
+                    processTick(currentTick);
+                    currentTick++;
+                }
+
+                if (timeoutCount == 0) {
+                    parkedIndefinitely = true;
+                    if (incoming.isEmpty()) { // volatile write of flag above then check, so a concurrent add can't be missed
+                        LockSupport.park(this);
+                    }
+                    parkedIndefinitely = false;
+                } else {
+                    long nextTickNanos = startNanos + currentTick * tickNanos;
+                    long waitNanos = nextTickNanos - System.nanoTime();
+                    if (waitNanos > 0L) {
+                        LockSupport.parkNanos(this, waitNanos);
+                    }
+                }
+            }
+        } catch (RuntimeException re) {
+            LOG.error("Timing wheel encountered an error", re);
+            throw re;
+        }
+    }
+
+    private void transferIncoming() {
+        Timeout timeout;
+        while ((timeout = incoming.poll()) != null) {
+            if (timeout.isCancelled()) {
+                continue;
+            }
+            insert(timeout);
+            timeoutCount++;
+        }
+    }
+
+    private void insert(Timeout timeout) {
+        long tick = Math.max(timeout.deadlineTick, currentTick);
+
+        int level = 0;
+        for (int i = levels.length - 1; i > 0; i--) {
+            int shift = bits * i;
+            if ((tick >>> shift) != (currentTick >>> shift)) {
+                level = i;
+                break;
+            }
+        }
+
+        int idx = (int) (tick >>> (bits * level)) & mask;
+        levels[level][idx].add(timeout);
+    }
+
+    private void processTick(long tick) {
+        // cascade from the top down, so anything moved down a level can be picked up by the next level's cascade in this same tick
+        for (int i = levels.length - 1; i > 0; i--) {
+            long lowerMask = (1L << (bits * i)) - 1L;
+            if ((tick & lowerMask) != 0L) {
+                continue;
+            }
+
+            int idx = (int) (tick >>> (bits * i)) & mask;
+            Bucket bucket = levels[i][idx];
+            Timeout timeout = bucket.removeAll();
+            while (timeout != null) {
+                Timeout next = timeout.next;
+                timeout.next = null;
+                if (timeout.isCancelled()) {
+                    timeoutCount--; // cancelled while sitting in the wheel, no point moving it down
+                } else {
+                    insert(timeout);
+                }
+                timeout = next;
+            }
+        }
+
+        Bucket bucket = levels[0][(int) tick & mask];
+        Timeout timeout = bucket.removeAll();
+        while (timeout != null) {
+            Timeout next = timeout.next;
+            timeout.next = null;
+            timeoutCount--;
+            try {
+                timeout.deliver();
+            } catch (RuntimeException re) {
+                LOG.error("Unable to deliver scheduled message", re);
+            }
+            timeout = next;
+        }
+    }
+
+    private static final class Bucket {
+        private Timeout head;
+        private Timeout tail;
+
+        public void add(Timeout timeout) {
+            if (tail == null) {
+                head = timeout;
+            } else {
+                tail.next = timeout;
+            }
+            tail = timeout;
+        }
+
+        public Timeout removeAll() {
+            Timeout ret = head;
+            head = null;
+            tail = null;
+            return ret;
+        }
+    }
+
+    private static final class Timeout extends ScheduledMessage {
+        private final long deadlineTick;
+        private Timeout next; // only touched by wheel thread
+
+        public Timeout(long deadlineTick, Endpoint source, Endpoint destination, Object message) {
+            super(source, destination, message);
+            this.deadlineTick = deadlineTick;
+        }
+    }
+}
@@ -0,0 +1,9 @@
+package com.offbynull.peernetic.fsm;
+
+import java.time.Instant;
+
+@FunctionalInterface
+interface FilterHandlerInvoker {
+    // returns false if the message shouldn't go on to the state handler
+    boolean invoke(Object object, String state, FiniteStateMachine fsm, Instant instant, Object message, Object params) throws Throwable;
+}
@@ -1,25 +1,40 @@
 package com.offbynull.peernetic.fsm;
 
-import java.lang.reflect.InvocationTargetException;
-import java.lang.reflect.Method;
+import com.offbynull.peernetic.fsm.FiniteStateMachineMetadata.Dispatch;
+import com.offbynull.peernetic.fsm.FiniteStateMachineMetadata.Handler;
 import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
-import java.util.Objects;
-import org.apache.commons.collections4.map.UnmodifiableMap;
-import org.apache.commons.lang3.ClassUtils;
+import java.util.Set;
+import org.apache.commons.lang3.mutable.MutableInt;
 import org.apache.commons.lang3.Validate;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 public final class FiniteStateMachine<P> {
     private static final Logger LOG = LoggerFactory.getLogger(FiniteStateMachine.class);
+    private static final long NOT_TIMED = Long.MIN_VALUE;
             
     private Object object;
     private String currentState;
-    private UnmodifiableMap<StateKey, Method> stateHandlerMap;
-    private UnmodifiableMap<StateKey, Method> filterStateHandlerMap;
-    private UnmodifiableMap<TransitionKey, Method> transitionHandlerMap;
+    private int currentStateId;
+    private final FiniteStateMachineMetadata metadata;
+    private final FiniteStateMachineMetrics.Slot metricsSlot;
+    private long stateEnteredNanos; // NOT_TIMED if metrics were off when the current state was entered
+    
+    // states no handler mentions (e.g. a done state that's only ever checked from outside), ids for them follow on from the declared ones.
+    // kept here rather than in the shared metadata so they go away with this fsm. created on first use
+    private Map<String, Integer> undeclaredStateIds;
+    private List<String> undeclaredStates;
+    
+    // what this fsm is waiting on, see FiniteStateMachineRouter -- counted, because interests bubbled up from a nested router can overlap
+    // with the fsm's own. created on first use, most fsms never get routed to
+    private Map<Object, MutableInt> keyInterests;
+    private Map<Class<?>, MutableInt> typeInterests;
+    FiniteStateMachineRouter<?> parentRouter;
     
     public FiniteStateMachine(Object object, String currentState, Class<P> paramType) {
         Validate.notNull(object);
@@ -27,175 +42,67 @@ public final class FiniteStateMachine<P> {
         Validate.notNull(paramType);
         this.object = object;
         this.currentState = currentState;
+        this.metadata = FiniteStateMachineMetadata.get(object.getClass(), paramType);
+        this.currentStateId = getStateId(currentState);
+        this.metricsSlot = FiniteStateMachineMetrics.slot(object.getClass());
         
-        Class<?> cls = object.getClass();
-        Method[] methods = cls.getDeclaredMethods();
-        
-        Map<StateKey, Method> stateHandlerMap = new HashMap<>();
-        for (Method method : methods) {
-            StateHandler[] annotations = method.getDeclaredAnnotationsByType(StateHandler.class);
-            if (annotations.length == 0) {
-                continue;
-            }
-            
-            Validate.isTrue(annotations.length == 1, "Method %s can only have 1 %s annotation",
-                    method.getName(), StateHandler.class.getSimpleName());
-            
-            StateHandler stateHandler = annotations[0];
-            
-            Class<?>[] methodParams = method.getParameterTypes();
-            Validate.isTrue(methodParams.length == 5
-                    && ClassUtils.isAssignable(methodParams[0], String.class) // state
-                    && ClassUtils.isAssignable(methodParams[1], FiniteStateMachine.class) // this
-                    && ClassUtils.isAssignable(methodParams[2], Instant.class) // time
-                    && ClassUtils.isAssignable(methodParams[3], Object.class) // msg
-                    && ClassUtils.isAssignable(methodParams[4], paramType), // params
-                    "Method %s with %s has incorrect arguments",
-                    method.getName(), StateHandler.class.getSimpleName());
-            method.setAccessible(true);
-            
-            String[] states = stateHandler.value();
-            Validate.isTrue(states.length > 0, "Need atleast 1 state listed for method %s", method.getName());
-            
-            for (String state : states) {
-                StateKey key = new StateKey(state, methodParams[3]);
-                Method existingMethod = stateHandlerMap.put(key, method);
-                
-                Validate.isTrue(existingMethod == null, "Duplicate %s found: %s",
-                        StateHandler.class.getSimpleName(), method.getName());
-                
-                LOG.debug("Mapped state handler for {} with type {} to method {}", key.getState(), key.getType(), method);
-            }
-        }
-        
-        this.stateHandlerMap = (UnmodifiableMap<StateKey, Method>) UnmodifiableMap.unmodifiableMap(stateHandlerMap);
-
-        
-        
-        Map<StateKey, Method> filterStateHandlerMap = new HashMap<>();
-        for (Method method : methods) {
-            FilterHandler[] annotations = method.getDeclaredAnnotationsByType(FilterHandler.class);
-            if (annotations.length == 0) {
-                continue;
-            }
-            
-            Validate.isTrue(annotations.length == 1, "Method %s can only have 1 %s annotation",
-                    method.getName(), FilterHandler.class.getSimpleName());
-            
-            FilterHandler stateHandler = annotations[0];
-            
-            Class<?> methodRet = method.getReturnType();
-            Class<?>[] methodParams = method.getParameterTypes();
-            Validate.isTrue((methodRet == boolean.class || methodRet == Boolean.class || methodRet == Void.TYPE) // rets void or boolean
-                    && methodParams.length == 5
-                    && ClassUtils.isAssignable(methodParams[0], String.class) // state
-                    && ClassUtils.isAssignable(methodParams[1], FiniteStateMachine.class) // this
-                    && ClassUtils.isAssignable(methodParams[2], Instant.class) // time
-                    && ClassUtils.isAssignable(methodParams[3], Object.class) // msg
-                    && ClassUtils.isAssignable(methodParams[4], paramType), // params
-                    "Method %s with %s has incorrect arguments",
-                    method.getName(), FilterHandler.class.getSimpleName());
-            method.setAccessible(true);
-            
-            String[] states = stateHandler.value();
-            Validate.isTrue(states.length > 0, "Need atleast 1 state listed for method %s", method.getName());
-            
-            for (String state : states) {
-                StateKey key = new StateKey(state, methodParams[3]);
-                Method existingMethod = filterStateHandlerMap.put(key, method);
-                
-                Validate.isTrue(existingMethod == null, "Duplicate %s found: %s",
-                        FilterHandler.class.getSimpleName(), method.getName());
-                
-                LOG.debug("Mapped filter handler for {} with type {} to method {}", key.getState(), key.getType(), method);
-            }
+        FiniteStateMachineMetrics metrics = metricsSlot.metrics;
+        if (metrics != null) {
+            metrics.recordEnter(currentState);
+            stateEnteredNanos = System.nanoTime();
+        } else {
+            stateEnteredNanos = NOT_TIMED;
         }
-        
-        this.filterStateHandlerMap = (UnmodifiableMap<StateKey, Method>) UnmodifiableMap.unmodifiableMap(filterStateHandlerMap);
-        
-        
-        
-        Map<TransitionKey, Method> transitionHandlerMap = new HashMap<>();
-        for (Method method : methods) {
-            TransitionHandler[] annotations = method.getDeclaredAnnotationsByType(TransitionHandler.class);
-            if (annotations.length == 0) {
-                continue;
-            }
-            
-            Validate.isTrue(annotations.length == 1, "Method %s can only have 1 %s annotation",
-                    method.getName(), TransitionHandler.class.getSimpleName());
-            
-            TransitionHandler transitionHandler = annotations[0];
-            
-            Class<?>[] methodParams = method.getParameterTypes();
-            Validate.isTrue(methodParams.length == 3
-                    && ClassUtils.isAssignable(methodParams[0], String.class)
-                    && ClassUtils.isAssignable(methodParams[1], String.class)
-                    && ClassUtils.isAssignable(methodParams[2], FiniteStateMachine.class),
-                    "Method %s with %s has incorrect arguments",
-                    method.getName(), TransitionHandler.class.getSimpleName());
-            method.setAccessible(true);
-            
-            Transition[] transitions = transitionHandler.value();
-            Validate.isTrue(transitions.length > 0, "Need atleast 1 transition for method %s", method.getName());
-            
-            for (Transition transition : transitions) {
-                TransitionKey key = new TransitionKey(transition.from(), transition.to());
-                Method existingMethod = transitionHandlerMap.put(key, method);
-                
-                Validate.isTrue(existingMethod == null, "Duplicate %s found: %s",
-                        TransitionHandler.class.getSimpleName(), method.getName());
-                
-                LOG.debug("Mapped transition handler for ({} -> {}) to method {}", key.getFrom(), key.getTo(), method);
-            }
-        }
-        
-        this.transitionHandlerMap = (UnmodifiableMap<TransitionKey, Method>) UnmodifiableMap.unmodifiableMap(transitionHandlerMap);
     }
     
     public void process(Instant instant, Object message, P params) {
         Validate.notNull(instant);
         Validate.notNull(message);
         
-        Method handlerMethod = getHandlerMethod(stateHandlerMap, message.getClass());
-        Method preHandlerMethod = getHandlerMethod(filterStateHandlerMap, message.getClass());
+        Dispatch dispatch = metadata.getDispatch(currentStateId, message.getClass());
+        Handler<StateHandlerInvoker> handler = dispatch.handler;
+        Handler<FilterHandlerInvoker> preHandler = dispatch.preHandler;
+        
+        FiniteStateMachineMetrics metrics = metricsSlot.metrics;
+        HandlerMetrics handlerMetrics = metrics != null ? metrics.state(currentState).handler(message.getClass()) : null;
         
-        if (preHandlerMethod != null) {
-            Boolean continueProcessing = (Boolean) invokeHandlerMethod(preHandlerMethod, instant, message, params);
-            if (continueProcessing != null && !continueProcessing) {
+        if (preHandler != null) {
+            boolean continueProcessing;
+            try {
+                continueProcessing = preHandler.invoker.invoke(object, currentState, this, instant, message, params);
+            } catch (Throwable t) {
+                throw handlerFailed(preHandler, message, t);
+            }
+            if (!continueProcessing) {
+                if (handlerMetrics != null) {
+                    handlerMetrics.filtered.increment();
+                }
                 return;
             }
         }
         
-        if (handlerMethod == null) {
+        if (handler == null) {
+            if (handlerMetrics != null) {
+                handlerMetrics.unhandled.increment();
+            }
             LOG.warn("No handler for {} during state {}", message.getClass(), currentState);
             return;
         }
         
-        invokeHandlerMethod(handlerMethod, instant, message, params);
-    }
-    
-    private Method getHandlerMethod(Map<StateKey, Method> methodMap, Class<?> msgClass) {
-        Method handlerMethod = null;
-        for (Class<?> cls : ClassUtils.hierarchy(msgClass, ClassUtils.Interfaces.INCLUDE)) {
-            StateKey key = new StateKey(currentState, cls);
-            handlerMethod = methodMap.get(key);
-            
-            if (handlerMethod != null) {
-                break;
-            }
+        long start = handlerMetrics != null ? System.nanoTime() : 0L;
+        try {
+            handler.invoker.invoke(object, currentState, this, instant, message, params);
+        } catch (Throwable t) {
+            throw handlerFailed(handler, message, t);
+        }
+        if (handlerMetrics != null) {
+            handlerMetrics.recordInvocation(System.nanoTime() - start);
         }
-        
-        return handlerMethod;
     }
     
-    private Object invokeHandlerMethod(Method method, Instant instant, Object message, P params) {
-        try {
-            return method.invoke(object, currentState, this, instant, message, params);
-        } catch (IllegalAccessException | IllegalArgumentException | InvocationTargetException ex) {
-            LOG.error("Error invoking handler/filter {} with {}", method, message);
-            throw new IllegalStateException(ex);
-        }
+    private static IllegalStateException handlerFailed(Handler<?> handler, Object message, Throwable t) {
+        LOG.error("Error invoking handler/filter {} with {}", handler.name, message);
+        return new IllegalStateException(t);
     }
     
     public void switchStateAndProcess(String state, Instant instant, Object message, P params) {
@@ -204,111 +111,141 @@ public final class FiniteStateMachine<P> {
     }
     
     public void setState(String state) {
-        TransitionKey key = new TransitionKey(currentState, state);
-        Method method = transitionHandlerMap.get(key);
-        if (method != null) {
+        setState(getStateId(state));
+    }
+    
+    public void setState(int stateId) {
+        String state = getStateName(stateId);
+        Handler<TransitionHandlerInvoker> handler = metadata.getTransitionHandler(currentStateId, stateId);
+        if (handler != null) {
             try {
-                method.invoke(object, currentState, state, this);
-            } catch (IllegalAccessException | IllegalArgumentException | InvocationTargetException ex) {
-                LOG.error("Error invoking transition", method);
-                throw new IllegalStateException(ex);
+                handler.invoker.invoke(object, currentState, state, this);
+            } catch (Throwable t) {
+                LOG.error("Error invoking transition {}", handler.name);
+                throw new IllegalStateException(t);
             }
         }
         
+        FiniteStateMachineMetrics metrics = metricsSlot.metrics;
+        if (metrics != null) {
+            long now = System.nanoTime();
+            metrics.recordTransition(currentState, state, stateEnteredNanos == NOT_TIMED ? -1L : now - stateEnteredNanos);
+            stateEnteredNanos = now;
+        } else {
+            stateEnteredNanos = NOT_TIMED;
+        }
+        
         currentState = state;
+        currentStateId = stateId;
     }
     
     public String getState() {
         return currentState;
     }
     
-    private static final class StateKey {
-        private final String state;
-        private final Class<?> type;
-
-        public StateKey(String state, Class<?> type) {
-            this.state = state;
-            this.type = type;
-        }
-
-        public String getState() {
-            return state;
+    public int getStateId() {
+        return currentStateId;
+    }
+    
+    // ids are dense and stable, so they can be looked up once and compared against getStateId() rather than comparing state strings. ids
+    // of states that show up in a handler annotation are shared by every fsm driving the same class (and param type), ids of any other
+    // state are only good for this fsm
+    public int getStateId(String state) {
+        int stateId = metadata.getStateId(state);
+        if (stateId != -1) {
+            return stateId;
+        }
+        
+        if (undeclaredStateIds == null) {
+            undeclaredStateIds = new HashMap<>();
+            undeclaredStates = new ArrayList<>();
+        }
+        Integer undeclaredStateId = undeclaredStateIds.get(state);
+        if (undeclaredStateId == null) {
+            undeclaredStateId = metadata.getDeclaredStateCount() + undeclaredStates.size();
+            undeclaredStateIds.put(state, undeclaredStateId);
+            undeclaredStates.add(state);
+        }
+        return undeclaredStateId;
+    }
+    
+    private String getStateName(int stateId) {
+        int declaredStateCount = metadata.getDeclaredStateCount();
+        if (stateId < declaredStateCount) {
+            return metadata.getStateName(stateId);
         }
-
-        public Class<?> getType() {
-            return type;
+        
+        int index = stateId - declaredStateCount;
+        Validate.isTrue(undeclaredStates != null && index < undeclaredStates.size(), "Unknown state id %d", stateId);
+        return undeclaredStates.get(index);
+    }
+    
+    // only has an effect once this fsm is added to a FiniteStateMachineRouter, messages with this key get routed to this fsm
+    public void addKeyInterest(Object key) {
+        Validate.notNull(key);
+        if (keyInterests == null) {
+            keyInterests = new HashMap<>();
         }
-
-        @Override
-        public int hashCode() {
-            int hash = 5;
-            hash = 17 * hash + Objects.hashCode(this.state);
-            hash = 17 * hash + Objects.hashCode(this.type);
-            return hash;
+        if (addInterest(keyInterests, key) && parentRouter != null) {
+            parentRouter.indexKey(key, this);
         }
-
-        @Override
-        public boolean equals(Object obj) {
-            if (obj == null) {
-                return false;
-            }
-            if (getClass() != obj.getClass()) {
-                return false;
-            }
-            final StateKey other = (StateKey) obj;
-            if (!Objects.equals(this.state, other.state)) {
-                return false;
-            }
-            if (!Objects.equals(this.type, other.type)) {
-                return false;
-            }
-            return true;
+    }
+    
+    public void removeKeyInterest(Object key) {
+        Validate.notNull(key);
+        if (removeInterest(keyInterests, key) && parentRouter != null) {
+            parentRouter.unindexKey(key, this);
         }
-        
     }
     
-    private static final class TransitionKey {
-        private String from;
-        private String to;
-
-        public TransitionKey(String from, String to) {
-            this.from = from;
-            this.to = to;
+    // only has an effect once this fsm is added to a FiniteStateMachineRouter, messages of this exact class get routed to this fsm
+    public void addTypeInterest(Class<?> type) {
+        Validate.notNull(type);
+        if (typeInterests == null) {
+            typeInterests = new HashMap<>();
         }
-
-        public String getFrom() {
-            return from;
+        if (addInterest(typeInterests, type) && parentRouter != null) {
+            parentRouter.indexType(type, this);
         }
-
-        public String getTo() {
-            return to;
+    }
+    
+    public void removeTypeInterest(Class<?> type) {
+        Validate.notNull(type);
+        if (removeInterest(typeInterests, type) && parentRouter != null) {
+            parentRouter.unindexType(type, this);
         }
-
-        @Override
-        public int hashCode() {
-            int hash = 5;
-            hash = 67 * hash + Objects.hashCode(this.from);
-            hash = 67 * hash + Objects.hashCode(this.to);
-            return hash;
+    }
+    
+    Set<Object> getKeyInterests() {
+        return keyInterests == null ? Collections.emptySet() : keyInterests.keySet();
+    }
+    
+    Set<Class<?>> getTypeInterests() {
+        return typeInterests == null ? Collections.emptySet() : typeInterests.keySet();
+    }
+    
+    // returns true if this is the first interest for the key
+    private static <K> boolean addInterest(Map<K, MutableInt> interests, K key) {
+        MutableInt count = interests.get(key);
+        if (count == null) {
+            interests.put(key, new MutableInt(1));
+            return true;
         }
-
-        @Override
-        public boolean equals(Object obj) {
-            if (obj == null) {
-                return false;
-            }
-            if (getClass() != obj.getClass()) {
-                return false;
-            }
-            final TransitionKey other = (TransitionKey) obj;
-            if (!Objects.equals(this.from, other.from)) {
-                return false;
-            }
-            if (!Objects.equals(this.to, other.to)) {
-                return false;
-            }
+        count.increment();
+        return false;
+    }
+    
+    // returns true if this was the last interest for the key
+    private static <K> boolean removeInterest(Map<K, MutableInt> interests, K key) {
+        MutableInt count = interests == null ? null : interests.get(key);
+        if (count == null) {
+            return false;
+        }
+        count.decrement();
+        if (count.intValue() == 0) {
+            interests.remove(key);
             return true;
         }
-        
+        return false;
     }
 }
@@ -0,0 +1,34 @@
+package com.offbynull.peernetic.fsm;
+
+import java.time.Instant;
+
+// Implemented by the <Name>_FsmDispatch classes that the fsm-processor module generates at compile time, one per class with handler
+// annotations. When FiniteStateMachine finds one sitting next to a class it uses it instead of reflecting over the class: register() hands
+// over the handler tables (already checked by the processor) and the invoke methods call the handlers directly through a switch on the id
+// each handler was registered with.
+//
+// Not meant to be implemented by hand.
+public interface FiniteStateMachineDispatch {
+
+    Class<?> getTargetClass();
+
+    void register(Registry registry);
+
+    void invokeStateHandler(int id, Object object, String state, FiniteStateMachine fsm, Instant instant, Object message, Object params)
+            throws Throwable;
+
+    // returns false if the message shouldn't go on to the state handler
+    boolean invokeFilterHandler(int id, Object object, String state, FiniteStateMachine fsm, Instant instant, Object message,
+            Object params) throws Throwable;
+
+    void invokeTransitionHandler(int id, Object object, String from, String to, FiniteStateMachine fsm) throws Throwable;
+
+    interface Registry {
+
+        void stateHandler(int id, String name, String state, Class<?> messageType, Class<?> paramType);
+
+        void filterHandler(int id, String name, String state, Class<?> messageType, Class<?> paramType);
+
+        void transitionHandler(int id, String name, String from, String to);
+    }
+}
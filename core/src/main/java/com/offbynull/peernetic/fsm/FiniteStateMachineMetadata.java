@@ -0,0 +1,464 @@
+package com.offbynull.peernetic.fsm;
+
+import java.lang.reflect.Method;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import org.apache.commons.collections4.map.UnmodifiableMap;
+import org.apache.commons.lang3.ClassUtils;
+import org.apache.commons.lang3.Validate;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+// Handler tables for a class, built once and shared by every FiniteStateMachine driving an instance of that class (and param type), so
+// constructing a FiniteStateMachine doesn't scan methods/annotations or spin up invokers. Everything here is immutable apart from the
+// dispatch cache and the state ids of undeclared states, which are both safe to update concurrently, so instances can be shared between
+// actor threads freely.
+//
+// If fsm-processor generated a FiniteStateMachineDispatch for the class, the tables come from that and the handlers get called directly
+// through it. Otherwise the class is reflected over, same as before.
+final class FiniteStateMachineMetadata {
+    private static final Logger LOG = LoggerFactory.getLogger(FiniteStateMachineMetadata.class);
+    
+    private static final String GENERATED_SUFFIX = "_FsmDispatch";
+    
+    private static final ClassValue<ConcurrentMap<Class<?>, FiniteStateMachineMetadata>> METADATA
+            = new ClassValue<ConcurrentMap<Class<?>, FiniteStateMachineMetadata>>() {
+        @Override
+        protected ConcurrentMap<Class<?>, FiniteStateMachineMetadata> computeValue(Class<?> type) {
+            return new ConcurrentHashMap<>(); // keyed by param type
+        }
+    };
+    
+    private final UnmodifiableMap<StateKey, Handler<StateHandlerInvoker>> stateHandlerMap;
+    private final UnmodifiableMap<StateKey, Handler<FilterHandlerInvoker>> filterStateHandlerMap;
+    
+    // States are interned to dense ids so that dispatch/transition lookups are array indexes rather than hashing strings. States that
+    // show up in a handler annotation get ids 0 to declaredStateCount-1 up front. This is shared by every fsm driving the class, so it's
+    // never added to -- any other state an fsm gets put in to has no handlers, and is given an id by that fsm alone (see FiniteStateMachine).
+    private final Map<String, Integer> stateIds;
+    private final String[] stateNames; // id -> state
+    private final int declaredStateCount;
+    // from id * declaredStateCount + to id -> transition handler
+    private final Handler<TransitionHandlerInvoker>[] transitionHandlers;
+    // state id -> concrete message class -> resolved handler/filter, filled in lazily so each pair only walks the class hierarchy once
+    private final ConcurrentMap<Class<?>, Dispatch>[] dispatchCache;
+    
+    static FiniteStateMachineMetadata get(Class<?> cls, Class<?> paramType) {
+        ConcurrentMap<Class<?>, FiniteStateMachineMetadata> byParamType = METADATA.get(cls);
+        FiniteStateMachineMetadata metadata = byParamType.get(paramType);
+        if (metadata == null) {
+            // not done under a lock, so racing threads may both build it -- that's harmless, only one gets kept
+            FiniteStateMachineDispatch generated = findGenerated(cls);
+            metadata = generated != null ? fromGenerated(generated, paramType) : fromReflection(cls, paramType);
+            FiniteStateMachineMetadata existing = byParamType.putIfAbsent(paramType, metadata);
+            if (existing != null) {
+                metadata = existing;
+            }
+        }
+        return metadata;
+    }
+    
+    private FiniteStateMachineMetadata(Map<StateKey, Handler<StateHandlerInvoker>> stateHandlerMap,
+            Map<StateKey, Handler<FilterHandlerInvoker>> filterStateHandlerMap,
+            Map<TransitionKey, Handler<TransitionHandlerInvoker>> transitionHandlerMap) {
+        this.stateHandlerMap = (UnmodifiableMap<StateKey, Handler<StateHandlerInvoker>>) UnmodifiableMap.unmodifiableMap(stateHandlerMap);
+        this.filterStateHandlerMap = (UnmodifiableMap<StateKey, Handler<FilterHandlerInvoker>>) UnmodifiableMap.unmodifiableMap(
+                filterStateHandlerMap);
+        
+        Set<String> declaredStates = new LinkedHashSet<>();
+        stateHandlerMap.keySet().forEach(k -> declaredStates.add(k.getState()));
+        filterStateHandlerMap.keySet().forEach(k -> declaredStates.add(k.getState()));
+        transitionHandlerMap.keySet().forEach(k -> {
+            declaredStates.add(k.getFrom());
+            declaredStates.add(k.getTo());
+        });
+        
+        this.stateIds = new HashMap<>();
+        this.stateNames = declaredStates.toArray(new String[declaredStates.size()]);
+        this.declaredStateCount = stateNames.length;
+        for (int i = 0; i < declaredStateCount; i++) {
+            stateIds.put(stateNames[i], i);
+        }
+        
+        this.transitionHandlers = new Handler[declaredStateCount * declaredStateCount];
+        for (Map.Entry<TransitionKey, Handler<TransitionHandlerInvoker>> entry : transitionHandlerMap.entrySet()) {
+            int fromStateId = stateIds.get(entry.getKey().getFrom());
+            int toStateId = stateIds.get(entry.getKey().getTo());
+            transitionHandlers[fromStateId * declaredStateCount + toStateId] = entry.getValue();
+        }
+        
+        this.dispatchCache = new ConcurrentMap[declaredStateCount];
+        for (int i = 0; i < declaredStateCount; i++) {
+            dispatchCache[i] = new ConcurrentHashMap<>();
+        }
+    }
+    
+    // the generated class for com.x.Outer$Inner is com.x.Outer_Inner_FsmDispatch
+    private static FiniteStateMachineDispatch findGenerated(Class<?> cls) {
+        String name = cls.getName().replace('$', '_') + GENERATED_SUFFIX;
+        
+        Class<?> generatedCls;
+        try {
+            generatedCls = Class.forName(name, true, cls.getClassLoader());
+        } catch (ClassNotFoundException | LinkageError e) {
+            return null;
+        }
+        
+        if (!FiniteStateMachineDispatch.class.isAssignableFrom(generatedCls)) {
+            LOG.warn("{} isn't a {}, falling back to reflection for {}", generatedCls, FiniteStateMachineDispatch.class.getSimpleName(), cls);
+            return null;
+        }
+        
+        FiniteStateMachineDispatch generated;
+        try {
+            generated = (FiniteStateMachineDispatch) generatedCls.getConstructor().newInstance();
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            LOG.warn("Unable to create {}, falling back to reflection for {}", generatedCls, cls, e);
+            return null;
+        }
+        
+        if (generated.getTargetClass() != cls) {
+            LOG.warn("{} was generated for {}, falling back to reflection for {}", generatedCls, generated.getTargetClass(), cls);
+            return null;
+        }
+        
+        return generated;
+    }
+    
+    private static FiniteStateMachineMetadata fromGenerated(FiniteStateMachineDispatch generated, Class<?> paramType) {
+        Map<StateKey, Handler<StateHandlerInvoker>> stateHandlerMap = new HashMap<>();
+        Map<StateKey, Handler<FilterHandlerInvoker>> filterStateHandlerMap = new HashMap<>();
+        Map<TransitionKey, Handler<TransitionHandlerInvoker>> transitionHandlerMap = new HashMap<>();
+        
+        // signatures were checked by the processor, apart from the param type which is only known once the fsm gets created
+        generated.register(new FiniteStateMachineDispatch.Registry() {
+            @Override
+            public void stateHandler(int id, String name, String state, Class<?> messageType, Class<?> handlerParamType) {
+                Validate.isTrue(ClassUtils.isAssignable(handlerParamType, paramType), "Method %s with %s has incorrect arguments",
+                        name, StateHandler.class.getSimpleName());
+                StateHandlerInvoker invoker = (o, s, f, i, m, p) -> generated.invokeStateHandler(id, o, s, f, i, m, p);
+                StateKey key = new StateKey(state, messageType);
+                Validate.isTrue(stateHandlerMap.put(key, new Handler<>(name, invoker)) == null, "Duplicate %s found: %s",
+                        StateHandler.class.getSimpleName(), name);
+                LOG.debug("Mapped generated state handler for {} with type {} to method {}", state, messageType, name);
+            }
+
+            @Override
+            public void filterHandler(int id, String name, String state, Class<?> messageType, Class<?> handlerParamType) {
+                Validate.isTrue(ClassUtils.isAssignable(handlerParamType, paramType), "Method %s with %s has incorrect arguments",
+                        name, FilterHandler.class.getSimpleName());
+                FilterHandlerInvoker invoker = (o, s, f, i, m, p) -> generated.invokeFilterHandler(id, o, s, f, i, m, p);
+                StateKey key = new StateKey(state, messageType);
+                Validate.isTrue(filterStateHandlerMap.put(key, new Handler<>(name, invoker)) == null, "Duplicate %s found: %s",
+                        FilterHandler.class.getSimpleName(), name);
+                LOG.debug("Mapped generated filter handler for {} with type {} to method {}", state, messageType, name);
+            }
+
+            @Override
+            public void transitionHandler(int id, String name, String from, String to) {
+                TransitionHandlerInvoker invoker = (o, f, t, fsm) -> generated.invokeTransitionHandler(id, o, f, t, fsm);
+                TransitionKey key = new TransitionKey(from, to);
+                Validate.isTrue(transitionHandlerMap.put(key, new Handler<>(name, invoker)) == null, "Duplicate %s found: %s",
+                        TransitionHandler.class.getSimpleName(), name);
+                LOG.debug("Mapped generated transition handler for ({} -> {}) to method {}", from, to, name);
+            }
+        });
+        
+        return new FiniteStateMachineMetadata(stateHandlerMap, filterStateHandlerMap, transitionHandlerMap);
+    }
+    
+    private static FiniteStateMachineMetadata fromReflection(Class<?> cls, Class<?> paramType) {
+        Method[] methods = cls.getDeclaredMethods();
+        
+        Map<StateKey, Handler<StateHandlerInvoker>> stateHandlerMap = new HashMap<>();
+        for (Method method : methods) {
+            StateHandler[] annotations = method.getDeclaredAnnotationsByType(StateHandler.class);
+            if (annotations.length == 0) {
+                continue;
+            }
+            
+            Validate.isTrue(annotations.length == 1, "Method %s can only have 1 %s annotation",
+                    method.getName(), StateHandler.class.getSimpleName());
+            
+            StateHandler stateHandler = annotations[0];
+            
+            Class<?>[] methodParams = method.getParameterTypes();
+            Validate.isTrue(methodParams.length == 5
+                    && ClassUtils.isAssignable(methodParams[0], String.class) // state
+                    && ClassUtils.isAssignable(methodParams[1], FiniteStateMachine.class) // this
+                    && ClassUtils.isAssignable(methodParams[2], Instant.class) // time
+                    && ClassUtils.isAssignable(methodParams[3], Object.class) // msg
+                    && ClassUtils.isAssignable(methodParams[4], paramType), // params
+                    "Method %s with %s has incorrect arguments",
+                    method.getName(), StateHandler.class.getSimpleName());
+            Handler<StateHandlerInvoker> handler = new Handler<>(method.toString(), HandlerInvokers.stateHandler(method));
+            
+            String[] states = stateHandler.value();
+            Validate.isTrue(states.length > 0, "Need atleast 1 state listed for method %s", method.getName());
+            
+            for (String state : states) {
+                StateKey key = new StateKey(state, methodParams[3]);
+                Handler<?> existingMethod = stateHandlerMap.put(key, handler);
+                
+                Validate.isTrue(existingMethod == null, "Duplicate %s found: %s",
+                        StateHandler.class.getSimpleName(), method.getName());
+                
+                LOG.debug("Mapped state handler for {} with type {} to method {}", key.getState(), key.getType(), method);
+            }
+        }
+        
+
+        Map<StateKey, Handler<FilterHandlerInvoker>> filterStateHandlerMap = new HashMap<>();
+        for (Method method : methods) {
+            FilterHandler[] annotations = method.getDeclaredAnnotationsByType(FilterHandler.class);
+            if (annotations.length == 0) {
+                continue;
+            }
+            
+            Validate.isTrue(annotations.length == 1, "Method %s can only have 1 %s annotation",
+                    method.getName(), FilterHandler.class.getSimpleName());
+            
+            FilterHandler stateHandler = annotations[0];
+            
+            Class<?> methodRet = method.getReturnType();
+            Class<?>[] methodParams = method.getParameterTypes();
+            Validate.isTrue((methodRet == boolean.class || methodRet == Boolean.class || methodRet == Void.TYPE) // rets void or boolean
+                    && methodParams.length == 5
+                    && ClassUtils.isAssignable(methodParams[0], String.class) // state
+                    && ClassUtils.isAssignable(methodParams[1], FiniteStateMachine.class) // this
+                    && ClassUtils.isAssignable(methodParams[2], Instant.class) // time
+                    && ClassUtils.isAssignable(methodParams[3], Object.class) // msg
+                    && ClassUtils.isAssignable(methodParams[4], paramType), // params
+                    "Method %s with %s has incorrect arguments",
+                    method.getName(), FilterHandler.class.getSimpleName());
+            Handler<FilterHandlerInvoker> handler = new Handler<>(method.toString(), HandlerInvokers.filterHandler(method));
+            
+            String[] states = stateHandler.value();
+            Validate.isTrue(states.length > 0, "Need atleast 1 state listed for method %s", method.getName());
+            
+            for (String state : states) {
+                StateKey key = new StateKey(state, methodParams[3]);
+                Handler<?> existingMethod = filterStateHandlerMap.put(key, handler);
+                
+                Validate.isTrue(existingMethod == null, "Duplicate %s found: %s",
+                        FilterHandler.class.getSimpleName(), method.getName());
+                
+                LOG.debug("Mapped filter handler for {} with type {} to method {}", key.getState(), key.getType(), method);
+            }
+        }
+        
+        Map<TransitionKey, Handler<TransitionHandlerInvoker>> transitionHandlerMap = new HashMap<>();
+        for (Method method : methods) {
+            TransitionHandler[] annotations = method.getDeclaredAnnotationsByType(TransitionHandler.class);
+            if (annotations.length == 0) {
+                continue;
+            }
+            
+            Validate.isTrue(annotations.length == 1, "Method %s can only have 1 %s annotation",
+                    method.getName(), TransitionHandler.class.getSimpleName());
+            
+            TransitionHandler transitionHandler = annotations[0];
+            
+            Class<?>[] methodParams = method.getParameterTypes();
+            Validate.isTrue(methodParams.length == 3
+                    && ClassUtils.isAssignable(methodParams[0], String.class)
+                    && ClassUtils.isAssignable(methodParams[1], String.class)
+                    && ClassUtils.isAssignable(methodParams[2], FiniteStateMachine.class),
+                    "Method %s with %s has incorrect arguments",
+                    method.getName(), TransitionHandler.class.getSimpleName());
+            Handler<TransitionHandlerInvoker> handler = new Handler<>(method.toString(), HandlerInvokers.transitionHandler(method));
+            
+            Transition[] transitions = transitionHandler.value();
+            Validate.isTrue(transitions.length > 0, "Need atleast 1 transition for method %s", method.getName());
+            
+            for (Transition transition : transitions) {
+                TransitionKey key = new TransitionKey(transition.from(), transition.to());
+                Handler<?> existingMethod = transitionHandlerMap.put(key, handler);
+                
+                Validate.isTrue(existingMethod == null, "Duplicate %s found: %s",
+                        TransitionHandler.class.getSimpleName(), method.getName());
+                
+                LOG.debug("Mapped transition handler for ({} -> {}) to method {}", key.getFrom(), key.getTo(), method);
+            }
+        }
+        
+        return new FiniteStateMachineMetadata(stateHandlerMap, filterStateHandlerMap, transitionHandlerMap);
+    }
+    
+    
+    // -1 if no handler mentions the state
+    int getStateId(String state) {
+        Validate.notNull(state);
+        Integer id = stateIds.get(state);
+        return id != null ? id : -1;
+    }
+    
+    String getStateName(int stateId) {
+        Validate.isTrue(stateId >= 0 && stateId < declaredStateCount, "Unknown state id %d", stateId);
+        return stateNames[stateId];
+    }
+    
+    int getDeclaredStateCount() {
+        return declaredStateCount;
+    }
+    
+    Dispatch getDispatch(int stateId, Class<?> msgClass) {
+        if (stateId >= declaredStateCount) {
+            return Dispatch.NONE; // no handlers mention this state
+        }
+        
+        ConcurrentMap<Class<?>, Dispatch> stateDispatchCache = dispatchCache[stateId];
+        Dispatch dispatch = stateDispatchCache.get(msgClass);
+        if (dispatch == null) {
+            String state = stateNames[stateId];
+            Handler<StateHandlerInvoker> handler = getHandler(stateHandlerMap, state, msgClass);
+            Handler<FilterHandlerInvoker> preHandler = getHandler(filterStateHandlerMap, state, msgClass);
+            dispatch = handler == null && preHandler == null ? Dispatch.NONE : new Dispatch(handler, preHandler);
+            Dispatch existing = stateDispatchCache.putIfAbsent(msgClass, dispatch);
+            if (existing != null) {
+                dispatch = existing;
+            }
+        }
+        
+        return dispatch;
+    }
+    
+    Handler<TransitionHandlerInvoker> getTransitionHandler(int fromStateId, int toStateId) {
+        if (fromStateId >= declaredStateCount || toStateId >= declaredStateCount) {
+            return null;
+        }
+        return transitionHandlers[fromStateId * declaredStateCount + toStateId];
+    }
+    
+    private static <T> Handler<T> getHandler(Map<StateKey, Handler<T>> handlerMap, String state, Class<?> msgClass) {
+        Handler<T> handler = null;
+        for (Class<?> cls : ClassUtils.hierarchy(msgClass, ClassUtils.Interfaces.INCLUDE)) {
+            StateKey key = new StateKey(state, cls);
+            handler = handlerMap.get(key);
+            
+            if (handler != null) {
+                break;
+            }
+        }
+        
+        return handler;
+    }
+    
+    static final class Dispatch {
+        private static final Dispatch NONE = new Dispatch(null, null);
+        
+        final Handler<StateHandlerInvoker> handler;
+        final Handler<FilterHandlerInvoker> preHandler;
+
+        public Dispatch(Handler<StateHandlerInvoker> handler, Handler<FilterHandlerInvoker> preHandler) {
+            this.handler = handler;
+            this.preHandler = preHandler;
+        }
+    }
+    
+    static final class Handler<T> {
+        final String name;
+        final T invoker;
+
+        public Handler(String name, T invoker) {
+            this.name = name;
+            this.invoker = invoker;
+        }
+    }
+    
+    private static final class StateKey {
+        private final String state;
+        private final Class<?> type;
+
+        public StateKey(String state, Class<?> type) {
+            this.state = state;
+            this.type = type;
+        }
+
+        public String getState() {
+            return state;
+        }
+
+        public Class<?> getType() {
+            return type;
+        }
+
+        @Override
+        public int hashCode() {
+            int hash = 5;
+            hash = 17 * hash + Objects.hashCode(this.state);
+            hash = 17 * hash + Objects.hashCode(this.type);
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (obj == null) {
+                return false;
+            }
+            if (getClass() != obj.getClass()) {
+                return false;
+            }
+            final StateKey other = (StateKey) obj;
+            if (!Objects.equals(this.state, other.state)) {
+                return false;
+            }
+            if (!Objects.equals(this.type, other.type)) {
+                return false;
+            }
+            return true;
+        }
+        
+    }
+    
+    private static final class TransitionKey {
+        private String from;
+        private String to;
+
+        public TransitionKey(String from, String to) {
+            this.from = from;
+            this.to = to;
+        }
+
+        public String getFrom() {
+            return from;
+        }
+
+        public String getTo() {
+            return to;
+        }
+
+        @Override
+        public int hashCode() {
+            int hash = 5;
+            hash = 67 * hash + Objects.hashCode(this.from);
+            hash = 67 * hash + Objects.hashCode(this.to);
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (obj == null) {
+                return false;
+            }
+            if (getClass() != obj.getClass()) {
+                return false;
+            }
+            final TransitionKey other = (TransitionKey) obj;
+            if (!Objects.equals(this.from, other.from)) {
+                return false;
+            }
+            if (!Objects.equals(this.to, other.to)) {
+                return false;
+            }
+            return true;
+        }
+        
+    }
+}
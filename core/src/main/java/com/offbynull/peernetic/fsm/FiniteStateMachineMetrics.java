@@ -0,0 +1,102 @@
+package com.offbynull.peernetic.fsm;
+
+import java.util.HashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import org.apache.commons.collections4.map.UnmodifiableMap;
+import org.apache.commons.lang3.Validate;
+
+// Optional instrumentation for FiniteStateMachine, kept per class: time spent in each state, transition counts between states, state
+// handler latency per (state, message type), and counts of filtered/unhandled messages. Off by default. enable() turns it on for every fsm
+// driving an instance of the class, including fsms that already exist.
+//
+// Fsms for the same class are usually driven by different actor threads, so everything is a LongAdder/LongAccumulator (no contended CAS
+// loops). While off, an fsm pays one volatile read per message/state change. While on, it pays two System.nanoTime() calls per handled
+// message plus a couple of map lookups.
+public final class FiniteStateMachineMetrics {
+
+    private static final ClassValue<Slot> SLOTS = new ClassValue<Slot>() {
+        @Override
+        protected Slot computeValue(Class<?> type) {
+            return new Slot();
+        }
+    };
+
+    private final Class<?> type;
+    private final ConcurrentMap<String, StateMetrics> states;
+
+    public static FiniteStateMachineMetrics enable(Class<?> type) {
+        Validate.notNull(type);
+        Slot slot = SLOTS.get(type);
+        synchronized (slot) {
+            if (slot.metrics == null) {
+                slot.metrics = new FiniteStateMachineMetrics(type);
+            }
+            return slot.metrics;
+        }
+    }
+
+    // counters are thrown away, enabling again starts from zero
+    public static void disable(Class<?> type) {
+        Validate.notNull(type);
+        Slot slot = SLOTS.get(type);
+        synchronized (slot) {
+            slot.metrics = null;
+        }
+    }
+
+    // null if not enabled
+    public static FiniteStateMachineMetrics get(Class<?> type) {
+        Validate.notNull(type);
+        return SLOTS.get(type).metrics;
+    }
+
+    static Slot slot(Class<?> type) {
+        return SLOTS.get(type);
+    }
+
+    private FiniteStateMachineMetrics(Class<?> type) {
+        this.type = type;
+        this.states = new ConcurrentHashMap<>();
+    }
+
+    StateMetrics state(String state) {
+        StateMetrics ret = states.get(state);
+        if (ret == null) {
+            ret = states.computeIfAbsent(state, StateMetrics::new);
+        }
+        return ret;
+    }
+
+    void recordEnter(String state) {
+        state(state).entered.increment();
+    }
+
+    void recordTransition(String fromState, String toState, long dwellNanos) {
+        state(fromState).recordExit(toState, dwellNanos);
+        state(toState).entered.increment();
+    }
+
+    public Class<?> getType() {
+        return type;
+    }
+
+    // null if no fsm has been in the state since metrics were enabled
+    public StateMetrics getState(String state) {
+        Validate.notNull(state);
+        return states.get(state);
+    }
+
+    public UnmodifiableMap<String, StateMetrics> getStates() {
+        return (UnmodifiableMap<String, StateMetrics>) UnmodifiableMap.unmodifiableMap(new HashMap<>(states));
+    }
+
+    @Override
+    public String toString() {
+        return "FiniteStateMachineMetrics{" + "type=" + type.getName() + ", states=" + states.values() + '}';
+    }
+
+    static final class Slot {
+        volatile FiniteStateMachineMetrics metrics;
+    }
+}
@@ -0,0 +1,157 @@
+package com.offbynull.peernetic.fsm;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+import org.apache.commons.collections4.set.UnmodifiableSet;
+import org.apache.commons.lang3.Validate;
+
+// Routes messages from a parent fsm to the child fsms that are waiting on them, rather than having the parent hand every message to every
+// child. Children declare what they're waiting on through FiniteStateMachine.addKeyInterest() (e.g. the nonce of a request they sent out)
+// and FiniteStateMachine.addTypeInterest() (e.g. their own timer messages). route() pulls the key out of the message and looks up the child
+// waiting on it, then looks up the children waiting on the message's class -- two hash lookups no matter how many children there are.
+//
+// Routers nest. A router created with an owner fsm passes its children's interests up to the owner, so if the owner is itself a child of
+// another router, messages for a grandchild get routed to the owner, which can then route them on through this router.
+//
+// Not thread-safe, same as FiniteStateMachine. Children may change their interests (or the parent may add/remove children) while a message
+// is being routed.
+public final class FiniteStateMachineRouter<P> {
+
+    private final FiniteStateMachine<?> owner; // null if top-level
+    private final Function<Object, Object> keyExtractor;
+    private final Set<FiniteStateMachine<P>> children;
+    private final Map<Object, FiniteStateMachine<?>> keyIndex;
+    private final Map<Class<?>, List<FiniteStateMachine<?>>> typeIndex;
+
+    // keyExtractor returns the routing key for a message, or null if it doesn't have one
+    public FiniteStateMachineRouter(Function<Object, Object> keyExtractor) {
+        this(null, keyExtractor);
+    }
+
+    // owner must already be a child of another router, its key extractor gets reused here
+    public FiniteStateMachineRouter(FiniteStateMachine<?> owner) {
+        this(owner, validateOwner(owner).parentRouter.keyExtractor);
+    }
+
+    private FiniteStateMachineRouter(FiniteStateMachine<?> owner, Function<Object, Object> keyExtractor) {
+        Validate.notNull(keyExtractor);
+        this.owner = owner;
+        this.keyExtractor = keyExtractor;
+        this.children = new HashSet<>();
+        this.keyIndex = new HashMap<>();
+        this.typeIndex = new HashMap<>();
+    }
+
+    private static FiniteStateMachine<?> validateOwner(FiniteStateMachine<?> owner) {
+        Validate.notNull(owner);
+        Validate.isTrue(owner.parentRouter != null, "Owner must be a child of another router");
+        return owner;
+    }
+
+    public void addChild(FiniteStateMachine<P> child) {
+        Validate.notNull(child);
+        Validate.isTrue(child.parentRouter == null, "Already a child of a router");
+        Validate.isTrue(child != owner, "Owner can't be its own child");
+
+        child.parentRouter = this;
+        children.add(child);
+        for (Object key : child.getKeyInterests()) {
+            indexKey(key, child);
+        }
+        for (Class<?> type : child.getTypeInterests()) {
+            indexType(type, child);
+        }
+    }
+
+    // child keeps its interests, so it can be added back later
+    public void removeChild(FiniteStateMachine<P> child) {
+        Validate.notNull(child);
+        Validate.isTrue(child.parentRouter == this, "Not a child of this router");
+
+        for (Object key : child.getKeyInterests()) {
+            unindexKey(key, child);
+        }
+        for (Class<?> type : child.getTypeInterests()) {
+            unindexType(type, child);
+        }
+        children.remove(child);
+        child.parentRouter = null;
+    }
+
+    public UnmodifiableSet<FiniteStateMachine<P>> getChildren() {
+        return (UnmodifiableSet<FiniteStateMachine<P>>) UnmodifiableSet.unmodifiableSet(children);
+    }
+
+    // returns the number of children the message went to
+    public int route(Instant instant, Object message, P params) {
+        Validate.notNull(instant);
+        Validate.notNull(message);
+
+        int count = 0;
+
+        FiniteStateMachine<P> keyChild = null;
+        Object key = keyExtractor.apply(message);
+        if (key != null) {
+            keyChild = (FiniteStateMachine<P>) keyIndex.get(key);
+            if (keyChild != null) {
+                keyChild.process(instant, message, params);
+                count++;
+            }
+        }
+
+        List<FiniteStateMachine<?>> typeChildren = typeIndex.get(message.getClass());
+        if (typeChildren != null) {
+            // copied because processing a child may change its interests
+            for (Object typeChild : typeChildren.toArray()) {
+                FiniteStateMachine<P> child = (FiniteStateMachine<P>) typeChild;
+                if (child != keyChild && child.parentRouter == this) {
+                    child.process(instant, message, params);
+                    count++;
+                }
+            }
+        }
+
+        return count;
+    }
+
+    void indexKey(Object key, FiniteStateMachine<?> child) {
+        FiniteStateMachine<?> existing = keyIndex.putIfAbsent(key, child);
+        Validate.isTrue(existing == null, "Another child is already waiting on key %s", key);
+        if (owner != null) {
+            owner.addKeyInterest(key);
+        }
+    }
+
+    void unindexKey(Object key, FiniteStateMachine<?> child) {
+        if (keyIndex.remove(key, child) && owner != null) {
+            owner.removeKeyInterest(key);
+        }
+    }
+
+    void indexType(Class<?> type, FiniteStateMachine<?> child) {
+        List<FiniteStateMachine<?>> typeChildren = typeIndex.computeIfAbsent(type, k -> new ArrayList<>(1));
+        typeChildren.add(child);
+        if (typeChildren.size() == 1 && owner != null) {
+            owner.addTypeInterest(type);
+        }
+    }
+
+    void unindexType(Class<?> type, FiniteStateMachine<?> child) {
+        List<FiniteStateMachine<?>> typeChildren = typeIndex.get(type);
+        if (typeChildren == null || !typeChildren.remove(child)) {
+            return;
+        }
+        if (typeChildren.isEmpty()) {
+            typeIndex.remove(type);
+            if (owner != null) {
+                owner.removeTypeInterest(type);
+            }
+        }
+    }
+}
@@ -0,0 +1,156 @@
+package com.offbynull.peernetic.fsm;
+
+import java.lang.invoke.CallSite;
+import java.lang.invoke.LambdaMetafactory;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.time.Instant;
+import org.apache.commons.lang3.Validate;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+// Turns handler methods in to invokers once, up front, so that dispatching a message is a plain interface call rather than a
+// Method.invoke (no argument array, no access checks, no boxing of the filter's return value).
+//
+// Where possible the invoker is spun up through LambdaMetafactory, which gives a class that calls the handler method directly -- the same
+// thing javac would generate for a method reference. LambdaMetafactory can only do that if the generated class (which lives alongside
+// this one) can see and access the method, its class and its argument types. Anything else (e.g. handlers on private/package-private
+// classes) falls back to an invoker that calls a MethodHandle through invokeExact, which is still a lot cheaper than reflection.
+final class HandlerInvokers {
+
+    private static final Logger LOG = LoggerFactory.getLogger(HandlerInvokers.class);
+
+    private static final MethodHandles.Lookup LOOKUP = MethodHandles.lookup();
+
+    private static final MethodType STATE_TYPE = MethodType.methodType(void.class,
+            Object.class, String.class, FiniteStateMachine.class, Instant.class, Object.class, Object.class);
+    private static final MethodType FILTER_TYPE = STATE_TYPE.changeReturnType(boolean.class);
+    private static final MethodType OBJECT_FILTER_TYPE = STATE_TYPE.changeReturnType(Object.class);
+    private static final MethodType TRANSITION_TYPE = MethodType.methodType(void.class,
+            Object.class, String.class, String.class, FiniteStateMachine.class);
+
+    private HandlerInvokers() {
+        // do nothing
+    }
+
+    static StateHandlerInvoker stateHandler(Method method) {
+        MethodHandle handle = unreflect(method);
+        StateHandlerInvoker invoker = spin(StateHandlerInvoker.class, STATE_TYPE, method, handle);
+        if (invoker != null) {
+            return invoker;
+        }
+
+        MethodHandle generic = handle.asType(STATE_TYPE);
+        return (o, s, f, i, m, p) -> {
+            generic.invokeExact(o, s, f, i, m, p); // statement, so the call site is typed as returning void
+        };
+    }
+
+    static FilterHandlerInvoker filterHandler(Method method) {
+        MethodHandle handle = unreflect(method);
+        Class<?> returnType = method.getReturnType();
+
+        if (returnType == void.class) {
+            StateHandlerInvoker invoker = stateHandler(method);
+            return (o, s, f, i, m, p) -> {
+                invoker.invoke(o, s, f, i, m, p);
+                return true;
+            };
+        }
+
+        if (returnType == boolean.class) {
+            FilterHandlerInvoker invoker = spin(FilterHandlerInvoker.class, FILTER_TYPE, method, handle);
+            if (invoker != null) {
+                return invoker;
+            }
+
+            MethodHandle generic = handle.asType(FILTER_TYPE);
+            return (o, s, f, i, m, p) -> (boolean) generic.invokeExact(o, s, f, i, m, p);
+        }
+
+        // Boolean, null means carry on
+        MethodHandle generic = handle.asType(OBJECT_FILTER_TYPE);
+        return (o, s, f, i, m, p) -> generic.invokeExact(o, s, f, i, m, p) != Boolean.FALSE;
+    }
+
+    static TransitionHandlerInvoker transitionHandler(Method method) {
+        MethodHandle handle = unreflect(method);
+        TransitionHandlerInvoker invoker = spin(TransitionHandlerInvoker.class, TRANSITION_TYPE, method, handle);
+        if (invoker != null) {
+            return invoker;
+        }
+
+        MethodHandle generic = handle.asType(TRANSITION_TYPE);
+        return (o, f, t, fsm) -> {
+            generic.invokeExact(o, f, t, fsm);
+        };
+    }
+
+    private static MethodHandle unreflect(Method method) {
+        Validate.notNull(method);
+        MethodHandle handle;
+        try {
+            method.setAccessible(true);
+            handle = LOOKUP.unreflect(method);
+        } catch (IllegalAccessException iae) {
+            throw new IllegalArgumentException("Unable to access handler method " + method, iae);
+        }
+
+        if (Modifier.isStatic(method.getModifiers())) {
+            handle = MethodHandles.dropArguments(handle, 0, Object.class); // object is ignored for static methods, same as Method.invoke
+        }
+        return handle;
+    }
+
+    private static <T> T spin(Class<T> type, MethodType erasedType, Method method, MethodHandle handle) {
+        if (Modifier.isStatic(method.getModifiers()) || !isLinkable(method)) {
+            return null;
+        }
+
+        try {
+            MethodType instantiatedType = handle.type().changeReturnType(erasedType.returnType());
+            CallSite callSite = LambdaMetafactory.metafactory(LOOKUP, "invoke", MethodType.methodType(type), erasedType, handle,
+                    instantiatedType);
+            return type.cast(callSite.getTarget().invoke());
+        } catch (Throwable t) { // NOPMD -- anything that goes wrong here just means falling back to a method handle
+            LOG.debug("Unable to spin up invoker for {}, falling back to method handle", method, t);
+            return null;
+        }
+    }
+
+    // the class LambdaMetafactory generates acts as if it were in this package/class loader, so it can only call the method directly if
+    // everything it touches is public and visible from here
+    private static boolean isLinkable(Method method) {
+        if (!Modifier.isPublic(method.getModifiers()) || !isLinkable(method.getDeclaringClass())) {
+            return false;
+        }
+        for (Class<?> paramType : method.getParameterTypes()) {
+            if (!isLinkable(paramType)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isLinkable(Class<?> cls) {
+        Class<?> component = cls;
+        while (component.isArray()) {
+            component = component.getComponentType();
+        }
+        if (component.isPrimitive()) {
+            return true;
+        }
+        if (!Modifier.isPublic(component.getModifiers())) {
+            return false;
+        }
+
+        try {
+            return Class.forName(component.getName(), false, HandlerInvokers.class.getClassLoader()) == component;
+        } catch (ClassNotFoundException | LinkageError e) {
+            return false;
+        }
+    }
+}
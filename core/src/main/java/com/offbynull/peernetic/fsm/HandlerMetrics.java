@@ -0,0 +1,58 @@
+package com.offbynull.peernetic.fsm;
+
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+// Counters for one message type in one state. Handler latency only covers the state handler, not the filter in front of it.
+public final class HandlerMetrics {
+
+    private final Class<?> messageType;
+    final LongAdder invocations = new LongAdder();
+    final LongAdder totalNanos = new LongAdder();
+    final LongAccumulator maxNanos = new LongAccumulator(Math::max, 0L);
+    final LongAdder filtered = new LongAdder();
+    final LongAdder unhandled = new LongAdder();
+
+    HandlerMetrics(Class<?> messageType) {
+        this.messageType = messageType;
+    }
+
+    void recordInvocation(long durationNanos) {
+        invocations.increment();
+        totalNanos.add(durationNanos);
+        maxNanos.accumulate(durationNanos);
+    }
+
+    public Class<?> getMessageType() {
+        return messageType;
+    }
+
+    public long getInvocationCount() {
+        return invocations.sum();
+    }
+
+    public long getTotalNanos() {
+        return totalNanos.sum();
+    }
+
+    public long getMaxNanos() {
+        return maxNanos.get();
+    }
+
+    // messages the filter stopped from going on to the state handler
+    public long getFilteredCount() {
+        return filtered.sum();
+    }
+
+    // messages that had no state handler
+    public long getUnhandledCount() {
+        return unhandled.sum();
+    }
+
+    @Override
+    public String toString() {
+        return "HandlerMetrics{" + "messageType=" + messageType.getName() + ", invocationCount=" + getInvocationCount() + ", totalNanos="
+                + getTotalNanos() + ", maxNanos=" + getMaxNanos() + ", filteredCount=" + getFilteredCount() + ", unhandledCount="
+                + getUnhandledCount() + '}';
+    }
+}
@@ -0,0 +1,8 @@
+package com.offbynull.peernetic.fsm;
+
+import java.time.Instant;
+
+@FunctionalInterface
+interface StateHandlerInvoker {
+    void invoke(Object object, String state, FiniteStateMachine fsm, Instant instant, Object message, Object params) throws Throwable;
+}
@@ -0,0 +1,94 @@
+package com.offbynull.peernetic.fsm;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import org.apache.commons.collections4.map.UnmodifiableMap;
+
+// Counters for one state. Dwell time is only recorded once an fsm leaves the state (and only if metrics were already on when it entered).
+public final class StateMetrics {
+
+    private final String state;
+    final LongAdder entered = new LongAdder();
+    final LongAdder exited = new LongAdder();
+    final LongAdder totalDwellNanos = new LongAdder();
+    final LongAccumulator maxDwellNanos = new LongAccumulator(Math::max, 0L);
+    private final ConcurrentMap<String, LongAdder> transitions = new ConcurrentHashMap<>(); // to state -> count
+    private final ConcurrentMap<Class<?>, HandlerMetrics> handlers = new ConcurrentHashMap<>(); // message type -> counters
+
+    StateMetrics(String state) {
+        this.state = state;
+    }
+
+    void recordExit(String toState, long dwellNanos) {
+        exited.increment();
+        if (dwellNanos >= 0L) {
+            totalDwellNanos.add(dwellNanos);
+            maxDwellNanos.accumulate(dwellNanos);
+        }
+
+        LongAdder count = transitions.get(toState);
+        if (count == null) {
+            count = transitions.computeIfAbsent(toState, k -> new LongAdder());
+        }
+        count.increment();
+    }
+
+    HandlerMetrics handler(Class<?> messageType) {
+        HandlerMetrics ret = handlers.get(messageType);
+        if (ret == null) {
+            ret = handlers.computeIfAbsent(messageType, HandlerMetrics::new);
+        }
+        return ret;
+    }
+
+    public String getState() {
+        return state;
+    }
+
+    public long getEnteredCount() {
+        return entered.sum();
+    }
+
+    public long getExitedCount() {
+        return exited.sum();
+    }
+
+    public long getTotalDwellNanos() {
+        return totalDwellNanos.sum();
+    }
+
+    public long getMaxDwellNanos() {
+        return maxDwellNanos.get();
+    }
+
+    // to state -> number of times an fsm went from this state to it
+    public UnmodifiableMap<String, Long> getTransitionCounts() {
+        Map<String, Long> ret = new HashMap<>();
+        transitions.forEach((k, v) -> ret.put(k, v.sum()));
+        return (UnmodifiableMap<String, Long>) UnmodifiableMap.unmodifiableMap(ret);
+    }
+
+    // message type -> counters, keyed by the message's concrete class rather than the type the handler takes
+    public UnmodifiableMap<Class<?>, HandlerMetrics> getHandlers() {
+        return (UnmodifiableMap<Class<?>, HandlerMetrics>) UnmodifiableMap.unmodifiableMap(new HashMap<>(handlers));
+    }
+
+    public long getUnhandledCount() {
+        long ret = 0L;
+        for (HandlerMetrics handler : handlers.values()) {
+            ret += handler.getUnhandledCount();
+        }
+        return ret;
+    }
+
+    @Override
+    public String toString() {
+        return "StateMetrics{" + "state=" + state + ", enteredCount=" + getEnteredCount() + ", exitedCount=" + getExitedCount()
+                + ", totalDwellNanos=" + getTotalDwellNanos() + ", maxDwellNanos=" + getMaxDwellNanos() + ", transitionCounts="
+                + getTransitionCounts() + ", handlers=" + handlers.values() + '}';
+    }
+}
@@ -0,0 +1,6 @@
+package com.offbynull.peernetic.fsm;
+
+@FunctionalInterface
+interface TransitionHandlerInvoker {
+    void invoke(Object object, String from, String to, FiniteStateMachine fsm) throws Throwable;
+}
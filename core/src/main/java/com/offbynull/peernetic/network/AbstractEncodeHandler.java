@@ -1,6 +1,7 @@
 package com.offbynull.peernetic.network;
 
 import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
 import io.netty.channel.AddressedEnvelope;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.channel.DefaultAddressedEnvelope;
@@ -17,15 +18,15 @@ abstract class AbstractEncodeHandler extends MessageToMessageEncoder<Object> {
             AddressedEnvelope<? extends Object, ? extends SocketAddress> envelopeMsg =
                     (AddressedEnvelope<? extends Object, ? extends SocketAddress>) msg;
             
-            ByteBuf encoded = encode(envelopeMsg.content());
+            ByteBuf encoded = encode(ctx.alloc(), envelopeMsg.content());
             
             res = new DefaultAddressedEnvelope<>(encoded, envelopeMsg.recipient(), envelopeMsg.sender());
         } else {
-            res = encode(msg);
+            res = encode(ctx.alloc(), msg);
         }
         
         out.add(res);
     }
     
-    protected abstract ByteBuf encode(Object obj);
+    protected abstract ByteBuf encode(ByteBufAllocator alloc, Object obj);
 }
@@ -0,0 +1,12 @@
+package com.offbynull.peernetic.network;
+
+import io.netty.buffer.ByteBuf;
+
+// Serializes straight in to / out of netty buffers, so the network path doesn't have to go through intermediate byte arrays. Every
+// Serializer is also a ByteBufSerializer (through copying defaults), implementations that can stream should override those.
+public interface ByteBufSerializer {
+    // writes obj starting at dst's writer index
+    void serialize(Object obj, ByteBuf dst);
+    // reads an object from src's readable bytes, src is not retained once this method returns
+    Object deserialize(ByteBuf src);
+}
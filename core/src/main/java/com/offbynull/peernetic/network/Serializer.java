@@ -1,6 +1,28 @@
 package com.offbynull.peernetic.network;
 
-public interface Serializer {
+import io.netty.buffer.ByteBuf;
+
+public interface Serializer extends ByteBufSerializer {
     byte[] serialize(Object obj);
     Object deserialize(byte[] data);
+
+    @Override
+    default void serialize(Object obj, ByteBuf dst) {
+        dst.writeBytes(serialize(obj));
+    }
+
+    @Override
+    default Object deserialize(ByteBuf src) {
+        int len = src.readableBytes();
+        byte[] data;
+        if (src.hasArray() && src.arrayOffset() + src.readerIndex() == 0 && src.array().length == len) {
+            data = src.array(); // buffer wraps exactly the array, no need to copy
+        } else {
+            data = new byte[len];
+            src.getBytes(src.readerIndex(), data);
+        }
+        Object obj = deserialize(data);
+        src.skipBytes(len);
+        return obj;
+    }
 }
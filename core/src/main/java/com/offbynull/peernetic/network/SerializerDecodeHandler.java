@@ -5,9 +5,9 @@ import org.apache.commons.lang3.Validate;
 
 final class SerializerDecodeHandler extends AbstractDecodeHandler {
 
-    private Serializer serializer;
+    private ByteBufSerializer serializer;
 
-    public SerializerDecodeHandler(Serializer serializer) {
+    public SerializerDecodeHandler(ByteBufSerializer serializer) {
         Validate.notNull(serializer);
         this.serializer = serializer;
     }
@@ -17,10 +17,7 @@ final class SerializerDecodeHandler extends AbstractDecodeHandler {
     protected Object decode(ByteBuf buf) {
         Validate.notNull(buf);
         
-        byte[] data = new byte[buf.readableBytes()];
-        buf.readBytes(data);
-        
-        return serializer.deserialize(data);
+        return serializer.deserialize(buf); // buf released by netty after this returns
     }
     
 }
@@ -1,24 +1,31 @@
 package com.offbynull.peernetic.network;
 
 import io.netty.buffer.ByteBuf;
-import io.netty.buffer.Unpooled;
+import io.netty.buffer.ByteBufAllocator;
 import org.apache.commons.lang3.Validate;
 
 
 final class SerializerEncodeHandler extends AbstractEncodeHandler {
 
-    private Serializer serializer;
+    private ByteBufSerializer serializer;
 
-    public SerializerEncodeHandler(Serializer serializer) {
+    public SerializerEncodeHandler(ByteBufSerializer serializer) {
         Validate.notNull(serializer);
         this.serializer = serializer;
     }
 
     @Override
-    protected ByteBuf encode(Object obj) {
+    protected ByteBuf encode(ByteBufAllocator alloc, Object obj) {
+        Validate.notNull(alloc);
         Validate.notNull(obj);
         
-        byte[] data = serializer.serialize(obj);
-        return Unpooled.wrappedBuffer(data);
+        ByteBuf buf = alloc.ioBuffer(); // pooled/direct if the channel's allocator is, goes to the socket without another copy
+        try {
+            serializer.serialize(obj, buf);
+        } catch (RuntimeException re) {
+            buf.release();
+            throw re;
+        }
+        return buf;
     }
 }
@@ -1,9 +1,12 @@
 package com.offbynull.peernetic.network;
 
 import io.netty.bootstrap.Bootstrap;
+import io.netty.buffer.PooledByteBufAllocator;
 import io.netty.channel.Channel;
 import io.netty.channel.ChannelInitializer;
+import io.netty.channel.ChannelOption;
 import io.netty.channel.DefaultAddressedEnvelope;
+import io.netty.channel.EventLoop;
 import io.netty.channel.EventLoopGroup;
 import io.netty.channel.nio.NioEventLoopGroup;
 import io.netty.channel.socket.nio.NioDatagramChannel;
@@ -18,16 +21,16 @@ public final class UdpGateway implements Gateway<InetSocketAddress> {
     private final EventLoopGroup eventLoopGroup;
     private final boolean closeEventLoopGroup;
 
-    public UdpGateway(int port, GatewayListener listener, Serializer serializer) {
+    public UdpGateway(int port, GatewayListener listener, ByteBufSerializer serializer) {
         this(new InetSocketAddress(port), null, listener, serializer);
     }
 
-    public UdpGateway(InetSocketAddress bindAddress, GatewayListener<InetSocketAddress> listener, Serializer serializer) {
+    public UdpGateway(InetSocketAddress bindAddress, GatewayListener<InetSocketAddress> listener, ByteBufSerializer serializer) {
         this(bindAddress, null, listener, serializer);
     }
     
     public UdpGateway(InetSocketAddress bindAddress, EventLoopGroup eventLoopGroup, GatewayListener<InetSocketAddress> listener,
-            Serializer serializer) {
+            ByteBufSerializer serializer) {
         Validate.notNull(bindAddress);
 //        Validate.notNull(eventLoopGroup); // can be null
         Validate.notNull(listener);
@@ -49,6 +52,7 @@ public final class UdpGateway implements Gateway<InetSocketAddress> {
             Bootstrap cb = new Bootstrap();
             cb.group(this.eventLoopGroup)
                     .channel(NioDatagramChannel.class)
+                    .option(ChannelOption.ALLOCATOR, PooledByteBufAllocator.DEFAULT) // encoder serializes directly in to these
                     .handler(new ChannelInitializer<NioDatagramChannel>() {
                         @Override
                         public void initChannel(NioDatagramChannel ch) throws Exception {
@@ -73,6 +77,12 @@ public final class UdpGateway implements Gateway<InetSocketAddress> {
         this.channel = channel;
     }
 
+    // loop that reads/decodes for this gateway (and that the listener gets called on) -- pass in a single EventLoop as the group to pin
+    // the gateway to it, e.g. to run the listener's actors on the same loop with EventLoopActorHost
+    public EventLoop getEventLoop() {
+        return channel.eventLoop();
+    }
+
     @Override
     public void send(InetSocketAddress destination, Object message) {
         DefaultAddressedEnvelope datagramPacket = new DefaultAddressedEnvelope(message, destination);
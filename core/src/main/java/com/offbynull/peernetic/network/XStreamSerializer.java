@@ -2,6 +2,9 @@ package com.offbynull.peernetic.network;
 
 import com.thoughtworks.xstream.XStream;
 import com.thoughtworks.xstream.io.binary.BinaryStreamDriver;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufInputStream;
+import io.netty.buffer.ByteBufOutputStream;
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import org.apache.commons.io.output.ByteArrayOutputStream;
@@ -43,4 +46,27 @@ public final class XStreamSerializer implements Serializer {
         }
     }
 
+    @Override
+    public void serialize(Object obj, ByteBuf dst) {
+        Validate.notNull(obj);
+        Validate.notNull(dst);
+        
+        try (ByteBufOutputStream bbos = new ByteBufOutputStream(dst);) {
+            xstream.toXML(obj, bbos);
+        } catch (IOException ioe) {
+            throw new IllegalStateException(ioe);
+        }
+    }
+
+    @Override
+    public Object deserialize(ByteBuf src) {
+        Validate.notNull(src);
+        
+        try (ByteBufInputStream bbis = new ByteBufInputStream(src);) {
+            return xstream.fromXML(bbis);
+        } catch (IOException ioe) {
+            throw new IllegalStateException(ioe);
+        }
+    }
+
 }
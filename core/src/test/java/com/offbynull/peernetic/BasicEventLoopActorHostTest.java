@@ -0,0 +1,69 @@
+package com.offbynull.peernetic;
+
+import com.offbynull.peernetic.actor.Actor;
+import com.offbynull.peernetic.actor.Endpoint;
+import com.offbynull.peernetic.actor.NullEndpoint;
+import com.offbynull.peernetic.network.UdpGateway;
+import com.offbynull.peernetic.network.XStreamSerializer;
+import io.netty.channel.EventLoop;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.nio.NioEventLoopGroup;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import org.junit.Assert;
+import org.junit.Test;
+
+public final class BasicEventLoopActorHostTest {
+
+    @Test
+    public void actorRunsOnGatewayEventLoopTest() throws Throwable {
+        EventLoopGroup eventLoopGroup = new NioEventLoopGroup(1);
+        EventLoop eventLoop = eventLoopGroup.next();
+
+        List<Object> received = Collections.synchronizedList(new ArrayList<>());
+        List<Boolean> onLoop = Collections.synchronizedList(new ArrayList<>());
+        CountDownLatch latch = new CountDownLatch(3);
+        Endpoint[] self = new Endpoint[1];
+        EventLoopActorHost[] host = new EventLoopActorHost[1];
+        Actor actor = (time, source, message) -> {
+            onLoop.add(eventLoop.inEventLoop());
+            received.add(message);
+            if ("from network".equals(message)) {
+                self[0].send(source, "from self"); // handled after this step returns, not re-entrantly
+                host[0].getEndpointScheduler().scheduleMessage(Duration.ofMillis(10L), source, self[0], "from timer");
+                received.add("step done");
+            }
+            latch.countDown();
+        };
+        host[0] = EventLoopActorHost.createAndStart(eventLoop, actor);
+        self[0] = host[0].getEndpoint(actor);
+
+        InetSocketAddress address1 = new InetSocketAddress(InetAddress.getLocalHost(), 9010);
+        InetSocketAddress address2 = new InetSocketAddress(InetAddress.getLocalHost(), 9011);
+        UdpGateway udpGateway1 = new UdpGateway(address1, eventLoop, new GatewayInputAdapter<>(self[0]), new XStreamSerializer());
+        UdpGateway udpGateway2 = new UdpGateway(address2, m -> { }, new XStreamSerializer());
+        Assert.assertSame(eventLoop, udpGateway1.getEventLoop());
+
+        udpGateway2.send(address1, "from network");
+
+        Assert.assertTrue(latch.await(5L, TimeUnit.SECONDS));
+        Assert.assertEquals(Arrays.asList("from network", "step done", "from self", "from timer"), received);
+        Assert.assertEquals(Arrays.asList(true, true, true), onLoop);
+
+        host[0].shutdown();
+        self[0].send(NullEndpoint.INSTANCE, "after shutdown");
+        Thread.sleep(50L);
+        Assert.assertEquals(4, received.size());
+
+        udpGateway1.close();
+        udpGateway2.close();
+        eventLoopGroup.shutdownGracefully();
+    }
+}
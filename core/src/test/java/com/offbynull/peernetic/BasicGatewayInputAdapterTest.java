@@ -0,0 +1,57 @@
+package com.offbynull.peernetic;
+
+import com.offbynull.peernetic.actor.Endpoint;
+import com.offbynull.peernetic.network.Gateway;
+import com.offbynull.peernetic.network.Message;
+import java.util.List;
+import org.junit.Assert;
+import org.junit.Test;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.eq;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mockito;
+
+public final class BasicGatewayInputAdapterTest {
+
+    @Test
+    public void reusesSourceEndpointPerAddressTest() throws Throwable {
+        Gateway<Integer> gateway = Mockito.mock(Gateway.class);
+        Endpoint endpoint = Mockito.mock(Endpoint.class);
+        GatewayOutputEndpointCache<Integer> cache = new GatewayOutputEndpointCache<>();
+        GatewayInputAdapter<Integer> inputAdapter = new GatewayInputAdapter<>(endpoint, cache);
+
+        inputAdapter.onReadMessage(new Message<>(5, 6, "a", gateway));
+        inputAdapter.onReadMessage(new Message<>(5, 6, "b", gateway));
+        inputAdapter.onReadMessage(new Message<>(5, 7, "c", gateway));
+
+        ArgumentCaptor<Endpoint> captor = ArgumentCaptor.forClass(Endpoint.class);
+        Mockito.verify(endpoint, Mockito.times(3)).send(captor.capture(), Mockito.anyString());
+        List<Endpoint> srcEndpoints = captor.getAllValues();
+        Assert.assertSame(srcEndpoints.get(0), srcEndpoints.get(1));
+        Assert.assertNotEquals(srcEndpoints.get(0), srcEndpoints.get(2));
+        Assert.assertSame(new GatewayEndpointDirectory<>(gateway, cache).lookup(6), srcEndpoints.get(0));
+
+        srcEndpoints.get(0).send(endpoint, "bye");
+        Mockito.verify(gateway).send(eq(6), any());
+    }
+
+    @Test
+    public void everyGatewayCachedTest() throws Throwable {
+        Gateway<Integer> gateway1 = Mockito.mock(Gateway.class);
+        Gateway<Integer> gateway2 = Mockito.mock(Gateway.class);
+        Endpoint endpoint = Mockito.mock(Endpoint.class);
+        GatewayOutputEndpointCache<Integer> cache = new GatewayOutputEndpointCache<>();
+        GatewayInputAdapter<Integer> inputAdapter1 = new GatewayInputAdapter<>(endpoint, cache);
+        GatewayInputAdapter<Integer> inputAdapter2 = new GatewayInputAdapter<>(endpoint, cache);
+
+        inputAdapter1.onReadMessage(new Message<>(5, 6, "a", gateway1));
+        inputAdapter1.onReadMessage(new Message<>(5, 6, "b", gateway2));
+        inputAdapter2.onReadMessage(new Message<>(5, 6, "c", gateway2));
+
+        ArgumentCaptor<Endpoint> captor = ArgumentCaptor.forClass(Endpoint.class);
+        Mockito.verify(endpoint, Mockito.times(3)).send(captor.capture(), Mockito.anyString());
+        List<Endpoint> srcEndpoints = captor.getAllValues();
+        Assert.assertNotEquals(srcEndpoints.get(0), srcEndpoints.get(1));
+        Assert.assertSame(srcEndpoints.get(1), srcEndpoints.get(2)); // second gateway and second adapter, still the same object
+    }
+}
@@ -0,0 +1,52 @@
+package com.offbynull.peernetic;
+
+import com.offbynull.peernetic.network.Gateway;
+import org.junit.Assert;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+public final class BasicGatewayOutputEndpointCacheTest {
+
+    @Test
+    public void sameEndpointPerGatewayAndAddressTest() throws Throwable {
+        Gateway<Integer> gateway1 = Mockito.mock(Gateway.class);
+        Gateway<Integer> gateway2 = Mockito.mock(Gateway.class);
+        GatewayOutputEndpointCache<Integer> cache = new GatewayOutputEndpointCache<>();
+
+        GatewayEndpointDirectory<Integer> directory1 = new GatewayEndpointDirectory<>(gateway1, cache);
+        GatewayEndpointDirectory<Integer> directory2 = new GatewayEndpointDirectory<>(gateway2, cache);
+
+        Assert.assertSame(directory1.lookup(1), directory1.lookup(1));
+        Assert.assertSame(directory1.lookup(1), new GatewayEndpointDirectory<>(gateway1, cache).lookup(1));
+        Assert.assertSame(directory2.lookup(1), cache.get(gateway2, 1));
+        Assert.assertNotSame(directory1.lookup(1), directory1.lookup(2));
+        Assert.assertNotEquals(directory1.lookup(1), directory2.lookup(1));
+        Assert.assertEquals(directory1.lookup(1), new GatewayOutputEndpoint<>(gateway1, 1));
+    }
+
+    @Test
+    public void boundedPerGatewayTest() throws Throwable {
+        Gateway<Integer> gateway = Mockito.mock(Gateway.class);
+        GatewayOutputEndpointCache<Integer> cache = new GatewayOutputEndpointCache<>(16);
+
+        GatewayOutputEndpoint<Integer> first = cache.get(gateway, 0);
+        for (int i = 1; i <= 1000; i++) {
+            cache.get(gateway, i);
+        }
+
+        GatewayOutputEndpoint<Integer> again = cache.get(gateway, 0);
+        Assert.assertNotSame(first, again); // pushed out by the others
+        Assert.assertEquals(first, again);
+    }
+
+    @Test
+    public void removeLetsGoOfGatewayTest() throws Throwable {
+        Gateway<Integer> gateway = Mockito.mock(Gateway.class);
+        GatewayOutputEndpointCache<Integer> cache = new GatewayOutputEndpointCache<>();
+
+        GatewayOutputEndpoint<Integer> first = cache.get(gateway, 0);
+        cache.remove(gateway);
+
+        Assert.assertNotSame(first, cache.get(gateway, 0));
+    }
+}
@@ -0,0 +1,107 @@
+package com.offbynull.peernetic.actor;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+// Compares a single ActorRunnable hosting every actor against a thread per actor. Each operation sends one message to every actor and
+// waits for all of them to be processed, with each onStep blocking for blockNanos to simulate logging/disk access. Run from the core
+// directory with
+//   mvn test-compile exec:exec -Dexec.classpathScope=test -Dexec.executable=java
+//       -Dexec.args="-cp %classpath com.offbynull.peernetic.actor.ActorRunnableBenchmark"
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ActorRunnableBenchmark {
+
+    @Param({"SINGLE_THREAD", "THREAD_PER_ACTOR"})
+    public String mode;
+
+    @Param({"1000"})
+    public int actorCount;
+
+    @Param({"0", "50000"})
+    public long blockNanos;
+
+    private volatile CountDownLatch latch;
+    private Endpoint[] endpoints;
+    private ActorRunnable actorRunnable;
+    private ActorRunnableGroup actorRunnableGroup;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        Actor[] actors = new Actor[actorCount];
+        for (int i = 0; i < actorCount; i++) {
+            actors[i] = (time, source, message) -> {
+                if (blockNanos > 0L) {
+                    LockSupport.parkNanos(blockNanos);
+                }
+                latch.countDown();
+            };
+        }
+
+        endpoints = new Endpoint[actorCount];
+        switch (mode) {
+            case "SINGLE_THREAD":
+                actorRunnable = ActorRunnable.createAndStart(actors);
+                for (int i = 0; i < actorCount; i++) {
+                    endpoints[i] = actorRunnable.getEndpoint(actors[i]);
+                }
+                break;
+            case "THREAD_PER_ACTOR":
+                actorRunnableGroup = ActorRunnableGroup.createAndStartThreadPerActor(actors);
+                for (int i = 0; i < actorCount; i++) {
+                    endpoints[i] = actorRunnableGroup.getEndpoint(actors[i]);
+                }
+                break;
+            default:
+                throw new IllegalArgumentException(mode);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws InterruptedException {
+        if (actorRunnable != null) {
+            actorRunnable.shutdown();
+        }
+        if (actorRunnableGroup != null) {
+            actorRunnableGroup.shutdown();
+        }
+    }
+
+    @Benchmark
+    public void stepAllActors() throws InterruptedException {
+        CountDownLatch latch = new CountDownLatch(actorCount);
+        this.latch = latch;
+        for (Endpoint endpoint : endpoints) {
+            endpoint.send(NullEndpoint.INSTANCE, latch);
+        }
+        latch.await();
+    }
+
+    public static void main(String[] args) throws Exception {
+        Options options = new OptionsBuilder()
+                .include(ActorRunnableBenchmark.class.getSimpleName())
+                .build();
+        new Runner(options).run();
+    }
+}
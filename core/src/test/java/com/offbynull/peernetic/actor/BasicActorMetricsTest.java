@@ -0,0 +1,110 @@
+package com.offbynull.peernetic.actor;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import org.apache.commons.collections4.list.UnmodifiableList;
+import org.junit.Assert;
+import org.junit.Test;
+
+public final class BasicActorMetricsTest {
+
+    @Test
+    public void logHistogramTest() {
+        LogHistogram histogram = new LogHistogram();
+        for (int i = 0; i < 99; i++) {
+            histogram.record(10L);
+        }
+        histogram.record(5000L);
+
+        Assert.assertEquals(100L, histogram.getCount());
+        Assert.assertEquals(5000L, histogram.getMax());
+        Assert.assertEquals(15L, histogram.getPercentile(50.0)); // 10 lands in [8, 16)
+        Assert.assertEquals(15L, histogram.getPercentile(99.0));
+        Assert.assertEquals(5000L, histogram.getPercentile(100.0));
+    }
+
+    @Test
+    public void metricsAndJmxTest() throws Throwable {
+        int messageCount = 100;
+        CountDownLatch latch = new CountDownLatch(messageCount);
+        Actor actor = (time, source, message) -> latch.countDown();
+        ActorRunnable runnable = ActorRunnable.createAndStart(actor);
+
+        Endpoint endpoint = runnable.getEndpoint(actor);
+        for (int i = 0; i < messageCount; i++) {
+            endpoint.send(NullEndpoint.INSTANCE, i);
+        }
+        Assert.assertTrue(latch.await(5L, TimeUnit.SECONDS));
+
+        ActorMetrics actorMetrics = runnable.getActorMetrics(actor);
+        long end = System.currentTimeMillis() + 5000L;
+        while (actorMetrics.getProcessedCount() != messageCount && System.currentTimeMillis() < end) {
+            Thread.sleep(1L);
+        }
+        Assert.assertEquals(messageCount, actorMetrics.getProcessedCount());
+        Assert.assertEquals(messageCount, actorMetrics.getStepLatency().getCount());
+        Assert.assertEquals(0, actorMetrics.getMailboxDepth());
+
+        ActorRunnableMetrics runnableMetrics = runnable.getMetrics();
+        Assert.assertTrue(runnableMetrics.getBatchCount() > 0L);
+        Assert.assertTrue(runnableMetrics.getBatchSizeMax() > 0L);
+        Assert.assertTrue(runnableMetrics.getBusyNanos() > 0L);
+
+        UnmodifiableList<ObjectName> names;
+        try (ActorMetricsJmx jmx = ActorMetricsJmx.register("metricsAndJmxTest", runnable)) {
+            names = jmx.getObjectNames();
+            Assert.assertEquals(2, names.size());
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            Assert.assertEquals((long) messageCount, server.getAttribute(names.get(1), "ProcessedCount"));
+            Assert.assertEquals(runnableMetrics.getBatchCount(), server.getAttribute(names.get(0), "BatchCount"));
+        }
+        Assert.assertFalse(ManagementFactory.getPlatformMBeanServer().isRegistered(names.get(1)));
+
+        runnable.shutdown();
+    }
+
+    @Test
+    public void jmxFollowsGroupActorsTest() throws Throwable {
+        Actor first = (time, source, message) -> { };
+        Actor second = (time, source, message) -> { };
+        Actor third = (time, source, message) -> { };
+        ActorRunnableGroup group = ActorRunnableGroup.createAndStart(2, first, second);
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+
+        try (ActorMetricsJmx jmx = ActorMetricsJmx.register("jmxFollowsGroupActorsTest", group)) {
+            Assert.assertEquals(4, jmx.getObjectNames().size()); // 2 runnables + 2 actors
+
+            group.addActor(third);
+            UnmodifiableList<ObjectName> names = jmx.getObjectNames();
+            Assert.assertEquals(5, names.size());
+            ObjectName thirdName = names.get(4);
+            Assert.assertTrue(server.isRegistered(thirdName));
+            Assert.assertEquals("jmxFollowsGroupActorsTest", ObjectName.unquote(thirdName.getKeyProperty("group")));
+
+            // key isn't tied to the thread, so moving the actor leaves it as is
+            ActorRunnable from = group.getActorRunnable(third);
+            ActorRunnable to = group.getActorRunnables().get(0) == from ? group.getActorRunnables().get(1) : group.getActorRunnables().get(0);
+            group.migrateActor(third, to);
+            long end = System.currentTimeMillis() + 5000L;
+            while (group.getActorRunnable(third) != to && System.currentTimeMillis() < end) {
+                Thread.sleep(1L);
+            }
+            Assert.assertSame(to, group.getActorRunnable(third));
+            Assert.assertEquals(names, jmx.getObjectNames());
+
+            group.removeActor(first);
+            List<ObjectName> removed = new ArrayList<>(names);
+            removed.removeAll(jmx.getObjectNames());
+            Assert.assertEquals(1, removed.size());
+            Assert.assertFalse(server.isRegistered(removed.get(0)));
+            Assert.assertTrue(server.isRegistered(thirdName));
+        } finally {
+            group.shutdown();
+        }
+    }
+}
@@ -0,0 +1,209 @@
+package com.offbynull.peernetic.actor;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import org.junit.Assert;
+import org.junit.Test;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.eq;
+import org.mockito.Mockito;
+
+public final class BasicActorMigrationTest {
+
+    @Test
+    public void migrationKeepsOrderTest() throws Throwable {
+        int messageCount = 100000;
+        List<Object> received = new ArrayList<>(); // only ever touched by one thread at a time, handoff orders access
+        Set<Thread> threads = ConcurrentHashMap.newKeySet();
+        CountDownLatch latch = new CountDownLatch(messageCount);
+        Actor recver = (time, source, message) -> {
+            received.add(message);
+            threads.add(Thread.currentThread());
+            latch.countDown();
+        };
+        Actor other = (time, source, message) -> { };
+        ActorRunnableGroup group = ActorRunnableGroup.createAndStart(2, recver, other);
+
+        ActorRunnable first = group.getActorRunnable(recver);
+        ActorRunnable second = group.getActorRunnable(other);
+        Endpoint endpoint = group.getEndpoint(recver);
+        for (int i = 0; i < messageCount; i++) {
+            if (i == messageCount / 3) {
+                group.migrateActor(recver, second);
+            } else if (i == messageCount * 2 / 3) {
+                waitForOwner(group, recver, second);
+                group.migrateActor(recver, first);
+            }
+            endpoint.send(NullEndpoint.INSTANCE, i);
+        }
+
+        Assert.assertTrue(latch.await(10L, TimeUnit.SECONDS));
+        synchronized (received) {
+            for (int i = 0; i < messageCount; i++) {
+                Assert.assertEquals(i, received.get(i));
+            }
+        }
+        Assert.assertEquals(2, threads.size());
+        Assert.assertSame(endpoint, group.getEndpoint(recver));
+
+        group.shutdown();
+    }
+
+    @Test
+    public void addAndRemoveActorTest() throws Throwable {
+        Actor actor1 = Mockito.mock(Actor.class);
+        Actor actor2 = Mockito.mock(Actor.class);
+        ActorRunnableGroup group = ActorRunnableGroup.createAndStart(2, actor1);
+
+        Endpoint endpoint = group.addActor(actor2);
+        Mockito.verify(actor2, Mockito.timeout(1000)).onStart(any(Instant.class));
+        Assert.assertTrue(group.getActorRunnable(actor2).getActors().contains(actor2));
+
+        endpoint.send(NullEndpoint.INSTANCE, 1);
+        Mockito.verify(actor2, Mockito.timeout(1000)).onStep(any(Instant.class), eq(NullEndpoint.INSTANCE), eq(1));
+
+        group.removeActor(actor2);
+        Mockito.verify(actor2, Mockito.timeout(1000)).onStop(any(Instant.class));
+
+        endpoint.send(NullEndpoint.INSTANCE, 2);
+        Thread.sleep(50L);
+        Mockito.verify(actor2, Mockito.never()).onStep(any(Instant.class), eq(NullEndpoint.INSTANCE), eq(2));
+
+        group.shutdown();
+        Mockito.verify(actor1, Mockito.timeout(1000)).onStop(any(Instant.class));
+    }
+
+    @Test
+    public void rebalanceMovesBusyActorTest() throws Throwable {
+        Actor busy1 = (time, source, message) -> Thread.sleep(1L);
+        Actor idle = (time, source, message) -> { };
+        Actor busy2 = (time, source, message) -> Thread.sleep(1L);
+        ActorRunnableGroup group = ActorRunnableGroup.createAndStart(2, busy1, idle, busy2);
+
+        ActorRunnable crowded = group.getActorRunnable(busy1);
+        Assert.assertSame(crowded, group.getActorRunnable(busy2));
+
+        for (int i = 0; i < 20; i++) {
+            group.getEndpoint(busy1).send(NullEndpoint.INSTANCE, i);
+            group.getEndpoint(busy2).send(NullEndpoint.INSTANCE, i);
+        }
+
+        long end = System.currentTimeMillis() + 5000L;
+        while (group.getActorMetrics(busy1).getProcessedCount() < 20L || group.getActorMetrics(busy2).getProcessedCount() < 20L) {
+            Assert.assertTrue(System.currentTimeMillis() < end);
+            Thread.sleep(5L);
+        }
+
+        Assert.assertTrue(group.rebalance());
+
+        end = System.currentTimeMillis() + 5000L;
+        while (group.getActorRunnable(busy1) == crowded && group.getActorRunnable(busy2) == crowded) {
+            Assert.assertTrue(System.currentTimeMillis() < end);
+            Thread.sleep(5L);
+        }
+
+        group.shutdown();
+    }
+
+    @Test
+    public void schedulerFollowsMigratedActorTest() throws Throwable {
+        CountDownLatch latch = new CountDownLatch(1);
+        Thread[] firedOn = new Thread[1];
+        EndpointScheduler[] scheduler = new EndpointScheduler[1];
+        Endpoint[] self = new Endpoint[1];
+        Actor recver = (time, source, message) -> {
+            if ("go".equals(message)) {
+                scheduler[0].scheduleMessage(Duration.ofMillis(10L), source, self[0], "fired");
+                return;
+            }
+            firedOn[0] = Thread.currentThread();
+            latch.countDown();
+        };
+        Actor other = (time, source, message) -> { };
+        ActorRunnableGroup group = ActorRunnableGroup.createAndStart(2, recver, other);
+
+        ActorRunnable first = group.getActorRunnable(recver);
+        ActorRunnable second = group.getActorRunnable(other);
+        scheduler[0] = group.getEndpointScheduler(recver); // grabbed before the move, like the demos do
+        self[0] = group.getEndpoint(recver);
+
+        group.migrateActor(recver, second);
+        waitForOwner(group, recver, second);
+        Thread.sleep(50L); // let the pass that did the handoff finish recording its metrics
+        long firstProcessed = first.getMetrics().getProcessedCount();
+
+        self[0].send(NullEndpoint.INSTANCE, "go");
+
+        Assert.assertTrue(latch.await(5L, TimeUnit.SECONDS));
+        Assert.assertSame(second.getThread(), firedOn[0]);
+        Assert.assertEquals(firstProcessed, first.getMetrics().getProcessedCount()); // timer never went near the old runnable
+
+        group.shutdown();
+    }
+
+    @Test
+    public void heldMessagesGoThroughLimitTest() throws Throwable {
+        CountDownLatch firstEntered = new CountDownLatch(1);
+        CountDownLatch firstRelease = new CountDownLatch(1);
+        CountDownLatch secondEntered = new CountDownLatch(1);
+        CountDownLatch secondRelease = new CountDownLatch(1);
+        List<Object> received = Collections.synchronizedList(new ArrayList<>());
+        Actor recver = (time, source, message) -> {
+            received.add(message);
+            if ("block".equals(message)) {
+                firstEntered.countDown();
+                firstRelease.await();
+            } else if (Integer.valueOf(1).equals(message)) {
+                secondEntered.countDown();
+                secondRelease.await();
+            }
+        };
+        Actor other = (time, source, message) -> { };
+        ActorRunnableGroup group = ActorRunnableGroup.createAndStart(2, BlockingQueueMailbox::new,
+                new MailboxLimit(1, OverloadPolicy.DROP_NEWEST), recver, other);
+        ActorRunnable second = group.getActorRunnable(other);
+        Endpoint endpoint = group.getEndpoint(recver);
+
+        endpoint.send(NullEndpoint.INSTANCE, "block");
+        Assert.assertTrue(firstEntered.await(5L, TimeUnit.SECONDS));
+        group.migrateActor(recver, second);
+        endpoint.send(NullEndpoint.INSTANCE, 1); // queued behind the migration request, so it runs with the actor already parked
+        firstRelease.countDown();
+        Assert.assertTrue(secondEntered.await(5L, TimeUnit.SECONDS));
+
+        for (int i = 2; i <= 4; i++) {
+            endpoint.send(NullEndpoint.INSTANCE, i); // held, but still limited
+        }
+        secondRelease.countDown();
+
+        waitForOwner(group, recver, second);
+        long end = System.currentTimeMillis() + 5000L;
+        while (received.size() < 3) {
+            Assert.assertTrue(System.currentTimeMillis() < end);
+            Thread.sleep(1L);
+        }
+        Thread.sleep(50L);
+        Assert.assertEquals(Arrays.asList("block", 1, 2), received);
+        MailboxCounters counters = group.getMailboxCounters(recver);
+        Assert.assertEquals(2L, counters.getDroppedNewest());
+        Assert.assertEquals(0, counters.getPending());
+
+        group.shutdown();
+    }
+
+    private static void waitForOwner(ActorRunnableGroup group, Actor actor, ActorRunnable owner) throws InterruptedException {
+        long end = System.currentTimeMillis() + 5000L;
+        while (group.getActorRunnable(actor) != owner) {
+            Assert.assertTrue(System.currentTimeMillis() < end);
+            Thread.sleep(1L);
+        }
+    }
+}
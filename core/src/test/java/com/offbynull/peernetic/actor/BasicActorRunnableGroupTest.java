@@ -0,0 +1,143 @@
+package com.offbynull.peernetic.actor;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.Assert;
+import org.junit.Test;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.eq;
+import org.mockito.Mockito;
+
+public final class BasicActorRunnableGroupTest {
+
+    @Test
+    public void basicActorRunnableGroupTest() throws Throwable {
+        Actor actor1 = Mockito.mock(Actor.class);
+        Actor actor2 = Mockito.mock(Actor.class);
+        Actor actor3 = Mockito.mock(Actor.class);
+        ActorRunnableGroup group = ActorRunnableGroup.createAndStart(2, actor1, actor2, actor3);
+
+        Assert.assertEquals(2, group.getActorRunnables().size());
+        Assert.assertSame(group.getActorRunnable(actor1), group.getActorRunnable(actor3));
+        Assert.assertNotSame(group.getActorRunnable(actor1), group.getActorRunnable(actor2));
+
+        Mockito.verify(actor1, Mockito.timeout(1000)).onStart(any(Instant.class));
+        Mockito.verify(actor2, Mockito.timeout(1000)).onStart(any(Instant.class));
+        Mockito.verify(actor3, Mockito.timeout(1000)).onStart(any(Instant.class));
+
+        group.getEndpoint(actor1).send(NullEndpoint.INSTANCE, 1);
+        group.getEndpoint(actor2).send(NullEndpoint.INSTANCE, 2);
+        group.getEndpoint(actor3).send(NullEndpoint.INSTANCE, 3);
+        Mockito.verify(actor1, Mockito.timeout(1000)).onStep(any(Instant.class), eq(NullEndpoint.INSTANCE), eq(1));
+        Mockito.verify(actor2, Mockito.timeout(1000)).onStep(any(Instant.class), eq(NullEndpoint.INSTANCE), eq(2));
+        Mockito.verify(actor3, Mockito.timeout(1000)).onStep(any(Instant.class), eq(NullEndpoint.INSTANCE), eq(3));
+
+        group.shutdown();
+
+        Mockito.verify(actor1, Mockito.timeout(1000)).onStop(any(Instant.class));
+        Mockito.verify(actor2, Mockito.timeout(1000)).onStop(any(Instant.class));
+        Mockito.verify(actor3, Mockito.timeout(1000)).onStop(any(Instant.class));
+    }
+
+    @Test
+    public void perSenderOrderingTest() throws Throwable {
+        int messageCount = 10000;
+        CountDownLatch latch = new CountDownLatch(messageCount);
+        List<Object> received = Collections.synchronizedList(new ArrayList<>());
+        Actor recver = (time, source, message) -> {
+            received.add(message);
+            latch.countDown();
+        };
+        Actor other = (time, source, message) -> { };
+        ActorRunnableGroup group = ActorRunnableGroup.createAndStart(2, recver, other);
+
+        Endpoint endpoint = group.getEndpoint(recver);
+        List<Object> expected = new ArrayList<>();
+        for (int i = 0; i < messageCount; i++) {
+            endpoint.send(NullEndpoint.INSTANCE, i);
+            expected.add(i);
+        }
+
+        Assert.assertTrue(latch.await(10L, TimeUnit.SECONDS));
+        Assert.assertEquals(expected, received);
+
+        group.shutdown();
+    }
+
+    @Test
+    public void threadPerActorDoesNotStallOtherActorsTest() throws Throwable {
+        CountDownLatch release = new CountDownLatch(1);
+        Actor blocker = (time, source, message) -> release.await();
+        Actor actor = Mockito.mock(Actor.class);
+        ActorRunnableGroup group = ActorRunnableGroup.createAndStartThreadPerActor(blocker, actor);
+
+        Assert.assertEquals(2, group.getActorRunnables().size());
+        Assert.assertNotSame(group.getActorRunnable(blocker), group.getActorRunnable(actor));
+
+        group.getEndpoint(blocker).send(NullEndpoint.INSTANCE, 1);
+        group.getEndpoint(actor).send(NullEndpoint.INSTANCE, 2);
+        Mockito.verify(actor, Mockito.timeout(1000)).onStep(any(Instant.class), eq(NullEndpoint.INSTANCE), eq(2));
+
+        release.countDown();
+        group.shutdown();
+
+        Mockito.verify(actor, Mockito.timeout(1000)).onStop(any(Instant.class));
+    }
+
+    @Test
+    public void duplicateInLaterShardStartsNothingTest() throws Throwable {
+        Actor first = Mockito.mock(Actor.class);
+        Actor second = Mockito.mock(Actor.class);
+        AtomicInteger threadCount = new AtomicInteger();
+        ThreadFactory threadFactory = runnable -> {
+            threadCount.incrementAndGet();
+            Thread thread = new Thread(runnable);
+            thread.setDaemon(true);
+            return thread;
+        };
+
+        try {
+            ActorRunnableGroup.createAndStartThreadPerActor(threadFactory, first, second, first);
+            Assert.fail();
+        } catch (IllegalArgumentException iae) {
+            // expected
+        }
+
+        Assert.assertEquals(0, threadCount.get());
+        Mockito.verifyZeroInteractions(first, second);
+    }
+
+    @Test
+    public void actorsComparedByIdentityTest() throws Throwable {
+        Actor first = new EqualActor();
+        Actor second = new EqualActor();
+        ActorRunnableGroup group = ActorRunnableGroup.createAndStart(2, first, second);
+
+        Assert.assertNotSame(group.getEndpoint(first), group.getEndpoint(second));
+
+        group.shutdown();
+    }
+
+    private static final class EqualActor implements Actor {
+
+        @Override
+        public void onStep(Instant time, Endpoint source, Object message) {
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            return obj instanceof EqualActor;
+        }
+
+        @Override
+        public int hashCode() {
+            return 0;
+        }
+    }
+}
@@ -0,0 +1,114 @@
+package com.offbynull.peernetic.actor;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import org.junit.Assert;
+import org.junit.Test;
+
+public final class BasicActorRunnableSchedulerTest {
+
+    @Test
+    public void scheduleFromActorThreadTest() throws Throwable {
+        List<Object> received = Collections.synchronizedList(new ArrayList<>());
+        List<Thread> threads = Collections.synchronizedList(new ArrayList<>());
+        CountDownLatch latch = new CountDownLatch(3);
+        EndpointScheduler[] scheduler = new EndpointScheduler[1];
+        Endpoint[] self = new Endpoint[1];
+        Actor actor = (time, source, message) -> {
+            threads.add(Thread.currentThread());
+            if ("go".equals(message)) {
+                scheduler[0].scheduleMessage(Duration.ofMillis(60L), source, self[0], "c");
+                scheduler[0].scheduleMessage(Duration.ofMillis(20L), source, self[0], "a");
+                scheduler[0].scheduleMessage(Duration.ofMillis(40L), source, self[0], "b");
+                scheduler[0].scheduleMessage(Duration.ofMillis(30L), source, self[0], "x").cancel();
+                return;
+            }
+            received.add(message);
+            latch.countDown();
+        };
+        ActorRunnable actorRunnable = ActorRunnable.createAndStart(actor);
+        scheduler[0] = actorRunnable.getEndpointScheduler();
+        self[0] = actorRunnable.getEndpoint(actor);
+
+        self[0].send(NullEndpoint.INSTANCE, "go");
+
+        Assert.assertTrue(latch.await(5L, TimeUnit.SECONDS));
+        Thread.sleep(50L);
+        Assert.assertEquals(Arrays.asList("a", "b", "c"), received);
+        for (Thread thread : threads) {
+            Assert.assertSame(actorRunnable.getThread(), thread);
+        }
+
+        actorRunnable.shutdown();
+    }
+
+    @Test
+    public void scheduleFromOtherThreadTest() throws Throwable {
+        List<Object> received = Collections.synchronizedList(new ArrayList<>());
+        CountDownLatch latch = new CountDownLatch(2);
+        Actor actor = (time, source, message) -> {
+            received.add(message);
+            latch.countDown();
+        };
+        ActorRunnable actorRunnable = ActorRunnable.createAndStart(new RingBufferMailbox(), actor);
+        EndpointScheduler scheduler = actorRunnable.getEndpointScheduler();
+        Endpoint endpoint = actorRunnable.getEndpoint(actor);
+
+        // long timer first, so the actor thread has to wake up early for the short one scheduled after it
+        scheduler.scheduleMessage(Duration.ofSeconds(1L), NullEndpoint.INSTANCE, endpoint, "slow");
+        Cancellable cancellable = scheduler.scheduleMessage(Duration.ofMillis(10L), NullEndpoint.INSTANCE, endpoint, "cancelled");
+        scheduler.scheduleMessage(Duration.ofMillis(20L), NullEndpoint.INSTANCE, endpoint, "fast");
+        Assert.assertTrue(cancellable.cancel());
+
+        Assert.assertTrue(latch.await(5L, TimeUnit.SECONDS));
+        Assert.assertEquals(Arrays.asList("fast", "slow"), received);
+
+        actorRunnable.shutdown();
+    }
+
+    @Test
+    public void coalescesDueIdempotentTimersTest() throws Throwable {
+        List<Object> received = Collections.synchronizedList(new ArrayList<>());
+        CountDownLatch latch = new CountDownLatch(2);
+        EndpointScheduler[] scheduler = new EndpointScheduler[1];
+        Endpoint[] self = new Endpoint[1];
+        Actor actor = (time, source, message) -> {
+            if ("go".equals(message)) {
+                scheduler[0].scheduleMessage(Duration.ofMillis(10L), source, self[0], new Tick(1));
+                scheduler[0].scheduleMessage(Duration.ofMillis(10L), source, self[0], new Tick(2));
+                scheduler[0].scheduleMessage(Duration.ofMillis(10L), source, self[0], new Tick(3));
+                scheduler[0].scheduleMessage(Duration.ofMillis(10L), source, self[0], "x");
+                Thread.sleep(50L); // hold up the actor thread so everything comes due in the same pass
+                return;
+            }
+            received.add(message instanceof Tick ? ((Tick) message).value : message);
+            latch.countDown();
+        };
+        ActorRunnable actorRunnable = ActorRunnable.createAndStart(new CoalescingMailbox(new BlockingQueueMailbox()), actor);
+        scheduler[0] = actorRunnable.getEndpointScheduler(actor);
+        self[0] = actorRunnable.getEndpoint(actor);
+
+        self[0].send(NullEndpoint.INSTANCE, "go");
+
+        Assert.assertTrue(latch.await(5L, TimeUnit.SECONDS));
+        Thread.sleep(50L);
+        Assert.assertEquals(Arrays.asList(3, "x"), received);
+        Assert.assertEquals(2L, actorRunnable.getMailboxCounters(actor).getCoalesced());
+
+        actorRunnable.shutdown();
+    }
+
+    @Idempotent
+    private static final class Tick {
+        private final int value;
+
+        public Tick(int value) {
+            this.value = value;
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package com.offbynull.peernetic.actor;
+
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import org.junit.Assert;
+import org.junit.Test;
+
+public final class BasicActorStallWatchdogTest {
+
+    @Test
+    public void reportsStalledHandlerTest() throws Throwable {
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(11);
+        Actor actor = (time, source, message) -> {
+            if (message instanceof Long) {
+                release.await();
+            }
+            done.countDown();
+        };
+        ActorRunnable actorRunnable = ActorRunnable.createAndStart(actor);
+        ActorMetrics actorMetrics = actorRunnable.getActorMetrics(actor);
+        Endpoint endpoint = actorRunnable.getEndpoint(actor);
+
+        try (ActorStallWatchdog watchdog = new ActorStallWatchdog(Duration.ofMillis(20L))) {
+            watchdog.watch(actorRunnable);
+
+            for (int i = 0; i < 10; i++) {
+                endpoint.send(NullEndpoint.INSTANCE, i);
+            }
+            endpoint.send(NullEndpoint.INSTANCE, 0L);
+
+            long end = System.currentTimeMillis() + 5000L;
+            while (actorMetrics.getStallCount() == 0L) {
+                Assert.assertTrue(System.currentTimeMillis() < end);
+                Thread.sleep(5L);
+            }
+            Thread.sleep(100L); // still the same step, must not be reported again
+            release.countDown();
+            Assert.assertTrue(done.await(5L, TimeUnit.SECONDS));
+        }
+
+        Assert.assertEquals(1L, actorMetrics.getStallCount());
+        SlowStep stall = actorMetrics.getStalls().get(0);
+        Assert.assertEquals(Long.class.getName(), stall.getMessageType());
+        Assert.assertTrue(stall.getDurationNanos() >= TimeUnit.MILLISECONDS.toNanos(20L));
+        Assert.assertTrue(stall.getStackTrace().stream().anyMatch(e -> e.getClassName().equals(CountDownLatch.class.getName())));
+        Assert.assertEquals(1, actorMetrics.getStallDescriptions().size());
+
+        long end = System.currentTimeMillis() + 5000L;
+        while (actorMetrics.getSlowestSteps().size() != 11) {
+            Assert.assertTrue(System.currentTimeMillis() < end);
+            Thread.sleep(5L);
+        }
+        SlowStep slowest = actorMetrics.getSlowestSteps().get(0);
+        Assert.assertEquals(Long.class.getName(), slowest.getMessageType());
+        Assert.assertTrue(slowest.getStackTrace().isEmpty());
+
+        actorRunnable.shutdown();
+    }
+}
@@ -1,6 +1,13 @@
 package com.offbynull.peernetic.actor;
 
 import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import org.junit.Assert;
 import org.junit.Test;
 import static org.mockito.Matchers.any;
 import static org.mockito.Matchers.eq;
@@ -42,5 +49,76 @@ public final class BasicActorTest {
         
         Mockito.verify(actor1, Mockito.timeout(1000)).onStop(any(Instant.class));
         Mockito.verify(actor2, Mockito.timeout(1000)).onStop(any(Instant.class));
-    }    
+    }
+
+    @Test
+    public void coHostedSendSkipsMailboxTest() throws Throwable {
+        int messageCount = 1000;
+        List<Object> received = Collections.synchronizedList(new ArrayList<>());
+        CountDownLatch latch = new CountDownLatch(messageCount);
+        Endpoint[] recverEndpoint = new Endpoint[1];
+        Actor sender = (time, source, message) -> {
+            for (int i = 0; i < messageCount; i++) {
+                recverEndpoint[0].send(NullEndpoint.INSTANCE, i);
+            }
+        };
+        Actor recver = (time, source, message) -> {
+            received.add(message);
+            latch.countDown();
+        };
+        ActorRunnable actorRunnable = ActorRunnable.createAndStart(sender, recver);
+        recverEndpoint[0] = actorRunnable.getEndpoint(recver);
+
+        actorRunnable.getEndpoint(sender).send(NullEndpoint.INSTANCE, "go");
+
+        Assert.assertTrue(latch.await(5L, TimeUnit.SECONDS));
+        List<Object> expected = new ArrayList<>();
+        for (int i = 0; i < messageCount; i++) {
+            expected.add(i);
+        }
+        Assert.assertEquals(expected, received);
+        Assert.assertEquals(1L, actorRunnable.getMailboxCounters(sender).getAccepted());
+        Assert.assertEquals(0L, actorRunnable.getMailboxCounters(recver).getAccepted()); // never went through the mailbox
+
+        actorRunnable.shutdown();
+    }
+
+    @Test
+    public void batchActorTest() throws Throwable {
+        List<List<Object>> batches = Collections.synchronizedList(new ArrayList<>());
+        CountDownLatch release = new CountDownLatch(1);
+        BatchActor batchActor = new BatchActor() {
+            @Override
+            public void onStep(Instant time, Endpoint source, Object message) throws Exception {
+                throw new IllegalStateException();
+            }
+
+            @Override
+            public void onStepBatch(Instant time, List<Envelope> envelopes) throws Exception {
+                List<Object> messages = new ArrayList<>();
+                envelopes.forEach(x -> messages.add(x.getMessage()));
+                batches.add(messages);
+            }
+        };
+        Actor blocker = (time, source, message) -> release.await();
+        ActorRunnable actorRunnable = ActorRunnable.createAndStart(blocker, batchActor);
+
+        Endpoint blockerEndpoint = actorRunnable.getEndpoint(blocker);
+        Endpoint batchEndpoint = actorRunnable.getEndpoint(batchActor);
+
+        blockerEndpoint.send(NullEndpoint.INSTANCE, 0);
+        batchEndpoint.send(NullEndpoint.INSTANCE, 1); // everything here gets drained after blocker's message, in the same pass
+        batchEndpoint.send(NullEndpoint.INSTANCE, 2);
+        batchEndpoint.send(NullEndpoint.INSTANCE, 3);
+        batchEndpoint.send(NullEndpoint.INSTANCE, 4);
+        release.countDown();
+
+        long end = System.currentTimeMillis() + 5000L;
+        while (actorRunnable.getActorMetrics(batchActor).getProcessedCount() < 4L && System.currentTimeMillis() < end) {
+            Thread.sleep(1L);
+        }
+        Assert.assertEquals(Arrays.asList(Arrays.asList(1, 2, 3, 4)), batches);
+
+        actorRunnable.shutdown();
+    }
 }
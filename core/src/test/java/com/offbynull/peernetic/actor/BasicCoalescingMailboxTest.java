@@ -0,0 +1,136 @@
+package com.offbynull.peernetic.actor;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import org.junit.Assert;
+import org.junit.Test;
+
+public final class BasicCoalescingMailboxTest {
+
+    @Test
+    public void keepsLatestAtFirstPositionTest() throws Throwable {
+        CoalescingMailbox mailbox = new CoalescingMailbox(new BlockingQueueMailbox());
+        Object recipient = new Object();
+
+        mailbox.put(recipient, NullEndpoint.INSTANCE, new Tick(1, "a"));
+        mailbox.put(recipient, NullEndpoint.INSTANCE, "x");
+        mailbox.put(recipient, NullEndpoint.INSTANCE, new Tick(1, "b"));
+        mailbox.put(recipient, NullEndpoint.INSTANCE, new Tick(2, "c"));
+        mailbox.put(recipient, NullEndpoint.INSTANCE, new Tick(1, "d"));
+        Assert.assertEquals(3, mailbox.size());
+
+        List<Object> received = new ArrayList<>();
+        int[] discarded = new int[1];
+        int count = mailbox.drain(new MailboxConsumer() {
+            @Override
+            public void accept(Object r, Endpoint source, Object message) {
+                Assert.assertSame(recipient, r);
+                received.add(message instanceof Tick ? ((Tick) message).value : message);
+            }
+
+            @Override
+            public void discarded(Object r, int c) {
+                Assert.assertSame(recipient, r);
+                discarded[0] += c;
+            }
+        }, 100);
+
+        Assert.assertEquals(3, count);
+        Assert.assertEquals(Arrays.asList("d", "x", "c"), received);
+        Assert.assertEquals(2, discarded[0]);
+        Assert.assertTrue(mailbox.isEmpty());
+
+        // slot is gone once drained, so the next tick is queued up again
+        mailbox.put(recipient, NullEndpoint.INSTANCE, new Tick(1, "e"));
+        Assert.assertEquals(1, mailbox.size());
+    }
+
+    @Test
+    public void stalledActorSeesOneTickTest() throws Throwable {
+        CountDownLatch stalled = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(1);
+        List<Object> received = Collections.synchronizedList(new ArrayList<>());
+        Actor actor = (time, source, message) -> {
+            if ("stall".equals(message)) {
+                stalled.countDown();
+                release.await();
+                return;
+            }
+            received.add(message);
+            if ("done".equals(message)) {
+                done.countDown();
+            }
+        };
+        ActorRunnable actorRunnable = ActorRunnable.createAndStart(new CoalescingMailbox(new PriorityLaneMailbox()), actor);
+        Endpoint endpoint = actorRunnable.getEndpoint(actor);
+
+        endpoint.send(NullEndpoint.INSTANCE, "stall");
+        Assert.assertTrue(stalled.await(5L, TimeUnit.SECONDS));
+        for (int i = 0; i < 100; i++) {
+            endpoint.send(NullEndpoint.INSTANCE, new Tick(0, i));
+        }
+        endpoint.send(NullEndpoint.INSTANCE, "done");
+        release.countDown();
+
+        Assert.assertTrue(done.await(5L, TimeUnit.SECONDS));
+        Assert.assertEquals(2, received.size());
+        Assert.assertEquals(99, ((Tick) received.get(0)).value);
+        MailboxCounters counters = actorRunnable.getMailboxCounters(actor);
+        Assert.assertEquals(99L, counters.getCoalesced());
+        Assert.assertEquals(0, counters.getPending());
+
+        actorRunnable.shutdown();
+    }
+
+    @Test
+    public void wrappedMailboxSeesRealRecipientTest() throws Throwable {
+        Object normal = new Object();
+        Object urgent = new Object();
+        PriorityClassifier classifier = (recipient, source, message) -> recipient == urgent ? Priority.HIGH : Priority.NORMAL;
+        CoalescingMailbox mailbox = new CoalescingMailbox(new PriorityLaneMailbox(PriorityLaneMailbox.DEFAULT_HIGH_WEIGHT, classifier));
+
+        mailbox.put(normal, NullEndpoint.INSTANCE, "x");
+        mailbox.put(normal, NullEndpoint.INSTANCE, new Tick(1, "a"));
+        mailbox.put(urgent, NullEndpoint.INSTANCE, new Tick(1, "b"));
+        mailbox.put(urgent, NullEndpoint.INSTANCE, new Tick(1, "c"));
+
+        List<Object> recipients = new ArrayList<>();
+        List<Object> received = new ArrayList<>();
+        mailbox.drain(new MailboxConsumer() {
+            @Override
+            public void accept(Object r, Endpoint source, Object message) {
+                recipients.add(r);
+                received.add(message instanceof Tick ? ((Tick) message).value : message);
+            }
+
+            @Override
+            public void discarded(Object r, int c) {
+                Assert.assertSame(urgent, r);
+            }
+        }, 100);
+
+        Assert.assertEquals(Arrays.asList("c", "x", "a"), received);
+        Assert.assertEquals(Arrays.asList(urgent, normal, normal), recipients);
+    }
+
+    @Idempotent
+    private static final class Tick implements CoalescingKey {
+        private final int key;
+        private final Object value;
+
+        public Tick(int key, Object value) {
+            this.key = key;
+            this.value = value;
+        }
+
+        @Override
+        public Object getCoalescingKey() {
+            return key;
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package com.offbynull.peernetic.actor;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import org.junit.Assert;
+import org.junit.Test;
+
+public final class BasicIdleStrategyTest {
+
+    private static final List<IdleStrategy> STRATEGIES = Arrays.asList(
+            BlockingIdleStrategy.INSTANCE,
+            BusySpinIdleStrategy.INSTANCE,
+            new SpinYieldIdleStrategy(),
+            new SpinParkIdleStrategy());
+
+    @Test
+    public void deliversMessagesAndTimersTest() throws Throwable {
+        for (IdleStrategy idleStrategy : STRATEGIES) {
+            List<Object> received = Collections.synchronizedList(new ArrayList<>());
+            CountDownLatch latch = new CountDownLatch(3);
+            Actor actor = (time, source, message) -> {
+                received.add(message);
+                latch.countDown();
+            };
+            ActorRunnable actorRunnable = ActorRunnable.createAndStart(new BlockingQueueMailbox(), MailboxLimit.UNBOUNDED,
+                    idleStrategy, actor);
+            Endpoint endpoint = actorRunnable.getEndpoint(actor);
+
+            endpoint.send(NullEndpoint.INSTANCE, "a");
+            actorRunnable.getEndpointScheduler().scheduleMessage(Duration.ofMillis(20L), NullEndpoint.INSTANCE, endpoint, "c");
+            Thread.sleep(5L);
+            endpoint.send(NullEndpoint.INSTANCE, "b");
+
+            Assert.assertTrue(idleStrategy.toString(), latch.await(5L, TimeUnit.SECONDS));
+            Assert.assertEquals(idleStrategy.toString(), Arrays.asList("a", "b", "c"), received);
+            Assert.assertEquals(idleStrategy.toString(), actorRunnable.getMetrics().getIdleStrategy());
+
+            actorRunnable.shutdown();
+        }
+    }
+
+    @Test
+    public void timesOutOnEmptyMailboxTest() throws Throwable {
+        for (IdleStrategy idleStrategy : STRATEGIES) {
+            Mailbox mailbox = new BlockingQueueMailbox();
+            Assert.assertFalse(idleStrategy.toString(), idleStrategy.idle(mailbox, TimeUnit.MILLISECONDS.toNanos(5L)));
+
+            mailbox.put(NullEndpoint.INSTANCE, NullEndpoint.INSTANCE, "x");
+            Assert.assertTrue(idleStrategy.toString(), idleStrategy.idle(mailbox, TimeUnit.MILLISECONDS.toNanos(5L)));
+        }
+    }
+}
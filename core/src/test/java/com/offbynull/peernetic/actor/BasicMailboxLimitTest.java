@@ -0,0 +1,204 @@
+package com.offbynull.peernetic.actor;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import org.junit.Assert;
+import org.junit.Test;
+
+public final class BasicMailboxLimitTest {
+
+    @Test
+    public void dropNewestTest() throws Throwable {
+        List<Object> received = runWithStalledActor(new MailboxLimit(2, OverloadPolicy.DROP_NEWEST), 3, (endpoint, counters) -> {
+            Assert.assertEquals(2L, counters.getDroppedNewest());
+            Assert.assertEquals(2, counters.getPending());
+        });
+        Assert.assertEquals(Arrays.asList(0, 1, 2), received);
+    }
+
+    @Test
+    public void dropOldestTest() throws Throwable {
+        List<Object> received = runWithStalledActor(new MailboxLimit(2, OverloadPolicy.DROP_OLDEST), 3, (endpoint, counters) -> {
+            Assert.assertEquals(2L, counters.getDroppedOldest());
+            Assert.assertEquals(2, counters.getPending());
+        });
+        Assert.assertEquals(Arrays.asList(0, 3, 4), received);
+    }
+
+    @Test
+    public void rejectTest() throws Throwable {
+        List<Object> rejected = Collections.synchronizedList(new ArrayList<>());
+        MailboxLimit limit = new MailboxLimit(2, OverloadPolicy.REJECT, (destination, source, message) -> rejected.add(message));
+        List<Object> received = runWithStalledActor(limit, 3, (endpoint, counters) -> {
+            Assert.assertEquals(2L, counters.getRejected());
+        });
+        Assert.assertEquals(Arrays.asList(0, 1, 2), received);
+        Assert.assertEquals(Arrays.asList(3, 4), rejected);
+    }
+
+    @Test
+    public void blockTest() throws Throwable {
+        CountDownLatch release = new CountDownLatch(1);
+        List<Object> received = Collections.synchronizedList(new ArrayList<>());
+        Actor actor = (time, source, message) -> {
+            received.add(message);
+            release.await();
+        };
+        ActorRunnable runnable = ActorRunnable.createAndStart(new BlockingQueueMailbox(), new MailboxLimit(1, OverloadPolicy.BLOCK), actor);
+        Endpoint endpoint = runnable.getEndpoint(actor);
+        MailboxCounters counters = runnable.getMailboxCounters(actor);
+
+        endpoint.send(NullEndpoint.INSTANCE, 0);
+        waitFor(() -> received.size() == 1);
+        endpoint.send(NullEndpoint.INSTANCE, 1); // fills mailbox
+
+        CountDownLatch sent = new CountDownLatch(1);
+        Thread producer = new Thread(() -> {
+            endpoint.send(NullEndpoint.INSTANCE, 2);
+            sent.countDown();
+        });
+        producer.start();
+
+        waitFor(() -> counters.getBlocked() == 1L);
+        Assert.assertEquals(1L, sent.getCount());
+
+        release.countDown();
+        Assert.assertTrue(sent.await(5L, TimeUnit.SECONDS));
+        waitFor(() -> received.size() == 3);
+        Assert.assertEquals(Arrays.asList(0, 1, 2), received);
+        Assert.assertEquals(0L, counters.getShed());
+
+        runnable.shutdown();
+    }
+
+    @Test
+    public void dropOldestKeepsDueTimerTest() throws Throwable {
+        CountDownLatch release = new CountDownLatch(1);
+        List<Object> received = Collections.synchronizedList(new ArrayList<>());
+        EndpointScheduler[] scheduler = new EndpointScheduler[1];
+        Endpoint[] self = new Endpoint[1];
+        Actor actor = (time, source, message) -> {
+            received.add(message);
+            if (Integer.valueOf(0).equals(message)) {
+                // both come due in the same pass, the first one stalls the actor so the mailbox is full by the time the second one fires
+                scheduler[0].scheduleMessage(Duration.ofMillis(1L), NullEndpoint.INSTANCE, self[0], "stall");
+                scheduler[0].scheduleMessage(Duration.ofMillis(1L), NullEndpoint.INSTANCE, self[0], "timer");
+                Thread.sleep(10L);
+            } else if ("stall".equals(message)) {
+                release.await();
+            }
+        };
+        ActorRunnable runnable = ActorRunnable.createAndStart(new BlockingQueueMailbox(), new MailboxLimit(2, OverloadPolicy.DROP_OLDEST),
+                actor);
+        scheduler[0] = runnable.getEndpointScheduler(actor);
+        self[0] = runnable.getEndpoint(actor);
+        MailboxCounters counters = runnable.getMailboxCounters(actor);
+
+        self[0].send(NullEndpoint.INSTANCE, 0);
+        waitFor(() -> received.size() == 2);
+        for (int i = 1; i <= 4; i++) {
+            self[0].send(NullEndpoint.INSTANCE, i);
+        }
+
+        release.countDown();
+        waitFor(() -> received.size() == 5 && counters.getPending() == 0);
+        Assert.assertEquals(Arrays.asList(0, "stall", "timer", 3, 4), received); // inline timers never compete for a mailbox spot
+        Assert.assertEquals(2L, counters.getDroppedOldest());
+        Assert.assertEquals(0L, counters.getDroppedNewest());
+
+        runnable.shutdown();
+    }
+
+    @Test
+    public void interruptedSendGivesSpotBackTest() throws Throwable {
+        CountDownLatch release = new CountDownLatch(1);
+        List<Object> received = Collections.synchronizedList(new ArrayList<>());
+        Actor actor = (time, source, message) -> {
+            received.add(message);
+            release.await();
+        };
+        ActorRunnable runnable = ActorRunnable.createAndStart(new RingBufferMailbox(2), new MailboxLimit(4, OverloadPolicy.BLOCK), actor);
+        Endpoint endpoint = runnable.getEndpoint(actor);
+        MailboxCounters counters = runnable.getMailboxCounters(actor);
+
+        endpoint.send(NullEndpoint.INSTANCE, 0);
+        waitFor(() -> received.size() == 1);
+        endpoint.send(NullEndpoint.INSTANCE, 1);
+        endpoint.send(NullEndpoint.INSTANCE, 2); // ring is now full, but the limit isn't
+
+        Thread producer = new Thread(() -> endpoint.send(NullEndpoint.INSTANCE, 3)); // waits on the ring, not the limit
+        producer.start();
+        producer.join(100L);
+        Assert.assertTrue(producer.isAlive());
+
+        producer.interrupt();
+        producer.join(5000L);
+        Assert.assertFalse(producer.isAlive());
+        Assert.assertEquals(2, counters.getPending());
+
+        release.countDown();
+        waitFor(() -> received.size() == 3 && counters.getPending() == 0);
+        Assert.assertEquals(Arrays.asList(0, 1, 2), received);
+
+        runnable.shutdown();
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void dropOldestRejectsPriorityLanesTest() throws Throwable {
+        Actor actor = (time, source, message) -> { };
+        new ActorRunnable(new CoalescingMailbox(new PriorityLaneMailbox()), new MailboxLimit(2, OverloadPolicy.DROP_OLDEST), actor);
+    }
+
+    @Test
+    public void dropNewestAllowsPriorityLanesTest() throws Throwable {
+        Actor actor = (time, source, message) -> { };
+        new ActorRunnable(new PriorityLaneMailbox(), new MailboxLimit(2, OverloadPolicy.DROP_NEWEST), actor);
+    }
+
+    private static List<Object> runWithStalledActor(MailboxLimit limit, int expectedCount, CounterCheck check) throws Throwable {
+        CountDownLatch release = new CountDownLatch(1);
+        List<Object> received = Collections.synchronizedList(new ArrayList<>());
+        Actor actor = (time, source, message) -> {
+            received.add(message);
+            release.await();
+        };
+        ActorRunnable runnable = ActorRunnable.createAndStart(new BlockingQueueMailbox(), limit, actor);
+        Endpoint endpoint = runnable.getEndpoint(actor);
+        MailboxCounters counters = runnable.getMailboxCounters(actor);
+
+        endpoint.send(NullEndpoint.INSTANCE, 0);
+        waitFor(() -> received.size() == 1); // actor is now stuck processing 0, so everything past this point queues up
+        for (int i = 1; i <= 4; i++) {
+            endpoint.send(NullEndpoint.INSTANCE, i);
+        }
+        Assert.assertEquals(5L, counters.getAccepted() + counters.getDroppedNewest() + counters.getRejected());
+        check.check(endpoint, counters);
+
+        release.countDown();
+        waitFor(() -> received.size() == expectedCount && counters.getPending() == 0);
+        runnable.shutdown();
+
+        return new ArrayList<>(received);
+    }
+
+    private static void waitFor(Condition condition) throws InterruptedException {
+        long end = System.currentTimeMillis() + 5000L;
+        while (!condition.isMet()) {
+            Assert.assertTrue(System.currentTimeMillis() < end);
+            Thread.sleep(1L);
+        }
+    }
+
+    private interface Condition {
+        boolean isMet();
+    }
+
+    private interface CounterCheck {
+        void check(Endpoint endpoint, MailboxCounters counters);
+    }
+}
@@ -0,0 +1,73 @@
+package com.offbynull.peernetic.actor;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.Assert;
+import org.junit.Test;
+
+public final class BasicPriorityLaneMailboxTest {
+
+    @Test
+    public void weightedDrainTest() throws Throwable {
+        PriorityLaneMailbox mailbox = new PriorityLaneMailbox(2);
+        Object recipient = new Object();
+
+        mailbox.put(recipient, NullEndpoint.INSTANCE, "n1");
+        mailbox.put(recipient, NullEndpoint.INSTANCE, "n2");
+        mailbox.put(recipient, NullEndpoint.INSTANCE, "n3");
+        mailbox.put(recipient, NullEndpoint.INSTANCE, new Control("h1"));
+        mailbox.put(recipient, NullEndpoint.INSTANCE, new Control("h2"));
+        mailbox.put(recipient, NullEndpoint.INSTANCE, new Control("h3"));
+        mailbox.put(recipient, NullEndpoint.INSTANCE, new Control("h4"));
+        mailbox.put(recipient, NullEndpoint.INSTANCE, new Control("h5"));
+        Assert.assertEquals(8, mailbox.size());
+
+        List<Object> drained = new ArrayList<>();
+        int count = mailbox.drain((r, s, m) -> drained.add(m.toString()), 100);
+
+        Assert.assertEquals(8, count);
+        Assert.assertEquals(Arrays.asList("h1", "h2", "n1", "h3", "h4", "n2", "h5", "n3"), drained);
+        Assert.assertTrue(mailbox.isEmpty());
+    }
+
+    @Test
+    public void customClassifierTest() throws Throwable {
+        Endpoint controlEndpoint = (source, message) -> { };
+        PriorityLaneMailbox mailbox = new PriorityLaneMailbox(1,
+                (recipient, source, message) -> source == controlEndpoint ? Priority.HIGH : Priority.NORMAL);
+        Object recipient = new Object();
+
+        mailbox.put(recipient, NullEndpoint.INSTANCE, "n1");
+        mailbox.put(recipient, NullEndpoint.INSTANCE, "n2");
+        mailbox.put(recipient, controlEndpoint, "h1");
+
+        List<Object> drained = new ArrayList<>();
+        mailbox.drain((r, s, m) -> drained.add(m), 100);
+
+        Assert.assertEquals(Arrays.asList("h1", "n1", "n2"), drained);
+    }
+
+    @Test
+    public void awaitTimeoutTest() throws Throwable {
+        PriorityLaneMailbox mailbox = new PriorityLaneMailbox();
+
+        Assert.assertFalse(mailbox.await(1000000L));
+        mailbox.put(new Object(), NullEndpoint.INSTANCE, "n1");
+        Assert.assertTrue(mailbox.await(1000000L));
+    }
+
+    @MessagePriority(Priority.HIGH)
+    private static final class Control {
+        private final String name;
+
+        public Control(String name) {
+            this.name = name;
+        }
+
+        @Override
+        public String toString() {
+            return name;
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package com.offbynull.peernetic.actor;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.Assert;
+import org.junit.Test;
+
+public final class BasicTimingWheelEndpointSchedulerTest {
+
+    @Test
+    public void deliversAcrossLevelsInOrderTest() throws Throwable {
+        // wheel size of 4 means level 0 spans 4 ticks, level 1 spans 16, level 2 spans 64, ... so these delays force cascading
+        try (TimingWheelEndpointScheduler scheduler = new TimingWheelEndpointScheduler(Duration.ofMillis(1L), 4)) {
+            List<Object> received = Collections.synchronizedList(new ArrayList<>());
+            List<Long> lateness = Collections.synchronizedList(new ArrayList<>());
+            CountDownLatch latch = new CountDownLatch(5);
+            long start = System.nanoTime();
+            Endpoint destination = (source, message) -> {
+                long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+                lateness.add(elapsedMillis - (Long) message);
+                received.add(message);
+                latch.countDown();
+            };
+
+            scheduler.scheduleMessage(Duration.ofMillis(200L), NullEndpoint.INSTANCE, destination, 200L);
+            scheduler.scheduleMessage(Duration.ofMillis(3L), NullEndpoint.INSTANCE, destination, 3L);
+            scheduler.scheduleMessage(Duration.ofMillis(50L), NullEndpoint.INSTANCE, destination, 50L);
+            scheduler.scheduleMessage(Duration.ZERO, NullEndpoint.INSTANCE, destination, 0L);
+            scheduler.scheduleMessage(Duration.ofMillis(20L), NullEndpoint.INSTANCE, destination, 20L);
+
+            Assert.assertTrue(latch.await(5L, TimeUnit.SECONDS));
+            Assert.assertEquals(Arrays.asList(0L, 3L, 20L, 50L, 200L), received);
+            for (long late : lateness) {
+                Assert.assertTrue(late >= 0L);
+            }
+        }
+    }
+
+    @Test
+    public void concurrentProducersTest() throws Throwable {
+        int producerCount = 4;
+        int messageCount = 10000;
+        try (TimingWheelEndpointScheduler scheduler = new TimingWheelEndpointScheduler(Duration.ofMillis(1L))) {
+            AtomicInteger received = new AtomicInteger();
+            CountDownLatch latch = new CountDownLatch(producerCount * messageCount);
+            Endpoint destination = (source, message) -> {
+                received.incrementAndGet();
+                latch.countDown();
+            };
+
+            List<Thread> producers = new ArrayList<>();
+            for (int i = 0; i < producerCount; i++) {
+                Thread producer = new Thread(() -> {
+                    for (int j = 0; j < messageCount; j++) {
+                        scheduler.scheduleMessage(Duration.ofMillis(j % 50), NullEndpoint.INSTANCE, destination, j);
+                    }
+                });
+                producer.start();
+                producers.add(producer);
+            }
+            for (Thread producer : producers) {
+                producer.join();
+            }
+
+            Assert.assertTrue(latch.await(10L, TimeUnit.SECONDS));
+            Assert.assertEquals(producerCount * messageCount, received.get());
+        }
+    }
+
+    @Test
+    public void cancelTest() throws Throwable {
+        try (TimingWheelEndpointScheduler scheduler = new TimingWheelEndpointScheduler(Duration.ofMillis(1L), 4)) {
+            List<Object> received = Collections.synchronizedList(new ArrayList<>());
+            CountDownLatch latch = new CountDownLatch(1);
+            Endpoint destination = (source, message) -> {
+                received.add(message);
+                latch.countDown();
+            };
+
+            Cancellable cancelled = scheduler.scheduleMessage(Duration.ofMillis(20L), NullEndpoint.INSTANCE, destination, 1);
+            Cancellable delivered = scheduler.scheduleMessage(Duration.ofMillis(50L), NullEndpoint.INSTANCE, destination, 2);
+            Assert.assertTrue(cancelled.cancel());
+            Assert.assertFalse(cancelled.cancel());
+
+            Assert.assertTrue(latch.await(5L, TimeUnit.SECONDS));
+            Assert.assertFalse(delivered.cancel());
+            Assert.assertEquals(Arrays.asList(2), received);
+        }
+    }
+}
@@ -0,0 +1,121 @@
+package com.offbynull.peernetic.actor;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+// Compares allocation and hand-off latency of the mailbox implementations. Run from the core directory with
+//   mvn test-compile exec:exec -Dexec.classpathScope=test -Dexec.executable=java
+//       -Dexec.args="-cp %classpath com.offbynull.peernetic.actor.MailboxBenchmark"
+// putAndDrain reports ns/op along with gc.alloc.rate.norm (bytes allocated per message), roundTrip reports the latency percentiles of
+// handing a message to a parked actor thread and having it acknowledged.
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MailboxBenchmark {
+
+    private static final int BATCH_SIZE = 256;
+    private static final Object RECIPIENT = new Object();
+    private static final Object MESSAGE = new Object();
+
+    @State(Scope.Thread)
+    public static class PutAndDrainState {
+
+        @Param({"BLOCKING_QUEUE", "RING_BUFFER"})
+        public String mailboxType;
+
+        private Mailbox mailbox;
+        private MailboxConsumer consumer;
+        private Object lastMessage;
+
+        @Setup
+        public void setUp() {
+            mailbox = createMailbox(mailboxType);
+            consumer = (r, s, m) -> lastMessage = m;
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class RoundTripState {
+
+        @Param({"BLOCKING_QUEUE", "RING_BUFFER"})
+        public String mailboxType;
+
+        private final AtomicLong acknowledged = new AtomicLong();
+        private ActorRunnable actorRunnable;
+        private Endpoint endpoint;
+        private long sequence;
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            Actor actor = (time, source, message) -> acknowledged.lazySet((Long) message);
+            actorRunnable = ActorRunnable.createAndStart(createMailbox(mailboxType), actor);
+            endpoint = actorRunnable.getEndpoint(actor);
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() throws InterruptedException {
+            actorRunnable.shutdown();
+        }
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.NANOSECONDS)
+    @OperationsPerInvocation(BATCH_SIZE)
+    public Object putAndDrain(PutAndDrainState state) throws InterruptedException {
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            state.mailbox.put(RECIPIENT, NullEndpoint.INSTANCE, MESSAGE);
+        }
+        state.mailbox.drain(state.consumer, BATCH_SIZE);
+        return state.lastMessage;
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SampleTime)
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public long roundTrip(RoundTripState state) {
+        long sequence = ++state.sequence;
+        state.endpoint.send(NullEndpoint.INSTANCE, sequence);
+        while (state.acknowledged.get() != sequence) {
+            // spin until actor thread has seen the message
+        }
+        return sequence;
+    }
+
+    private static Mailbox createMailbox(String type) {
+        switch (type) {
+            case "BLOCKING_QUEUE":
+                return new BlockingQueueMailbox();
+            case "RING_BUFFER":
+                return new RingBufferMailbox();
+            default:
+                throw new IllegalArgumentException(type);
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        Options options = new OptionsBuilder()
+                .include(MailboxBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .build();
+        new Runner(options).run();
+    }
+}
@@ -0,0 +1,146 @@
+package com.offbynull.peernetic.actor;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.junit.Assert;
+import org.junit.Test;
+
+public final class RingBufferMailboxTest {
+
+    @Test
+    public void wrapAroundTest() throws Throwable {
+        RingBufferMailbox mailbox = new RingBufferMailbox(3);
+        Assert.assertEquals(4, mailbox.getCapacity());
+
+        List<Object> output = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            mailbox.put("r", NullEndpoint.INSTANCE, i * 2);
+            mailbox.put("r", NullEndpoint.INSTANCE, i * 2 + 1);
+            Assert.assertEquals(2, mailbox.size());
+            mailbox.await();
+            Assert.assertEquals(2, mailbox.drain((r, s, m) -> output.add(m), 10));
+            Assert.assertTrue(mailbox.isEmpty());
+        }
+
+        List<Object> expected = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            expected.add(i);
+        }
+        Assert.assertEquals(expected, output);
+    }
+
+    @Test
+    public void multipleProducerOrderingTest() throws Throwable {
+        RingBufferMailbox mailbox = new RingBufferMailbox(16);
+        int producerCount = 4;
+        int messageCount = 20000;
+
+        CountDownLatch startLatch = new CountDownLatch(1);
+        List<Thread> producers = new ArrayList<>();
+        for (int i = 0; i < producerCount; i++) {
+            Integer producerId = i;
+            Thread producer = new Thread(() -> {
+                try {
+                    startLatch.await();
+                } catch (InterruptedException ie) {
+                    throw new IllegalStateException(ie);
+                }
+                for (int j = 0; j < messageCount; j++) {
+                    mailbox.put(producerId, NullEndpoint.INSTANCE, j);
+                }
+            });
+            producer.start();
+            producers.add(producer);
+        }
+
+        int[] lastSeen = new int[producerCount];
+        Arrays.fill(lastSeen, -1);
+        startLatch.countDown();
+
+        int total = 0;
+        while (total < producerCount * messageCount) {
+            mailbox.await();
+            total += mailbox.drain((r, s, m) -> {
+                int producerId = (Integer) r;
+                Assert.assertEquals(lastSeen[producerId] + 1, (int) (Integer) m);
+                lastSeen[producerId] = (Integer) m;
+            }, 100);
+        }
+
+        for (Thread producer : producers) {
+            producer.join();
+        }
+        Assert.assertTrue(mailbox.isEmpty());
+    }
+
+    @Test
+    public void consumerSpillsWhenFullTest() throws Throwable {
+        RingBufferMailbox mailbox = new RingBufferMailbox(2);
+        mailbox.put("r", NullEndpoint.INSTANCE, 0);
+        mailbox.await(); // binds this thread as the consumer
+
+        // ring only has room for 2, anything past that put by the consumer thread itself must spill instead of blocking
+        List<Object> output = new ArrayList<>();
+        mailbox.drain((r, s, m) -> {
+            output.add(m);
+            if (output.size() == 1) {
+                for (int i = 1; i <= 5; i++) {
+                    mailbox.put("r", NullEndpoint.INSTANCE, i);
+                }
+            }
+        }, 100);
+
+        Assert.assertEquals(Arrays.asList((Object) 0, 1, 2, 3, 4, 5), output);
+        Assert.assertTrue(mailbox.isEmpty());
+    }
+
+    @Test
+    public void closeReleasesWaitingProducerTest() throws Throwable {
+        RingBufferMailbox mailbox = new RingBufferMailbox(2);
+        mailbox.put("r", NullEndpoint.INSTANCE, 0);
+        mailbox.put("r", NullEndpoint.INSTANCE, 0);
+
+        Thread producer = new Thread(() -> mailbox.put("r", NullEndpoint.INSTANCE, 1)); // ring is full, waits for a slot
+        producer.start();
+        producer.join(100L);
+        Assert.assertTrue(producer.isAlive());
+
+        mailbox.close();
+        producer.join(5000L);
+        Assert.assertFalse(producer.isAlive());
+
+        mailbox.put("r", NullEndpoint.INSTANCE, 2); // dropped
+        Assert.assertEquals(2, mailbox.drain((r, s, m) -> Assert.assertEquals(0, m), 100));
+    }
+
+    @Test
+    public void interruptReleasesWaitingProducerTest() throws Throwable {
+        RingBufferMailbox mailbox = new RingBufferMailbox(2);
+        mailbox.put("r", NullEndpoint.INSTANCE, 0);
+        mailbox.put("r", NullEndpoint.INSTANCE, 0);
+
+        AtomicBoolean queued = new AtomicBoolean(true);
+        AtomicBoolean interrupted = new AtomicBoolean();
+        Thread producer = new Thread(() -> {
+            queued.set(mailbox.put("r", NullEndpoint.INSTANCE, 1)); // ring is full, waits for a slot
+            interrupted.set(Thread.currentThread().isInterrupted());
+        });
+        producer.start();
+        producer.join(100L);
+        Assert.assertTrue(producer.isAlive());
+
+        producer.interrupt();
+        producer.join(5000L);
+        Assert.assertFalse(producer.isAlive());
+        Assert.assertFalse(queued.get());
+        Assert.assertTrue(interrupted.get());
+
+        // giving up mustn't leave a hole in the ring
+        Assert.assertEquals(2, mailbox.drain((r, s, m) -> Assert.assertEquals(0, m), 100));
+        Assert.assertTrue(mailbox.put("r", NullEndpoint.INSTANCE, 2));
+        Assert.assertEquals(1, mailbox.drain((r, s, m) -> Assert.assertEquals(2, m), 100));
+    }
+}
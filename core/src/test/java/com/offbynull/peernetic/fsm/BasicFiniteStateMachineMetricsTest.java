@@ -0,0 +1,86 @@
+package com.offbynull.peernetic.fsm;
+
+import java.time.Instant;
+import java.util.Collections;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+public final class BasicFiniteStateMachineMetricsTest {
+
+    @After
+    public void after() {
+        FiniteStateMachineMetrics.disable(Machine.class);
+    }
+
+    @Test
+    public void disabledByDefaultTest() {
+        FiniteStateMachine<Object> fsm = new FiniteStateMachine<>(new Machine(), Machine.WAIT_STATE, Object.class);
+        fsm.process(Instant.now(), 1, null);
+        Assert.assertNull(FiniteStateMachineMetrics.get(Machine.class));
+    }
+
+    @Test
+    public void recordsStatesTransitionsAndHandlersTest() throws Throwable {
+        FiniteStateMachineMetrics metrics = FiniteStateMachineMetrics.enable(Machine.class);
+        Assert.assertSame(metrics, FiniteStateMachineMetrics.get(Machine.class));
+
+        FiniteStateMachine<Object> fsm = new FiniteStateMachine<>(new Machine(), Machine.WAIT_STATE, Object.class);
+        fsm.process(Instant.now(), 1, null); // handled
+        fsm.process(Instant.now(), -1, null); // filtered
+        fsm.process(Instant.now(), "x", null); // unhandled
+        Thread.sleep(5L);
+        fsm.setState(Machine.DONE_STATE);
+        fsm.setState(Machine.WAIT_STATE);
+
+        StateMetrics wait = metrics.getState(Machine.WAIT_STATE);
+        Assert.assertEquals(2L, wait.getEnteredCount());
+        Assert.assertEquals(1L, wait.getExitedCount());
+        Assert.assertTrue(wait.getTotalDwellNanos() >= 5000000L);
+        Assert.assertEquals(wait.getTotalDwellNanos(), wait.getMaxDwellNanos());
+        Assert.assertEquals(Collections.singletonMap(Machine.DONE_STATE, 1L), wait.getTransitionCounts());
+        Assert.assertEquals(1L, wait.getUnhandledCount());
+
+        HandlerMetrics integers = wait.getHandlers().get(Integer.class);
+        Assert.assertEquals(1L, integers.getInvocationCount());
+        Assert.assertEquals(1L, integers.getFilteredCount());
+        Assert.assertEquals(0L, integers.getUnhandledCount());
+        Assert.assertTrue(integers.getMaxNanos() <= integers.getTotalNanos());
+        Assert.assertEquals(1L, wait.getHandlers().get(String.class).getUnhandledCount());
+
+        StateMetrics done = metrics.getState(Machine.DONE_STATE);
+        Assert.assertEquals(1L, done.getEnteredCount());
+        Assert.assertEquals(Collections.singletonMap(Machine.WAIT_STATE, 1L), done.getTransitionCounts());
+    }
+
+    @Test
+    public void enabledAfterConstructionTest() {
+        FiniteStateMachine<Object> fsm = new FiniteStateMachine<>(new Machine(), Machine.WAIT_STATE, Object.class);
+        FiniteStateMachineMetrics metrics = FiniteStateMachineMetrics.enable(Machine.class);
+
+        fsm.process(Instant.now(), 1, null);
+        fsm.setState(Machine.DONE_STATE);
+
+        StateMetrics wait = metrics.getState(Machine.WAIT_STATE);
+        Assert.assertEquals(0L, wait.getEnteredCount()); // entered before metrics were on
+        Assert.assertEquals(1L, wait.getExitedCount());
+        Assert.assertEquals(0L, wait.getTotalDwellNanos()); // so no idea how long it was there for
+        Assert.assertEquals(1L, wait.getHandlers().get(Integer.class).getInvocationCount());
+        Assert.assertEquals(Collections.singletonMap(Machine.DONE_STATE, 1L), wait.getTransitionCounts());
+    }
+
+    public static final class Machine {
+        public static final String WAIT_STATE = "wait";
+        public static final String DONE_STATE = "done";
+
+        @FilterHandler(WAIT_STATE)
+        public boolean filterIntegers(String state, FiniteStateMachine fsm, Instant instant, Integer message, Object param) {
+            return message >= 0;
+        }
+
+        @StateHandler(WAIT_STATE)
+        public void handleInteger(String state, FiniteStateMachine fsm, Instant instant, Integer message, Object param) {
+            // do nothing
+        }
+    }
+}
@@ -0,0 +1,127 @@
+package com.offbynull.peernetic.fsm;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import org.junit.Assert;
+import org.junit.Test;
+
+public final class BasicFiniteStateMachineRouterTest {
+
+    @Test
+    public void routesByKeyAndTypeTest() {
+        FiniteStateMachineRouter<Object> router = new FiniteStateMachineRouter<>(BasicFiniteStateMachineRouterTest::keyOf);
+        Child child1 = new Child("1");
+        Child child2 = new Child("2");
+        FiniteStateMachine<Object> fsm1 = new FiniteStateMachine<>(child1, Child.STATE, Object.class);
+        FiniteStateMachine<Object> fsm2 = new FiniteStateMachine<>(child2, Child.STATE, Object.class);
+        fsm1.addKeyInterest("a");
+        fsm1.addTypeInterest(Integer.class);
+        router.addChild(fsm1); // interests added before joining get indexed too
+        router.addChild(fsm2);
+        fsm2.addKeyInterest("b");
+        fsm2.addTypeInterest(Integer.class);
+
+        Assert.assertEquals(1, router.route(Instant.now(), new Keyed("a"), null));
+        Assert.assertEquals(1, router.route(Instant.now(), new Keyed("b"), null));
+        Assert.assertEquals(0, router.route(Instant.now(), new Keyed("c"), null));
+        Assert.assertEquals(2, router.route(Instant.now(), 5, null));
+        Assert.assertEquals(0, router.route(Instant.now(), 5L, null)); // exact class only
+
+        Assert.assertEquals(Arrays.asList("1-a", "1-5"), child1.output);
+        Assert.assertEquals(Arrays.asList("2-b", "2-5"), child2.output);
+
+        fsm1.removeTypeInterest(Integer.class);
+        router.removeChild(fsm2);
+        Assert.assertEquals(0, router.route(Instant.now(), 6, null));
+        Assert.assertEquals(0, router.route(Instant.now(), new Keyed("b"), null));
+        Assert.assertEquals(Collections.singleton(fsm1), router.getChildren());
+    }
+
+    @Test
+    public void nestedRouterBubblesInterestsUpTest() {
+        FiniteStateMachineRouter<Object> router = new FiniteStateMachineRouter<>(BasicFiniteStateMachineRouterTest::keyOf);
+        Parent parent = new Parent();
+        FiniteStateMachine<Object> parentFsm = new FiniteStateMachine<>(parent, Parent.STATE, Object.class);
+        router.addChild(parentFsm);
+
+        parent.router = new FiniteStateMachineRouter<>(parentFsm);
+        Child child = new Child("c");
+        FiniteStateMachine<Object> childFsm = new FiniteStateMachine<>(child, Child.STATE, Object.class);
+        parent.router.addChild(childFsm);
+        childFsm.addKeyInterest("x");
+
+        Assert.assertEquals(1, router.route(Instant.now(), new Keyed("x"), null));
+        Assert.assertEquals(Arrays.asList("c-x"), child.output);
+
+        parent.router.removeChild(childFsm);
+        Assert.assertEquals(0, router.route(Instant.now(), new Keyed("x"), null));
+    }
+
+    @Test
+    public void interestsAreCountedTest() {
+        FiniteStateMachineRouter<Object> router = new FiniteStateMachineRouter<>(BasicFiniteStateMachineRouterTest::keyOf);
+        Child child = new Child("1");
+        FiniteStateMachine<Object> fsm = new FiniteStateMachine<>(child, Child.STATE, Object.class);
+        router.addChild(fsm);
+
+        fsm.addKeyInterest("a");
+        fsm.addKeyInterest("a");
+        fsm.removeKeyInterest("a");
+        Assert.assertEquals(1, router.route(Instant.now(), new Keyed("a"), null));
+        fsm.removeKeyInterest("a");
+        Assert.assertEquals(0, router.route(Instant.now(), new Keyed("a"), null));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void keyClaimedTwiceTest() {
+        FiniteStateMachineRouter<Object> router = new FiniteStateMachineRouter<>(BasicFiniteStateMachineRouterTest::keyOf);
+        FiniteStateMachine<Object> fsm1 = new FiniteStateMachine<>(new Child("1"), Child.STATE, Object.class);
+        FiniteStateMachine<Object> fsm2 = new FiniteStateMachine<>(new Child("2"), Child.STATE, Object.class);
+        router.addChild(fsm1);
+        router.addChild(fsm2);
+        fsm1.addKeyInterest("a");
+        fsm2.addKeyInterest("a");
+    }
+
+    private static Object keyOf(Object message) {
+        return message instanceof Keyed ? ((Keyed) message).key : null;
+    }
+
+    private static final class Keyed {
+        private final String key;
+
+        public Keyed(String key) {
+            this.key = key;
+        }
+    }
+
+    public static final class Child {
+        public static final String STATE = "state";
+
+        private final String name;
+        private final List<String> output = new ArrayList<>();
+
+        public Child(String name) {
+            this.name = name;
+        }
+
+        @StateHandler(STATE)
+        public void handle(String state, FiniteStateMachine fsm, Instant instant, Object message, Object param) {
+            output.add(name + "-" + (message instanceof Keyed ? ((Keyed) message).key : message));
+        }
+    }
+
+    public static final class Parent {
+        public static final String STATE = "state";
+
+        private FiniteStateMachineRouter<Object> router;
+
+        @StateHandler(STATE)
+        public void handle(String state, FiniteStateMachine fsm, Instant instant, Object message, Object param) {
+            router.route(instant, message, param);
+        }
+    }
+}
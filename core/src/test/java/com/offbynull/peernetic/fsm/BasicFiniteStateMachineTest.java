@@ -50,6 +50,176 @@ public final class BasicFiniteStateMachineTest {
                 simple.getOutput());
     }
     
+    @Test
+    public void publicAndStaticHandlersTest() {
+        Public object = new Public();
+        FiniteStateMachine<Object> stateMachine = new FiniteStateMachine<>(object, Public.STATE, Object.class);
+
+        stateMachine.process(Instant.now(), 1, "p");
+        stateMachine.process(Instant.now(), -1, "p");
+        stateMachine.process(Instant.now(), "x", "p");
+        stateMachine.setState(Public.OTHER_STATE);
+        stateMachine.process(Instant.now(), "y", "p");
+
+        Assert.assertEquals(Arrays.asList("1-p", "x-static", "S->O", "y-p"), Public.OUTPUT);
+    }
+
+    @Test
+    public void hierarchyDispatchTest() {
+        Public object = new Public();
+        FiniteStateMachine<Object> stateMachine = new FiniteStateMachine<>(object, Public.OTHER_STATE, Object.class);
+
+        for (int i = 0; i < 2; i++) { // second pass goes through the cached dispatch
+            stateMachine.setState(Public.HIERARCHY_STATE);
+            stateMachine.process(Instant.now(), 5L, "a");
+            stateMachine.process(Instant.now(), 5, "b");
+            stateMachine.process(Instant.now(), new StringBuilder("c"), "c"); // no handler
+            stateMachine.setState(Public.OTHER_STATE);
+            stateMachine.process(Instant.now(), 5L, "d");
+        }
+
+        Assert.assertEquals(Arrays.asList("5-number", "5-integer", "5-d", "5-number", "5-integer", "5-d"), Public.OUTPUT);
+    }
+
+    @Test
+    public void sharedMetadataTest() {
+        FiniteStateMachineMetadata metadata = FiniteStateMachineMetadata.get(Public.class, Object.class);
+        Assert.assertSame(metadata, FiniteStateMachineMetadata.get(Public.class, Object.class));
+
+        // dispatch resolved through one fsm is picked up by the next
+        new FiniteStateMachine<>(new Public(), Public.STATE, Object.class).process(Instant.now(), 1, "a");
+        FiniteStateMachineMetadata.Dispatch dispatch = metadata.getDispatch(metadata.getStateId(Public.STATE), Integer.class);
+        new FiniteStateMachine<>(new Public(), Public.STATE, Object.class).process(Instant.now(), 2, "b");
+        Assert.assertSame(dispatch, metadata.getDispatch(metadata.getStateId(Public.STATE), Integer.class));
+        Assert.assertEquals(Arrays.asList("2-b"), Public.OUTPUT);
+    }
+
+    @Test
+    public void stateIdTest() {
+        FiniteStateMachine<Object> stateMachine = new FiniteStateMachine<>(new Public(), Public.STATE, Object.class);
+        FiniteStateMachine<Object> otherStateMachine = new FiniteStateMachine<>(new Public(), Public.OTHER_STATE, Object.class);
+
+        int stateId = stateMachine.getStateId(Public.STATE);
+        int otherStateId = stateMachine.getStateId(Public.OTHER_STATE);
+        int undeclaredStateId = stateMachine.getStateId("undeclared");
+        Assert.assertEquals(stateId, stateMachine.getStateId());
+        Assert.assertEquals(otherStateId, otherStateMachine.getStateId());
+        Assert.assertEquals(undeclaredStateId, stateMachine.getStateId("undeclared"));
+        Assert.assertNotEquals(stateId, otherStateId);
+        Assert.assertNotEquals(otherStateId, undeclaredStateId);
+
+        stateMachine.setState(otherStateId); // transition handler still fires when switching by id
+        Assert.assertEquals(Public.OTHER_STATE, stateMachine.getState());
+        Assert.assertEquals(Arrays.asList("S->O"), Public.OUTPUT);
+
+        stateMachine.setState("undeclared"); // no handlers for this state, so nothing gets dispatched
+        stateMachine.process(Instant.now(), "x", "p");
+        Assert.assertEquals(undeclaredStateId, stateMachine.getStateId());
+        Assert.assertEquals(Arrays.asList("S->O"), Public.OUTPUT);
+    }
+
+    @Test
+    public void undeclaredStatesStayOutOfSharedMetadataTest() {
+        FiniteStateMachineMetadata metadata = FiniteStateMachineMetadata.get(Public.class, Object.class);
+        int declaredStateCount = metadata.getDeclaredStateCount();
+
+        for (int i = 0; i < 100; i++) {
+            FiniteStateMachine<Object> stateMachine = new FiniteStateMachine<>(new Public(), "undeclared" + i, Object.class);
+            Assert.assertEquals(declaredStateCount, stateMachine.getStateId()); // numbered by this fsm alone
+            stateMachine.setState("other undeclared" + i);
+            Assert.assertEquals(declaredStateCount + 1, stateMachine.getStateId());
+        }
+
+        Assert.assertEquals(declaredStateCount, metadata.getDeclaredStateCount());
+        Assert.assertEquals(-1, metadata.getStateId("undeclared0"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void unknownStateIdTest() {
+        new FiniteStateMachine<>(new Public(), Public.STATE, Object.class).setState(Integer.MAX_VALUE);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void badHandlerFailsEveryConstructionTest() {
+        try {
+            new FiniteStateMachine<>(new BadHandler(), "S", Object.class);
+            Assert.fail();
+        } catch (IllegalArgumentException iae) {
+            // expected, not cached so next attempt fails too
+        }
+        new FiniteStateMachine<>(new BadHandler(), "S", Object.class);
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void handlerExceptionTest() {
+        Public object = new Public();
+        FiniteStateMachine<Object> stateMachine = new FiniteStateMachine<>(object, Public.STATE, Object.class);
+        stateMachine.process(Instant.now(), 1L, null);
+    }
+
+    private static final class BadHandler {
+        @StateHandler("S")
+        public void handle(String state, Instant instant) {
+            // wrong arguments
+        }
+    }
+
+    public static final class Public {
+        public static final String STATE = "S";
+        public static final String OTHER_STATE = "O";
+        public static final String HIERARCHY_STATE = "H";
+        public static final List<String> OUTPUT = new ArrayList<>();
+
+        public Public() {
+            OUTPUT.clear();
+        }
+
+        @FilterHandler(STATE)
+        public boolean filterIntegers(String state, FiniteStateMachine fsm, Instant instant, Integer message, Object param) {
+            return message >= 0;
+        }
+
+        @FilterHandler(OTHER_STATE)
+        public Boolean filterBoxed(String state, FiniteStateMachine fsm, Instant instant, Object message, Object param) {
+            return null; // null means carry on
+        }
+
+        @StateHandler(STATE)
+        public void handleInteger(String state, FiniteStateMachine fsm, Instant instant, Integer message, Object param) {
+            OUTPUT.add(message + "-" + param);
+        }
+
+        @StateHandler(STATE)
+        public static void handleString(String state, FiniteStateMachine fsm, Instant instant, String message, Object param) {
+            OUTPUT.add(message + "-static");
+        }
+
+        @StateHandler(STATE)
+        public void handleLong(String state, FiniteStateMachine fsm, Instant instant, Long message, Object param) {
+            throw new UnsupportedOperationException();
+        }
+
+        @StateHandler(OTHER_STATE)
+        public void handleOther(String state, FiniteStateMachine fsm, Instant instant, Object message, Object param) {
+            OUTPUT.add(message + "-" + param);
+        }
+
+        @StateHandler(HIERARCHY_STATE)
+        public void handleNumber(String state, FiniteStateMachine fsm, Instant instant, Number message, Object param) {
+            OUTPUT.add(message + "-number");
+        }
+
+        @StateHandler(HIERARCHY_STATE)
+        public void handleHierarchyInteger(String state, FiniteStateMachine fsm, Instant instant, Integer message, Object param) {
+            OUTPUT.add(message + "-integer");
+        }
+
+        @TransitionHandler(@Transition(from = STATE, to = OTHER_STATE))
+        public void handleTransition(String fromState, String toState, FiniteStateMachine fsm) {
+            OUTPUT.add(fromState + "->" + toState);
+        }
+    }
+
     private static final class Simple {
         public static final String INITIAL_STATE = "INITIAL";
         public static final String MANUAL_STATE = "A";
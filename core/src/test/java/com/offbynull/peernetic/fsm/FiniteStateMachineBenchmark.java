@@ -0,0 +1,149 @@
+package com.offbynull.peernetic.fsm;
+
+import java.lang.reflect.Method;
+import java.time.Instant;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+// Per-message dispatch cost of FiniteStateMachine. Run from the core directory with
+//   mvn test-compile exec:exec -Dexec.classpathScope=test -Dexec.executable=java
+//       -Dexec.args="-cp %classpath com.offbynull.peernetic.fsm.FiniteStateMachineBenchmark"
+// reflective is how the filter + handler pair used to be called (Method.invoke, boxed filter result), compiled calls the same pair through
+// the invokers built by HandlerInvokers, and process is the full FiniteStateMachine.process path (lookup + filter + handler). processDeep
+// is the full path for a message whose handler is registered a few levels up its class hierarchy. construct is the cost of creating a new
+// FiniteStateMachine for an already seen class.
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@State(Scope.Thread)
+public class FiniteStateMachineBenchmark {
+
+    private static final String STATE = "STATE";
+    private static final String DEEP_STATE = "DEEP_STATE";
+
+    private Target target;
+    private FiniteStateMachine<Object> fsm;
+    private FiniteStateMachine<Object> deepFsm;
+    private Leaf leaf;
+    private Instant instant;
+    private Integer message;
+
+    private Method filterMethod;
+    private Method handlerMethod;
+    private FilterHandlerInvoker filterInvoker;
+    private StateHandlerInvoker handlerInvoker;
+
+    @Setup
+    public void setUp() throws Exception {
+        target = new Target();
+        fsm = new FiniteStateMachine<>(target, STATE, Object.class);
+        deepFsm = new FiniteStateMachine<>(target, DEEP_STATE, Object.class);
+        leaf = new Leaf();
+        instant = Instant.now();
+        message = 42;
+
+        filterMethod = Target.class.getMethod("filter", String.class, FiniteStateMachine.class, Instant.class, Integer.class,
+                Object.class);
+        handlerMethod = Target.class.getMethod("handle", String.class, FiniteStateMachine.class, Instant.class, Integer.class,
+                Object.class);
+        filterInvoker = HandlerInvokers.filterHandler(filterMethod);
+        handlerInvoker = HandlerInvokers.stateHandler(handlerMethod);
+    }
+
+    @Benchmark
+    public long reflective() throws Exception {
+        Boolean continueProcessing = (Boolean) filterMethod.invoke(target, STATE, fsm, instant, message, null);
+        if (continueProcessing != null && continueProcessing) {
+            handlerMethod.invoke(target, STATE, fsm, instant, message, null);
+        }
+        return target.total;
+    }
+
+    @Benchmark
+    public long compiled() throws Throwable {
+        if (filterInvoker.invoke(target, STATE, fsm, instant, message, null)) {
+            handlerInvoker.invoke(target, STATE, fsm, instant, message, null);
+        }
+        return target.total;
+    }
+
+    @Benchmark
+    public long process() {
+        fsm.process(instant, message, null);
+        return target.total;
+    }
+
+    @Benchmark
+    public Object construct() {
+        return new FiniteStateMachine<>(target, STATE, Object.class);
+    }
+
+    @Benchmark
+    public long processDeep() {
+        deepFsm.process(instant, leaf, null);
+        return target.total;
+    }
+
+    public interface Marker {
+    }
+
+    public static class Base implements Marker {
+    }
+
+    public static class Middle extends Base implements Comparable<Middle> {
+        @Override
+        public int compareTo(Middle o) {
+            return 0;
+        }
+    }
+
+    public static final class Leaf extends Middle {
+    }
+
+    public static final class Target {
+        private long total;
+
+        @FilterHandler(STATE)
+        public boolean filter(String state, FiniteStateMachine fsm, Instant instant, Integer message, Object param) {
+            return message >= 0;
+        }
+
+        @StateHandler(STATE)
+        public void handle(String state, FiniteStateMachine fsm, Instant instant, Integer message, Object param) {
+            total += message;
+        }
+
+        @FilterHandler(DEEP_STATE)
+        public void filterDeep(String state, FiniteStateMachine fsm, Instant instant, Object message, Object param) {
+            total++;
+        }
+
+        @StateHandler(DEEP_STATE)
+        public void handleDeep(String state, FiniteStateMachine fsm, Instant instant, Base message, Object param) {
+            total++;
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        Options options = new OptionsBuilder()
+                .include(FiniteStateMachineBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .build();
+        new Runner(options).run();
+    }
+}
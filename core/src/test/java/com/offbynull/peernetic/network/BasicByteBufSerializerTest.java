@@ -0,0 +1,59 @@
+package com.offbynull.peernetic.network;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.PooledByteBufAllocator;
+import io.netty.buffer.Unpooled;
+import java.util.Arrays;
+import org.junit.Assert;
+import org.junit.Test;
+
+public final class BasicByteBufSerializerTest {
+
+    @Test
+    public void xstreamDirectBufferRoundTripTest() {
+        XStreamSerializer serializer = new XStreamSerializer();
+        ByteBuf buf = PooledByteBufAllocator.DEFAULT.directBuffer();
+        try {
+            buf.writeByte(0xFF); // junk in front, serializer should only touch what it reads/writes
+            buf.readByte();
+            serializer.serialize(Arrays.asList("a", 1), buf);
+            Assert.assertArrayEquals(serializer.serialize(Arrays.asList("a", 1)), toArray(buf));
+
+            Assert.assertEquals(Arrays.asList("a", 1), serializer.deserialize(buf));
+            Assert.assertEquals(0, buf.readableBytes());
+        } finally {
+            buf.release();
+        }
+    }
+
+    @Test
+    public void byteArraySerializerAdapterTest() {
+        Serializer serializer = new Serializer() {
+            @Override
+            public byte[] serialize(Object obj) {
+                return ((String) obj).getBytes();
+            }
+
+            @Override
+            public Object deserialize(byte[] data) {
+                return new String(data);
+            }
+        };
+
+        ByteBuf direct = Unpooled.directBuffer();
+        serializer.serialize("direct", direct);
+        Assert.assertEquals("direct", serializer.deserialize(direct));
+        Assert.assertEquals(0, direct.readableBytes());
+        direct.release();
+
+        ByteBuf slice = Unpooled.wrappedBuffer("xxsliced".getBytes()).skipBytes(2);
+        Assert.assertEquals("sliced", serializer.deserialize(slice));
+        Assert.assertEquals("whole", serializer.deserialize(Unpooled.wrappedBuffer("whole".getBytes())));
+    }
+
+    private static byte[] toArray(ByteBuf buf) {
+        byte[] data = new byte[buf.readableBytes()];
+        buf.getBytes(buf.readerIndex(), data);
+        return data;
+    }
+}
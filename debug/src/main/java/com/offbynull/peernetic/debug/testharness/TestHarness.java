@@ -1,6 +1,7 @@
 package com.offbynull.peernetic.debug.testharness;
 
 import com.offbynull.peernetic.actor.Actor;
+import com.offbynull.peernetic.actor.Cancellable;
 import com.offbynull.peernetic.actor.Endpoint;
 import com.offbynull.peernetic.actor.EndpointDirectory;
 import com.offbynull.peernetic.actor.EndpointIdentifier;
@@ -82,10 +83,12 @@ public final class TestHarness<A> {
     }
 
     public boolean hasMore() {
+        discardCancelledEvents();
         return !events.isEmpty();
     }
     
     public Instant process() {
+        discardCancelledEvents();
         Event event = events.poll();
         Validate.isTrue(event != null, "No events left to process");
 
@@ -130,6 +133,7 @@ public final class TestHarness<A> {
             }
         } else if (event instanceof TestHarness.ScheduledMessageEvent) {
             ScheduledMessageEvent scheduledMessageEvent = (ScheduledMessageEvent) event;
+            scheduledMessageEvent.done = true;
             
             Object message = scheduledMessageEvent.getMessage();
             Endpoint source = scheduledMessageEvent.getSource();
@@ -213,6 +217,14 @@ public final class TestHarness<A> {
         return lastWhen;
     }
 
+    private void discardCancelledEvents() {
+        // cancelled scheduled messages are left in the queue (so cancelling is O(1)) and thrown out once they reach the front
+        Event event;
+        while ((event = events.peek()) instanceof TestHarness.ScheduledMessageEvent && ((ScheduledMessageEvent) event).done) {
+            events.poll();
+        }
+    }
+
     public Endpoint getEndpoint(A name) {
         Validate.notNull(name);
         
@@ -234,8 +246,8 @@ public final class TestHarness<A> {
         return endpointIdentifier;
     }
 
-    public void scheduleFromNull(Duration duration, A id, Object message) {
-        endpointScheduler.scheduleMessage(duration, NullEndpoint.INSTANCE, new InternalEndpoint(id), message);
+    public Cancellable scheduleFromNull(Duration duration, A id, Object message) {
+        return endpointScheduler.scheduleMessage(duration, NullEndpoint.INSTANCE, new InternalEndpoint(id), message);
     }
     
     private final class InternalEndpoint implements Endpoint {
@@ -378,11 +390,12 @@ public final class TestHarness<A> {
         }
     }
 
-    private final class ScheduledMessageEvent extends Event {
+    private final class ScheduledMessageEvent extends Event implements Cancellable {
 
         private final Endpoint source;
         private final Endpoint destination;
         private final Object message;
+        private boolean done;
 
         public ScheduledMessageEvent(Endpoint source, Endpoint destination, Object message, Instant when) {
             super(when);
@@ -403,6 +416,15 @@ public final class TestHarness<A> {
             return message;
         }
 
+        @Override
+        public boolean cancel() {
+            if (done) {
+                return false;
+            }
+            done = true;
+            return true;
+        }
+
     }
     
     private final class JoinEvent extends Event {
@@ -500,10 +522,12 @@ public final class TestHarness<A> {
     private final class InternalEndpointScheduler implements EndpointScheduler {
 
         @Override
-        public void scheduleMessage(Duration delay, Endpoint source, Endpoint destination, Object message) {
+        public Cancellable scheduleMessage(Duration delay, Endpoint source, Endpoint destination, Object message) {
             Validate.isTrue(!delay.isNegative(), "Negative duration not allowed");
             
-            events.add(new ScheduledMessageEvent(source, destination, message, lastWhen.plus(delay)));
+            ScheduledMessageEvent event = new ScheduledMessageEvent(source, destination, message, lastWhen.plus(delay));
+            events.add(event);
+            return event;
         }
 
         @Override
@@ -3,6 +3,7 @@ package com.offbynull.peernetic.debug.testharness;
 
 
 import com.offbynull.peernetic.actor.Actor;
+import com.offbynull.peernetic.actor.Cancellable;
 import com.offbynull.peernetic.actor.Endpoint;
 import com.offbynull.peernetic.actor.EndpointDirectory;
 import com.offbynull.peernetic.actor.NullEndpoint;
@@ -181,4 +182,24 @@ public final class BasicTestHarnessTest {
         }
         
     }
+
+    @Test
+    public void cancelScheduledMessageTest() throws Throwable {
+        TestHarness<String> harness = new TestHarness<>();
+        
+        Actor actor = Mockito.mock(Actor.class);
+        harness.addActor("actor", actor, Duration.ZERO, Instant.ofEpochMilli(0L));
+        harness.process();
+        
+        harness.scheduleFromNull(Duration.ofSeconds(1L), "actor", 1);
+        Cancellable cancellable = harness.scheduleFromNull(Duration.ofSeconds(2L), "actor", 2);
+        Assert.assertTrue(cancellable.cancel());
+        Assert.assertFalse(cancellable.cancel());
+        
+        Assert.assertTrue(harness.hasMore());
+        harness.process();
+        Assert.assertFalse(harness.hasMore());
+        Mockito.verify(actor).onStep(any(Instant.class), eq(NullEndpoint.INSTANCE), eq(1));
+        Mockito.verify(actor, Mockito.never()).onStep(any(Instant.class), eq(NullEndpoint.INSTANCE), eq(2));
+    }
 }
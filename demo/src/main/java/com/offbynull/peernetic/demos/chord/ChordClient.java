@@ -38,6 +38,7 @@ import com.offbynull.peernetic.demos.chord.messages.internal.Start;
 import com.offbynull.peernetic.demos.unstructured.messages.internal.Timer;
 import com.offbynull.peernetic.fsm.FilterHandler;
 import com.offbynull.peernetic.fsm.FiniteStateMachine;
+import com.offbynull.peernetic.fsm.FiniteStateMachineRouter;
 import com.offbynull.peernetic.fsm.StateHandler;
 import java.time.Duration;
 import java.time.Instant;
@@ -78,15 +79,21 @@ public final class ChordClient<A> {
 
     private InitFingerTable<A> initFingerTable;
     private FiniteStateMachine<Endpoint> initFingerTableFsm;
+    private int initFingerTableDoneStateId;
 
     private Stabilize<A> stabilize;
     private FiniteStateMachine<Endpoint> stabilizeFsm;
+    private int stabilizeDoneStateId;
 
     private FixFinger<A> fixFinger;
     private FiniteStateMachine<Endpoint> fixFingerFsm;
+    private int fixFingerDoneStateId;
 
     private CheckPredecessor<A> checkPredecessor;
     private FiniteStateMachine<Endpoint> checkPredecessorFsm;
+    private int checkPredecessorDoneStateId;
+
+    private FiniteStateMachineRouter<Endpoint> router; // maintenance fsms only get the responses/timers they're waiting on
 
     public ChordClient(ChordActiveListener<Id> activeListener, ChordLinkListener<Id> linkListener, ChordUnlinkListener<Id> unlinkListener) {
         Validate.notNull(activeListener);
@@ -109,6 +116,7 @@ public final class ChordClient<A> {
         nonceAccessor = new ByteArrayNonceAccessor();
         incomingRequestManager = new IncomingRequestManager<>(selfEndpoint, nonceAccessor);
         outgoingRequestManager = new OutgoingRequestManager<>(selfEndpoint, nonceGenerator, nonceAccessor, endpointDirectory);
+        router = new FiniteStateMachineRouter<>(this::extractNonce);
 
         chordState = new ChordState<>(new InternalPointer(selfId));
 
@@ -116,6 +124,7 @@ public final class ChordClient<A> {
             initFingerTable = new InitFingerTable<>(selfId, bootstrapAddress, endpointIdentifier, endpointScheduler,
                     selfEndpoint, outgoingRequestManager);
             initFingerTableFsm = new FiniteStateMachine(initFingerTable, InitFingerTable.INITIAL_STATE, Endpoint.class);
+            initFingerTableDoneStateId = initFingerTableFsm.getStateId(InitFingerTable.DONE_STATE);
             initFingerTableFsm.process(instant, new Object(), srcEndpoint);
 
             fsm.setState(INITIAL_POPULATE_FINGERS_STATE);
@@ -131,7 +140,7 @@ public final class ChordClient<A> {
     public void handleInitialize(String state, FiniteStateMachine fsm, Instant instant, Object message, Endpoint srcEndpoint) {
         initFingerTableFsm.process(instant, message, srcEndpoint);
 
-        if (initFingerTableFsm.getState().equals(InitFingerTable.DONE_STATE)) {
+        if (initFingerTableFsm.getStateId() == initFingerTableDoneStateId) {
             FingerTable<A> fingerTable = initFingerTable.getFingerTable();
             Pointer successor = fingerTable.get(0);
 
@@ -149,6 +158,8 @@ public final class ChordClient<A> {
 
             stabilize = new Stabilize<>(selfId, (ExternalPointer<A>) successor, endpointScheduler, selfEndpoint, outgoingRequestManager);
             stabilizeFsm = new FiniteStateMachine<>(stabilize, Stabilize.INITIAL_STATE, Endpoint.class);
+            stabilizeDoneStateId = stabilizeFsm.getStateId(Stabilize.DONE_STATE);
+            router.addChild(stabilizeFsm);
             stabilizeFsm.process(instant, new Object(), srcEndpoint);
             fsm.setState(INITIAL_STABILIZE_STATE);
         }
@@ -156,9 +167,9 @@ public final class ChordClient<A> {
 
     @StateHandler(INITIAL_STABILIZE_STATE)
     public void handleStabilizing(String state, FiniteStateMachine fsm, Instant instant, Object message, Endpoint srcEndpoint) {
-        stabilizeFsm.process(instant, message, srcEndpoint);
+        router.route(instant, message, srcEndpoint);
 
-        if (stabilizeFsm.getState().equals(Stabilize.DONE_STATE)) {
+        if (stabilizeFsm.getStateId() == stabilizeDoneStateId) {
             activeListener.active(selfId, Mode.JOIN);
             
             Pointer successor = stabilize.getNewSuccessor();
@@ -168,6 +179,7 @@ public final class ChordClient<A> {
                 notifyStateChange();
             }
 
+            router.removeChild(stabilizeFsm);
             stabilizeFsm = null; // dont' want to call process again in call below
             startOrCheckMaintenance(instant, message, srcEndpoint);
 
@@ -274,10 +286,9 @@ public final class ChordClient<A> {
     }
 
     private void startOrCheckMaintenance(Instant instant, Object message, Endpoint srcEndpoint) {
-        if (stabilizeFsm != null) {
-            stabilizeFsm.process(instant, message, srcEndpoint);
-        }
-        if (stabilizeFsm == null || stabilizeFsm.getState().equals(Stabilize.DONE_STATE)) {
+        router.route(instant, message, srcEndpoint);
+
+        if (stabilizeFsm == null || stabilizeFsm.getStateId() == stabilizeDoneStateId) {
             Pointer successor;
             if (stabilizeFsm != null) {
                 successor = stabilize.getNewSuccessor();
@@ -295,15 +306,17 @@ public final class ChordClient<A> {
             if (successor instanceof ExternalPointer) {
                 stabilize = new Stabilize<>(selfId, (ExternalPointer<A>) successor, endpointScheduler, selfEndpoint,
                         outgoingRequestManager);
+                if (stabilizeFsm != null) {
+                    router.removeChild(stabilizeFsm);
+                }
                 stabilizeFsm = new FiniteStateMachine<>(stabilize, Stabilize.INITIAL_STATE, Endpoint.class);
+                stabilizeDoneStateId = stabilizeFsm.getStateId(Stabilize.DONE_STATE);
+                router.addChild(stabilizeFsm);
                 stabilizeFsm.process(instant, new Object(), srcEndpoint);
             }
         }
 
-        if (fixFingerFsm != null) {
-            fixFingerFsm.process(instant, message, srcEndpoint);
-        }
-        if (fixFingerFsm == null || fixFingerFsm.getState().equals(FixFinger.DONE_STATE)) {
+        if (fixFingerFsm == null || fixFingerFsm.getStateId() == fixFingerDoneStateId) {
             if (fixFinger != null) {
                 int idx = fixFinger.getIndex();
                 Pointer pointer = fixFinger.getNewFinger();
@@ -326,14 +339,16 @@ public final class ChordClient<A> {
 
             fixFinger = new FixFinger<>(selfId, chordState.getFingerTable(), endpointIdentifier, endpointScheduler, selfEndpoint,
                      outgoingRequestManager);
+            if (fixFingerFsm != null) {
+                router.removeChild(fixFingerFsm);
+            }
             fixFingerFsm = new FiniteStateMachine<>(fixFinger, FixFinger.INITIAL_STATE, Endpoint.class);
+            fixFingerDoneStateId = fixFingerFsm.getStateId(FixFinger.DONE_STATE);
+            router.addChild(fixFingerFsm);
             fixFingerFsm.process(instant, new Object(), srcEndpoint);
         }
 
-        if (checkPredecessorFsm != null) {
-            checkPredecessorFsm.process(instant, message, srcEndpoint);
-        }
-        if (checkPredecessorFsm == null || checkPredecessorFsm.getState().equals(CheckPredecessor.DONE_STATE)) {
+        if (checkPredecessorFsm == null || checkPredecessorFsm.getStateId() == checkPredecessorDoneStateId) {
             if (checkPredecessor != null) {
                 // if predecessor is unresponsive, and the predecessor hasn't changed from when we started the check predecessor task
                 if (checkPredecessor.isPredecessorUnresponsive()
@@ -345,11 +360,28 @@ public final class ChordClient<A> {
 
             checkPredecessor = new CheckPredecessor<>(selfId, (ExternalPointer<A>) chordState.getPredecessor(), endpointScheduler,
                     selfEndpoint, outgoingRequestManager);
+            if (checkPredecessorFsm != null) {
+                router.removeChild(checkPredecessorFsm);
+            }
             checkPredecessorFsm = new FiniteStateMachine<>(checkPredecessor, CheckPredecessor.INITIAL_STATE, Endpoint.class);
+            checkPredecessorDoneStateId = checkPredecessorFsm.getStateId(CheckPredecessor.DONE_STATE);
+            router.addChild(checkPredecessorFsm);
             checkPredecessorFsm.process(instant, new Object(), srcEndpoint);
         }
     }
     
+    private Object extractNonce(Object message) {
+        // responses are routed to whichever fsm sent out the request
+        if (!(message instanceof Response)) {
+            return null;
+        }
+        try {
+            return nonceAccessor.get(message);
+        } catch (RuntimeException re) {
+            return null;
+        }
+    }
+
     private Set<Pointer> lastNotifiedPointers = new HashSet<>();
     private void notifyStateChange() {
         Set<Pointer> newPointers = new HashSet<>(Arrays.<Pointer>asList(
@@ -2,6 +2,10 @@ package com.offbynull.peernetic.demos.chord.fsms;
 
 import com.offbynull.peernetic.actor.Endpoint;
 import com.offbynull.peernetic.actor.EndpointScheduler;
+import com.offbynull.peernetic.actor.CoalescingKey;
+import com.offbynull.peernetic.actor.Idempotent;
+import com.offbynull.peernetic.actor.MessagePriority;
+import com.offbynull.peernetic.actor.Priority;
 import com.offbynull.peernetic.common.message.ByteArrayNonce;
 import com.offbynull.peernetic.common.identification.Id;
 import com.offbynull.peernetic.common.message.Nonce;
@@ -31,6 +35,8 @@ public final class CheckPredecessor<A> {
     
     private final ExternalPointer<A> existingPredecessor;
     private Id newPredecessorId;
+    private final TimerSlot timer = new TimerSlot();
+    private final NonceSlot pendingNonce = new NonceSlot();
 
     public CheckPredecessor(Id selfId, ExternalPointer<A> predecessor,  EndpointScheduler endpointScheduler, Endpoint selfEndpoint,
             OutgoingRequestManager<A, byte[]> outgoingRequestManager) {
@@ -56,8 +62,10 @@ public final class CheckPredecessor<A> {
         
         Nonce<byte[]> nonce = outgoingRequestManager.sendRequestAndTrack(instant, new GetIdRequest(), existingPredecessor.getAddress());
         nonceManager.addNonce(instant, Duration.ofSeconds(30L), nonce, null);
+        pendingNonce.set(fsm, nonce);
+        fsm.addTypeInterest(TimerTrigger.class);
         Duration duration = outgoingRequestManager.process(instant);
-        endpointScheduler.scheduleMessage(duration, selfEndpoint, selfEndpoint, new TimerTrigger());
+        timer.set(endpointScheduler.scheduleMessage(duration, selfEndpoint, selfEndpoint, new TimerTrigger()));
         fsm.setState(AWAIT_GET_ID);
     }
 
@@ -76,7 +84,9 @@ public final class CheckPredecessor<A> {
         }
 
         newPredecessorId = new Id(response.getId(), selfId.getLimitAsByteArray());
-        fsm.setState(DONE_STATE);
+        // predecessor answered, the timer only existed to retry the get id request
+        pendingNonce.clear(fsm);
+        timer.finish(fsm, DONE_STATE);
     }
 
     @StateHandler(AWAIT_GET_ID)
@@ -88,10 +98,11 @@ public final class CheckPredecessor<A> {
         
         Duration duration = outgoingRequestManager.process(instant);
         if (outgoingRequestManager.getPending() == 0) {
-            fsm.setState(DONE_STATE);
+            pendingNonce.clear(fsm);
+            timer.finish(fsm, DONE_STATE);
             return;
         }
-        endpointScheduler.scheduleMessage(duration, srcEndpoint, srcEndpoint, message);
+        timer.set(endpointScheduler.scheduleMessage(duration, srcEndpoint, srcEndpoint, message));
     }
 
     public ExternalPointer<A> getExistingPredecessor() {
@@ -102,7 +113,9 @@ public final class CheckPredecessor<A> {
         return existingPredecessor == null || newPredecessorId == null || !newPredecessorId.equals(existingPredecessor.getId());
     }
 
-    public final class TimerTrigger {
+    @MessagePriority(Priority.HIGH)
+    @Idempotent
+    public final class TimerTrigger implements CoalescingKey {
         private TimerTrigger() {
             // does nothing, prevents outside instantiation
         }
@@ -110,5 +123,10 @@ public final class CheckPredecessor<A> {
         public boolean checkParent(Object obj) {
             return CheckPredecessor.this == obj;
         }
+
+        @Override
+        public Object getCoalescingKey() {
+            return CheckPredecessor.this; // only triggers for the same fsm replace each other
+        }
     }
 }
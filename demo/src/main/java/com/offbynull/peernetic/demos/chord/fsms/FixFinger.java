@@ -14,6 +14,7 @@ import com.offbynull.peernetic.demos.chord.core.InternalPointer;
 import com.offbynull.peernetic.demos.chord.core.Pointer;
 import com.offbynull.peernetic.fsm.FilterHandler;
 import com.offbynull.peernetic.fsm.FiniteStateMachine;
+import com.offbynull.peernetic.fsm.FiniteStateMachineRouter;
 import com.offbynull.peernetic.fsm.StateHandler;
 import java.time.Instant;
 import java.util.Random;
@@ -35,6 +36,8 @@ public final class FixFinger<A> {
             
     private RouteToFinger<A> routeToFinger;
     private FiniteStateMachine routeToFingerFsm;
+    private int routeToFingerDoneStateId;
+    private FiniteStateMachineRouter<Endpoint> router;
     
     private final int idx;
     
@@ -74,6 +77,9 @@ public final class FixFinger<A> {
             routeToFinger = new RouteToFinger<>(fromNode, selfId, expectedId, endpointIdentifier, endpointScheduler,
                     selfEndpoint, outgoingRequestManager);
             routeToFingerFsm = new FiniteStateMachine(routeToFinger, RouteToFinger.INITIAL_STATE, Endpoint.class);
+            routeToFingerDoneStateId = routeToFingerFsm.getStateId(RouteToFinger.DONE_STATE);
+            router = new FiniteStateMachineRouter<>(fsm); // passes route to finger's interests up to whoever routes to us
+            router.addChild(routeToFingerFsm);
             routeToFingerFsm.process(instant, new Object(), NullEndpoint.INSTANCE);
             
             fsm.setState(AWAIT_ROUTE_TO_FINGER);
@@ -91,9 +97,9 @@ public final class FixFinger<A> {
     @StateHandler(AWAIT_ROUTE_TO_FINGER)
     public void handleRouteToFingerResponse(String state, FiniteStateMachine fsm, Instant instant, Object message, Endpoint srcEndpoint)
             throws Exception {
-        routeToFingerFsm.process(instant, message, srcEndpoint);
+        router.route(instant, message, srcEndpoint);
         
-        if (routeToFingerFsm.getState().equals(RouteToFinger.DONE_STATE)) {
+        if (routeToFingerFsm.getStateId() == routeToFingerDoneStateId) {
             ExternalPointer<A> foundFinger = routeToFinger.getResult();
             newFinger = foundFinger;
             fsm.setState(DONE_STATE);
@@ -1,9 +1,14 @@
 package com.offbynull.peernetic.demos.chord.fsms;
 
+import com.offbynull.peernetic.actor.Cancellable;
 import com.offbynull.peernetic.actor.Endpoint;
 import com.offbynull.peernetic.actor.EndpointIdentifier;
 import com.offbynull.peernetic.actor.EndpointScheduler;
+import com.offbynull.peernetic.actor.CoalescingKey;
+import com.offbynull.peernetic.actor.Idempotent;
+import com.offbynull.peernetic.actor.MessagePriority;
 import com.offbynull.peernetic.actor.NullEndpoint;
+import com.offbynull.peernetic.actor.Priority;
 import com.offbynull.peernetic.common.ProcessableUtils;
 import com.offbynull.peernetic.common.identification.Id;
 import com.offbynull.peernetic.common.transmission.OutgoingRequestManager;
@@ -40,9 +45,11 @@ public final class InitFingerTable<A> {
 
     private A initialAddress;
     private Id initialId;
+    private Cancellable timer;
     
     private RouteToFinger<A> routeToFinger;
     private FiniteStateMachine routeToFingerFsm;
+    private int routeToFingerDoneStateId;
 
     private final int maxIdx;
     private int idx;
@@ -75,7 +82,7 @@ public final class InitFingerTable<A> {
 
     @StateHandler(INITIAL_STATE)
     public void handleStart(String state, FiniteStateMachine fsm, Instant instant, Object unused, Endpoint srcEndpoint) throws Exception {
-        endpointScheduler.scheduleMessage(TIMER_DURATION, selfEndpoint, selfEndpoint, new TimerTrigger());
+        timer = endpointScheduler.scheduleMessage(TIMER_DURATION, selfEndpoint, selfEndpoint, new TimerTrigger());
         outgoingRequestManager.sendRequestAndTrack(instant, new GetIdRequest(), initialAddress);
         fsm.setState(AWAIT_GET_ID_RESPONSE);
     }
@@ -84,6 +91,8 @@ public final class InitFingerTable<A> {
     public void handleGetIdResponse(String state, FiniteStateMachine fsm, Instant instant, GetIdResponse response,
             Endpoint srcEndpoint) throws Exception {
         initialId = new Id(response.getId(), maxIdx);
+        timer.cancel(); // timer only drives the get id request, routeToFinger schedules its own
+        timer = null;
         
         resetRouteToFinger(instant);
         fsm.setState(AWAIT_ROUTE_TO_FINGER);
@@ -94,7 +103,7 @@ public final class InitFingerTable<A> {
             throws Exception {
         routeToFingerFsm.process(instant, message, srcEndpoint);
         
-        if (routeToFingerFsm.getState().equals(RouteToFinger.DONE_STATE)) {
+        if (routeToFingerFsm.getStateId() == routeToFingerDoneStateId) {
             ExternalPointer<A> foundFinger = routeToFinger.getResult();
             fingerTable.replace(foundFinger);
 
@@ -114,6 +123,7 @@ public final class InitFingerTable<A> {
         routeToFinger = new RouteToFinger<>(fromNode, selfId, findId, endpointIdentifier, endpointScheduler, selfEndpoint,
                 outgoingRequestManager);
         routeToFingerFsm = new FiniteStateMachine(routeToFinger, RouteToFinger.INITIAL_STATE, Endpoint.class);
+        routeToFingerDoneStateId = routeToFingerFsm.getStateId(RouteToFinger.DONE_STATE);
         routeToFingerFsm.process(instant, new Object(), NullEndpoint.INSTANCE);
     }
 
@@ -126,14 +136,16 @@ public final class InitFingerTable<A> {
         Duration ormDuration = outgoingRequestManager.process(instant);
         
         Duration nextDuration = ProcessableUtils.scheduleEarliestDuration(ormDuration, TIMER_DURATION);
-        endpointScheduler.scheduleMessage(nextDuration, selfEndpoint, selfEndpoint, new TimerTrigger());
+        timer = endpointScheduler.scheduleMessage(nextDuration, selfEndpoint, selfEndpoint, new TimerTrigger());
     }
 
     public FingerTable<A> getFingerTable() {
         return fingerTable;
     }
     
-    public final class TimerTrigger {
+    @MessagePriority(Priority.HIGH)
+    @Idempotent
+    public final class TimerTrigger implements CoalescingKey {
         private TimerTrigger() {
             // does nothing, prevents outside instantiation
         }
@@ -141,5 +153,10 @@ public final class InitFingerTable<A> {
         public boolean checkParent(Object obj) {
             return InitFingerTable.this == obj;
         }
+
+        @Override
+        public Object getCoalescingKey() {
+            return InitFingerTable.this; // only triggers for the same fsm replace each other
+        }
     }
 }
@@ -0,0 +1,22 @@
+package com.offbynull.peernetic.demos.chord.fsms;
+
+import com.offbynull.peernetic.fsm.FiniteStateMachine;
+
+// holds the nonce an fsm is currently waiting on a response for, so the key interest for it gets dropped once it's replaced by a new
+// request or the fsm finishes instead of piling up in whatever router the fsm is a child of
+final class NonceSlot {
+    private Object nonce;
+
+    public void set(FiniteStateMachine fsm, Object nonce) {
+        clear(fsm);
+        fsm.addKeyInterest(nonce);
+        this.nonce = nonce;
+    }
+
+    public void clear(FiniteStateMachine fsm) {
+        if (nonce != null) {
+            fsm.removeKeyInterest(nonce);
+            nonce = null;
+        }
+    }
+}
@@ -3,6 +3,10 @@ package com.offbynull.peernetic.demos.chord.fsms;
 import com.offbynull.peernetic.actor.Endpoint;
 import com.offbynull.peernetic.actor.EndpointIdentifier;
 import com.offbynull.peernetic.actor.EndpointScheduler;
+import com.offbynull.peernetic.actor.CoalescingKey;
+import com.offbynull.peernetic.actor.Idempotent;
+import com.offbynull.peernetic.actor.MessagePriority;
+import com.offbynull.peernetic.actor.Priority;
 import com.offbynull.peernetic.common.message.ByteArrayNonce;
 import com.offbynull.peernetic.common.ProcessableUtils;
 import com.offbynull.peernetic.common.identification.Id;
@@ -42,6 +46,8 @@ public final class RouteToFinger<A> {
     private A foundAddress;
     
     private ExternalPointer<A> currentNode;
+    private final TimerSlot timer = new TimerSlot();
+    private final NonceSlot pendingNonce = new NonceSlot();
 
     private final OutgoingRequestManager<A, byte[]> outgoingRequestManager;
     private final EndpointIdentifier<A> endpointIdentifier;
@@ -72,14 +78,17 @@ public final class RouteToFinger<A> {
     public void handleStart(String state, FiniteStateMachine fsm, Instant instant, Object unused, Endpoint srcEndpoint)
             throws Exception {
         byte[] idData = findId.getValueAsByteArray();
-        outgoingRequestManager.sendRequestAndTrack(instant, new GetClosestPrecedingFingerRequest(idData), currentNode.getAddress());
+        Nonce<byte[]> nonce = outgoingRequestManager.sendRequestAndTrack(instant, new GetClosestPrecedingFingerRequest(idData),
+                currentNode.getAddress());
+        pendingNonce.set(fsm, nonce);
+        fsm.addTypeInterest(TimerTrigger.class);
         fsm.setState(AWAIT_PREDECESSOR_RESPONSE_STATE);
         
         if (selfId.getValueAsBigInteger().equals(BigInteger.ONE)) {
             System.out.println("Starting find of " + findId);
         }
         
-        endpointScheduler.scheduleMessage(TIMER_DURATION, selfEndpoint, selfEndpoint, new TimerTrigger());
+        timer.set(endpointScheduler.scheduleMessage(TIMER_DURATION, selfEndpoint, selfEndpoint, new TimerTrigger()));
     }
 
     @FilterHandler({AWAIT_PREDECESSOR_RESPONSE_STATE, AWAIT_SUCCESSOR_RESPONSE_STATE, AWAIT_ID_RESPONSE_STATE})
@@ -105,6 +114,7 @@ public final class RouteToFinger<A> {
             // findId's predecessor is the queried node
             Nonce<byte[]> nonce = outgoingRequestManager.sendRequestAndTrack(instant, new GetSuccessorRequest(), currentNode.getAddress());
             nonceManager.addNonce(instant, Duration.ofSeconds(30L), nonce, null);
+            pendingNonce.set(fsm, nonce);
             fsm.setState(AWAIT_SUCCESSOR_RESPONSE_STATE);
         } else if (!id.equals(currentNode.getId()) && address != null) {
             ExternalPointer<A> nextNode = new ExternalPointer<>(id, address);
@@ -114,16 +124,19 @@ public final class RouteToFinger<A> {
                 Nonce<byte[]> nonce = outgoingRequestManager.sendRequestAndTrack(instant, new GetSuccessorRequest(),
                         currentNode.getAddress());
                 nonceManager.addNonce(instant, Duration.ofSeconds(30L), nonce, null);
+                pendingNonce.set(fsm, nonce);
                 fsm.setState(AWAIT_SUCCESSOR_RESPONSE_STATE);
             } else {
-                outgoingRequestManager.sendRequestAndTrack(instant, new GetClosestPrecedingFingerRequest(findId.getValueAsByteArray()),
-                        currentNode.getAddress());
+                Nonce<byte[]> nonce = outgoingRequestManager.sendRequestAndTrack(instant,
+                        new GetClosestPrecedingFingerRequest(findId.getValueAsByteArray()), currentNode.getAddress());
+                pendingNonce.set(fsm, nonce);
                 fsm.setState(AWAIT_PREDECESSOR_RESPONSE_STATE);
             }
         } else {
             // we have a node id that isn't current node and no address, node gave us bad response so try again
-            outgoingRequestManager.sendRequestAndTrack(instant, new GetClosestPrecedingFingerRequest(findId.getValueAsByteArray()),
-                    currentNode.getAddress());
+            Nonce<byte[]> nonce = outgoingRequestManager.sendRequestAndTrack(instant,
+                    new GetClosestPrecedingFingerRequest(findId.getValueAsByteArray()), currentNode.getAddress());
+            pendingNonce.set(fsm, nonce);
             fsm.setState(AWAIT_PREDECESSOR_RESPONSE_STATE);
         }
     }
@@ -154,6 +167,7 @@ public final class RouteToFinger<A> {
 
         Nonce<byte[]> newNonce = outgoingRequestManager.sendRequestAndTrack(instant, new GetIdRequest(), address);
         nonceManager.addNonce(instant, Duration.ofSeconds(30L), newNonce, null);
+        pendingNonce.set(fsm, newNonce);
         nonceManager.removeNonce(nonce);
         fsm.setState(AWAIT_ID_RESPONSE_STATE);
     }
@@ -174,7 +188,9 @@ public final class RouteToFinger<A> {
             System.out.println("Found " + findId + " at " + foundId);
         }
 
-        fsm.setState(DONE_STATE);
+        // found the finger, the timer only existed to retry requests along the route
+        pendingNonce.clear(fsm);
+        timer.finish(fsm, DONE_STATE);
     }
 
     @StateHandler({AWAIT_PREDECESSOR_RESPONSE_STATE, AWAIT_SUCCESSOR_RESPONSE_STATE, AWAIT_ID_RESPONSE_STATE})
@@ -186,12 +202,13 @@ public final class RouteToFinger<A> {
         Duration ormDuration = outgoingRequestManager.process(instant);
         
         if (outgoingRequestManager.getPending() == 0) {
-            fsm.setState(DONE_STATE);
+            pendingNonce.clear(fsm);
+            timer.finish(fsm, DONE_STATE);
             return;
         }
         
         Duration nextDuration = ProcessableUtils.scheduleEarliestDuration(ormDuration, TIMER_DURATION);
-        endpointScheduler.scheduleMessage(nextDuration, selfEndpoint, selfEndpoint, new TimerTrigger());
+        timer.set(endpointScheduler.scheduleMessage(nextDuration, selfEndpoint, selfEndpoint, new TimerTrigger()));
     }
 
     public ExternalPointer<A> getResult() {
@@ -202,7 +219,9 @@ public final class RouteToFinger<A> {
         return new ExternalPointer<>(foundId, foundAddress);
     }
 
-    public final class TimerTrigger {
+    @MessagePriority(Priority.HIGH)
+    @Idempotent
+    public final class TimerTrigger implements CoalescingKey {
         private TimerTrigger() {
             // does nothing, prevents outside instantiation
         }
@@ -210,5 +229,10 @@ public final class RouteToFinger<A> {
         public boolean checkParent(Object obj) {
             return RouteToFinger.this == obj;
         }
+
+        @Override
+        public Object getCoalescingKey() {
+            return RouteToFinger.this; // only triggers for the same fsm replace each other
+        }
     }
 }
@@ -2,7 +2,12 @@ package com.offbynull.peernetic.demos.chord.fsms;
 
 import com.offbynull.peernetic.actor.Endpoint;
 import com.offbynull.peernetic.actor.EndpointScheduler;
+import com.offbynull.peernetic.actor.CoalescingKey;
+import com.offbynull.peernetic.actor.Idempotent;
+import com.offbynull.peernetic.actor.MessagePriority;
+import com.offbynull.peernetic.actor.Priority;
 import com.offbynull.peernetic.common.identification.Id;
+import com.offbynull.peernetic.common.message.Nonce;
 import com.offbynull.peernetic.common.transmission.OutgoingRequestManager;
 import com.offbynull.peernetic.common.message.Response;
 import com.offbynull.peernetic.demos.chord.core.ExternalPointer;
@@ -32,6 +37,8 @@ public final class Stabilize<A> {
     private final Endpoint selfEndpoint;
     
     private Pointer newSuccessor;
+    private final TimerSlot timer = new TimerSlot();
+    private final NonceSlot pendingNonce = new NonceSlot();
 
     public Stabilize(Id selfId, Pointer successor, EndpointScheduler endpointScheduler, Endpoint selfEndpoint,
             OutgoingRequestManager<A, byte[]> outgoingRequestManager) {
@@ -57,10 +64,12 @@ public final class Stabilize<A> {
         }
         
         A successorAddress = ((ExternalPointer<A>) existingSuccessor).getAddress();
-        outgoingRequestManager.sendRequestAndTrack(instant, new GetPredecessorRequest(), successorAddress);
+        Nonce<byte[]> nonce = outgoingRequestManager.sendRequestAndTrack(instant, new GetPredecessorRequest(), successorAddress);
+        pendingNonce.set(fsm, nonce);
+        fsm.addTypeInterest(TimerTrigger.class);
         fsm.setState(AWAIT_PREDECESSOR_RESPONSE_STATE);
         
-        endpointScheduler.scheduleMessage(TIMER_DURATION, selfEndpoint, selfEndpoint, new TimerTrigger());
+        timer.set(endpointScheduler.scheduleMessage(TIMER_DURATION, selfEndpoint, selfEndpoint, new TimerTrigger()));
     }
 
     @FilterHandler({AWAIT_PREDECESSOR_RESPONSE_STATE})
@@ -94,7 +103,9 @@ public final class Stabilize<A> {
                     ((ExternalPointer<A>)newSuccessor).getAddress());
         }
         
-        fsm.setState(DONE_STATE);
+        // notify is fire-and-forget, nothing is left for the timer to retry
+        pendingNonce.clear(fsm);
+        timer.finish(fsm, DONE_STATE);
     }
 
     @StateHandler(AWAIT_PREDECESSOR_RESPONSE_STATE)
@@ -106,17 +117,20 @@ public final class Stabilize<A> {
         
         Duration duration = outgoingRequestManager.process(instant);
         if (outgoingRequestManager.getPending() == 0) {
-            fsm.setState(DONE_STATE);
+            pendingNonce.clear(fsm);
+            timer.finish(fsm, DONE_STATE);
             return;
         }
-        endpointScheduler.scheduleMessage(duration, srcEndpoint, srcEndpoint, message);
+        timer.set(endpointScheduler.scheduleMessage(duration, srcEndpoint, srcEndpoint, message));
     }
     
     public Pointer getNewSuccessor() {
         return newSuccessor;
     }
 
-    public final class TimerTrigger {
+    @MessagePriority(Priority.HIGH)
+    @Idempotent
+    public final class TimerTrigger implements CoalescingKey {
         private TimerTrigger() {
             // does nothing, prevents outside instantiation
         }
@@ -124,5 +138,10 @@ public final class Stabilize<A> {
         public boolean checkParent(Object obj) {
             return Stabilize.this == obj;
         }
+
+        @Override
+        public Object getCoalescingKey() {
+            return Stabilize.this; // only triggers for the same fsm replace each other
+        }
     }
 }
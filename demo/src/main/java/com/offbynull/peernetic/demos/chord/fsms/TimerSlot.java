@@ -0,0 +1,22 @@
+package com.offbynull.peernetic.demos.chord.fsms;
+
+import com.offbynull.peernetic.actor.Cancellable;
+import com.offbynull.peernetic.fsm.FiniteStateMachine;
+
+// holds the TimerTrigger an fsm currently has outstanding, so it can be pulled from the scheduler when the fsm finishes instead of
+// lingering there and being delivered just to be ignored
+final class TimerSlot {
+    private Cancellable timer;
+
+    public void set(Cancellable timer) {
+        this.timer = timer;
+    }
+
+    public void finish(FiniteStateMachine fsm, String doneState) {
+        if (timer != null) {
+            timer.cancel();
+            timer = null;
+        }
+        fsm.setState(doneState);
+    }
+}
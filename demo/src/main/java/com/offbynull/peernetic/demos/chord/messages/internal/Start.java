@@ -4,9 +4,12 @@ import com.offbynull.peernetic.actor.Endpoint;
 import com.offbynull.peernetic.actor.EndpointDirectory;
 import com.offbynull.peernetic.actor.EndpointIdentifier;
 import com.offbynull.peernetic.actor.EndpointScheduler;
+import com.offbynull.peernetic.actor.MessagePriority;
+import com.offbynull.peernetic.actor.Priority;
 import com.offbynull.peernetic.common.identification.Id;
 import org.apache.commons.lang3.Validate;
 
+@MessagePriority(Priority.HIGH)
 public final class Start<A> {
 
     private final EndpointDirectory<A> endpointDirectory;
@@ -1,5 +1,11 @@
 package com.offbynull.peernetic.demos.chord.messages.internal;
 
+import com.offbynull.peernetic.actor.Idempotent;
+import com.offbynull.peernetic.actor.MessagePriority;
+import com.offbynull.peernetic.actor.Priority;
+
+@MessagePriority(Priority.HIGH)
+@Idempotent
 public final class Timer {
     
 }
@@ -4,13 +4,15 @@ import com.offbynull.peernetic.FsmActor;
 import com.offbynull.peernetic.GatewayEndpointDirectory;
 import com.offbynull.peernetic.GatewayEndpointIdentifier;
 import com.offbynull.peernetic.GatewayInputAdapter;
-import com.offbynull.peernetic.actor.ActorRunnable;
+import com.offbynull.peernetic.GatewayOutputEndpointCache;
+import com.offbynull.peernetic.actor.ActorRunnableGroup;
 import com.offbynull.peernetic.actor.Endpoint;
 import com.offbynull.peernetic.actor.EndpointDirectory;
 import com.offbynull.peernetic.actor.EndpointIdentifier;
 import com.offbynull.peernetic.actor.EndpointScheduler;
 import com.offbynull.peernetic.actor.NullEndpoint;
-import com.offbynull.peernetic.actor.SimpleEndpointScheduler;
+import com.offbynull.peernetic.actor.CoalescingMailbox;
+import com.offbynull.peernetic.actor.PriorityLaneMailbox;
 import com.offbynull.peernetic.debug.localgateway.LocalGateway;
 import com.offbynull.peernetic.debug.localgateway.LocalGatewayHub;
 import com.offbynull.peernetic.debug.actornetwork.SimpleLine;
@@ -68,42 +70,47 @@ public final class Main {
             actors[i] = new FsmActor(unstructuredClient, UnstructuredClient.INITIAL_STATE);
         }
 
-        // Start actors all within the same thread
-        ActorRunnable actorRunnable = ActorRunnable.createAndStart(actors);
+        // Start actors spread across one thread per core, with timers and start messages getting ahead of queued up network traffic and
+        // stale timer ticks collapsing in to one
+        ActorRunnableGroup actorRunnableGroup = ActorRunnableGroup.createAndStart(Runtime.getRuntime().availableProcessors(),
+                () -> new CoalescingMailbox(new PriorityLaneMailbox()), actors);
 
         // UNCOMMENT THIS BLOCK to start each actor on the test network
-        EndpointScheduler endpointScheduler = new SimpleEndpointScheduler();
         LocalGatewayHub<Integer> gatewayHub = new LocalGatewayHub<>(
                 new SimpleLine<>(0L, Duration.ofMillis(500L), Duration.ofMillis(100L), 0.1, 0.9, 10),
                 new XStreamSerializer());
+        GatewayOutputEndpointCache<Integer> endpointCache = new GatewayOutputEndpointCache<>(); // same peer objects for reads and writes
         for (int i = 0; i < actors.length; i++) {
-            Endpoint endpoint = actorRunnable.getEndpoint(actors[i]);
+            Endpoint endpoint = actorRunnableGroup.getEndpoint(actors[i]);
+            EndpointScheduler endpointScheduler = actorRunnableGroup.getEndpointScheduler(actors[i]); // fires on actor thread
 
             int address = i;
-            GatewayListener<Integer> gatewayListener = new GatewayInputAdapter<>(endpoint);
+            GatewayListener<Integer> gatewayListener = new GatewayInputAdapter<>(endpoint, endpointCache);
             LocalGateway<Integer> gateway = new LocalGateway<>(address, gatewayHub, gatewayListener);
             
-            linkToGatewayAndStart(address, 0, endpoint, gateway, endpointScheduler);
+            linkToGatewayAndStart(address, 0, endpoint, gateway, endpointCache, endpointScheduler);
         }
 
         
         
 //        // UNCOMMENT THIS BLOCK TO start each actor on the real network
 //        EndpointScheduler endpointScheduler = new SimpleEndpointScheduler();
+//        GatewayOutputEndpointCache<InetSocketAddress> endpointCache = new GatewayOutputEndpointCache<>();
 //        for (int i = 0; i < actors.length; i++) {    
-//            Endpoint endpoint = actorRunnable.getEndpoint(actors[i]);
+//            Endpoint endpoint = actorRunnableGroup.getEndpoint(actors[i]);
 //            
 //            InetSocketAddress address = new InetSocketAddress(InetAddress.getLocalHost(), 10000 + i);
-//            GatewayListener<InetSocketAddress> gatewayListener = new GatewayInputAdapter<>(endpoint);
+//            GatewayListener<InetSocketAddress> gatewayListener = new GatewayInputAdapter<>(endpoint, endpointCache);
 //            UdpGateway gateway = new UdpGateway(address, gatewayListener, new XStreamSerializer());
 //            
-//            linkToGatewayAndStart(address, new InetSocketAddress(InetAddress.getLocalHost(), 10000), endpoint, gateway, endpointScheduler);
+//            linkToGatewayAndStart(address, new InetSocketAddress(InetAddress.getLocalHost(), 10000), endpoint, gateway, endpointCache,
+//                    endpointScheduler);
 //        }
     }
 
     private static <T> void linkToGatewayAndStart(T selfAddress, T joinAddress, Endpoint selfEndpoint, Gateway<T> gateway,
-            EndpointScheduler endpointScheduler) {
-        EndpointDirectory<T> endpointDirectory = new GatewayEndpointDirectory<>(gateway);
+            GatewayOutputEndpointCache<T> endpointCache, EndpointScheduler endpointScheduler) {
+        EndpointDirectory<T> endpointDirectory = new GatewayEndpointDirectory<>(gateway, endpointCache);
         EndpointIdentifier<T> endpointIdentifier = new GatewayEndpointIdentifier<>();
 
         Start<T> start = new Start<>(endpointDirectory, endpointIdentifier, endpointScheduler, Collections.singleton(joinAddress),
@@ -0,0 +1,489 @@
+package com.offbynull.peernetic.fsm.processor;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.AnnotationValue;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.NestingKind;
+import javax.lang.model.element.PackageElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.ArrayType;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.Elements;
+import javax.lang.model.util.Types;
+import javax.tools.Diagnostic;
+import javax.tools.JavaFileObject;
+
+// Generates a <Name>_FsmDispatch class (a FiniteStateMachineDispatch) for each class with @StateHandler/@FilterHandler/@TransitionHandler
+// methods. The generated class sits in the same package as the class it's for, registers the handler tables that FiniteStateMachine would
+// otherwise have to reflect out, and calls each handler directly through a switch on the handler's id.
+//
+// Handler signatures get the same checks FiniteStateMachine does at runtime, except they show up as compile errors here. The only thing
+// that can't be checked is the params argument, because the param type is only known once a FiniteStateMachine gets created.
+//
+// If the generated class wouldn't be able to call the handlers (e.g. the class or a handler is private, or a handler takes a type that
+// isn't visible from the package) nothing gets generated and FiniteStateMachine falls back to reflection for that class.
+//
+// Annotations are looked up by name, so this module doesn't depend on core and can go on the compile classpath of anything that does.
+@SupportedAnnotationTypes({
+    FiniteStateMachineProcessor.STATE_HANDLER,
+    FiniteStateMachineProcessor.FILTER_HANDLER,
+    FiniteStateMachineProcessor.TRANSITION_HANDLER
+})
+public final class FiniteStateMachineProcessor extends AbstractProcessor {
+
+    static final String FSM_PACKAGE = "com.offbynull.peernetic.fsm";
+    static final String STATE_HANDLER = FSM_PACKAGE + ".StateHandler";
+    static final String FILTER_HANDLER = FSM_PACKAGE + ".FilterHandler";
+    static final String TRANSITION_HANDLER = FSM_PACKAGE + ".TransitionHandler";
+    static final String GENERATED_SUFFIX = "_FsmDispatch";
+
+    private static final String FSM = FSM_PACKAGE + ".FiniteStateMachine";
+    private static final String FSM_DISPATCH = FSM_PACKAGE + ".FiniteStateMachineDispatch";
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+        Set<Element> annotatedMethods = new HashSet<>();
+        Set<TypeElement> annotatedTypes = new LinkedHashSet<>();
+        for (TypeElement annotation : annotations) {
+            for (Element element : roundEnv.getElementsAnnotatedWith(annotation)) {
+                annotatedMethods.add(element);
+                annotatedTypes.add((TypeElement) element.getEnclosingElement());
+            }
+        }
+
+        for (TypeElement type : annotatedTypes) {
+            // go through methods in declaration order so the generated ids don't jump around between builds
+            List<ExecutableElement> methods = new ArrayList<>();
+            for (Element element : type.getEnclosedElements()) {
+                if (annotatedMethods.contains(element)) {
+                    methods.add((ExecutableElement) element);
+                }
+            }
+            processType(type, methods);
+        }
+
+        return false;
+    }
+
+    private void processType(TypeElement type, List<ExecutableElement> methods) {
+        TypeModel model = new TypeModel(type);
+
+        boolean valid = true;
+        for (ExecutableElement method : methods) {
+            for (AnnotationMirror mirror : method.getAnnotationMirrors()) {
+                String annotationName = ((TypeElement) mirror.getAnnotationType().asElement()).getQualifiedName().toString();
+                switch (annotationName) {
+                    case STATE_HANDLER:
+                        valid &= readStateHandler(model, method, mirror, false);
+                        break;
+                    case FILTER_HANDLER:
+                        valid &= readStateHandler(model, method, mirror, true);
+                        break;
+                    case TRANSITION_HANDLER:
+                        valid &= readTransitionHandler(model, method, mirror);
+                        break;
+                    default:
+                        break;
+                }
+            }
+        }
+
+        if (!valid) {
+            return;
+        }
+
+        String reason = checkGeneratable(model, methods);
+        if (reason != null) {
+            processingEnv.getMessager().printMessage(Diagnostic.Kind.NOTE,
+                    "Not generating dispatch for " + type.getQualifiedName() + " (" + reason + "), it'll be reflected at runtime", type);
+            return;
+        }
+
+        generate(model);
+    }
+
+    private boolean readStateHandler(TypeModel model, ExecutableElement method, AnnotationMirror mirror, boolean filter) {
+        Types types = processingEnv.getTypeUtils();
+        String annotationName = filter ? "FilterHandler" : "StateHandler";
+
+        List<? extends VariableElement> params = method.getParameters();
+        TypeMirror returnType = method.getReturnType();
+        boolean validReturn = !filter
+                || returnType.getKind() == TypeKind.VOID
+                || returnType.getKind() == TypeKind.BOOLEAN
+                || isType(returnType, Boolean.class.getName());
+        if (!validReturn
+                || params.size() != 5
+                || !isType(params.get(0).asType(), String.class.getName()) // state
+                || !isType(params.get(1).asType(), FSM) // this
+                || !isType(params.get(2).asType(), "java.time.Instant")) { // time
+            error(method, "Method %s with %s has incorrect arguments", method.getSimpleName(), annotationName);
+            return false;
+        }
+
+        List<String> states = getStrings(mirror);
+        if (states.isEmpty()) {
+            error(method, "Need atleast 1 state listed for method %s", method.getSimpleName());
+            return false;
+        }
+
+        TypeMirror messageType = types.erasure(params.get(3).asType());
+        TypeMirror paramType = types.erasure(params.get(4).asType());
+        List<HandlerModel> handlers = filter ? model.filterHandlers : model.stateHandlers;
+        Set<String> keys = filter ? model.filterKeys : model.stateKeys;
+
+        HandlerModel handler = new HandlerModel(method, handlers.size(), messageType, paramType);
+        for (String state : states) {
+            if (!keys.add(state + '\0' + messageType)) {
+                error(method, "Duplicate %s found: %s", annotationName, method.getSimpleName());
+                return false;
+            }
+            handler.states.add(state);
+        }
+        handlers.add(handler);
+        return true;
+    }
+
+    private boolean readTransitionHandler(TypeModel model, ExecutableElement method, AnnotationMirror mirror) {
+        List<? extends VariableElement> params = method.getParameters();
+        if (params.size() != 3
+                || !isType(params.get(0).asType(), String.class.getName())
+                || !isType(params.get(1).asType(), String.class.getName())
+                || !isType(params.get(2).asType(), FSM)) {
+            error(method, "Method %s with %s has incorrect arguments", method.getSimpleName(), "TransitionHandler");
+            return false;
+        }
+
+        List<String[]> transitions = new ArrayList<>();
+        for (AnnotationValue value : getValues(mirror)) {
+            AnnotationMirror transition = (AnnotationMirror) value.getValue();
+            transitions.add(new String[] { getString(transition, "from"), getString(transition, "to") });
+        }
+        if (transitions.isEmpty()) {
+            error(method, "Need atleast 1 transition for method %s", method.getSimpleName());
+            return false;
+        }
+
+        HandlerModel handler = new HandlerModel(method, model.transitionHandlers.size(), null, null);
+        for (String[] transition : transitions) {
+            if (!model.transitionKeys.add(transition[0] + '\0' + transition[1])) {
+                error(method, "Duplicate %s found: %s", "TransitionHandler", method.getSimpleName());
+                return false;
+            }
+            handler.transitions.add(transition);
+        }
+        model.transitionHandlers.add(handler);
+        return true;
+    }
+
+    // returns null if the generated class will be able to call every handler, otherwise the reason it can't
+    private String checkGeneratable(TypeModel model, List<ExecutableElement> methods) {
+        TypeElement type = model.type;
+        if (type.getKind() != ElementKind.CLASS && type.getKind() != ElementKind.ENUM) {
+            return "not a class";
+        }
+        if (type.getModifiers().contains(Modifier.ABSTRACT)) {
+            return "abstract class, only the concrete class is ever looked at";
+        }
+        if (!isAccessible(type, model.packageElement)) {
+            return "class not accessible from its package";
+        }
+
+        for (ExecutableElement method : methods) {
+            if (method.getModifiers().contains(Modifier.PRIVATE)) {
+                return "private handler " + method.getSimpleName();
+            }
+        }
+
+        List<HandlerModel> handlers = new ArrayList<>();
+        handlers.addAll(model.stateHandlers);
+        handlers.addAll(model.filterHandlers);
+        for (HandlerModel handler : handlers) {
+            if (!isAccessible(handler.messageType, model.packageElement) || !isAccessible(handler.paramType, model.packageElement)) {
+                return "handler " + handler.method.getSimpleName() + " takes a type not accessible from the package";
+            }
+        }
+
+        return null;
+    }
+
+    private void generate(TypeModel model) {
+        Elements elements = processingEnv.getElementUtils();
+
+        String packageName = model.packageElement.getQualifiedName().toString();
+        String binaryName = elements.getBinaryName(model.type).toString();
+        String qualifiedName = binaryName.replace('$', '_') + GENERATED_SUFFIX;
+        String simpleName = packageName.isEmpty() ? qualifiedName : qualifiedName.substring(packageName.length() + 1);
+        String typeName = model.type.getQualifiedName().toString();
+
+        StringBuilder out = new StringBuilder();
+        if (!packageName.isEmpty()) {
+            out.append("package ").append(packageName).append(";\n\n");
+        }
+        out.append("// Generated by ").append(FiniteStateMachineProcessor.class.getName()).append(" from ").append(typeName)
+                .append(", do not edit\n");
+        out.append("@SuppressWarnings({\"unchecked\", \"rawtypes\"})\n");
+        out.append("public final class ").append(simpleName).append(" implements ").append(FSM_DISPATCH).append(" {\n\n");
+
+        out.append("    @Override\n");
+        out.append("    public Class<?> getTargetClass() {\n");
+        out.append("        return ").append(typeName).append(".class;\n");
+        out.append("    }\n\n");
+
+        out.append("    @Override\n");
+        out.append("    public void register(").append(FSM_DISPATCH).append(".Registry registry) {\n");
+        for (HandlerModel handler : model.stateHandlers) {
+            appendStateRegistrations(out, "stateHandler", typeName, handler);
+        }
+        for (HandlerModel handler : model.filterHandlers) {
+            appendStateRegistrations(out, "filterHandler", typeName, handler);
+        }
+        for (HandlerModel handler : model.transitionHandlers) {
+            for (String[] transition : handler.transitions) {
+                out.append("        registry.transitionHandler(").append(handler.id).append(", ")
+                        .append(literal(typeName + '.' + handler.method.getSimpleName())).append(", ")
+                        .append(literal(transition[0])).append(", ").append(literal(transition[1])).append(");\n");
+            }
+        }
+        out.append("    }\n\n");
+
+        String stateArgs = "Object object, String state, " + FSM + " fsm, java.time.Instant instant, Object message, Object params";
+        out.append("    @Override\n");
+        out.append("    public void invokeStateHandler(int id, ").append(stateArgs).append(") throws Throwable {\n");
+        out.append("        switch (id) {\n");
+        for (HandlerModel handler : model.stateHandlers) {
+            out.append("            case ").append(handler.id).append(":\n");
+            out.append("                ").append(stateCall(typeName, handler)).append(";\n");
+            out.append("                return;\n");
+        }
+        appendDefault(out);
+        out.append("    }\n\n");
+
+        out.append("    @Override\n");
+        out.append("    public boolean invokeFilterHandler(int id, ").append(stateArgs).append(") throws Throwable {\n");
+        out.append("        switch (id) {\n");
+        for (HandlerModel handler : model.filterHandlers) {
+            out.append("            case ").append(handler.id).append(":\n");
+            TypeMirror returnType = handler.method.getReturnType();
+            if (returnType.getKind() == TypeKind.VOID) {
+                out.append("                ").append(stateCall(typeName, handler)).append(";\n");
+                out.append("                return true;\n");
+            } else if (returnType.getKind() == TypeKind.BOOLEAN) {
+                out.append("                return ").append(stateCall(typeName, handler)).append(";\n");
+            } else { // Boolean, null means carry on
+                out.append("                return !Boolean.FALSE.equals(").append(stateCall(typeName, handler)).append(");\n");
+            }
+        }
+        appendDefault(out);
+        out.append("    }\n\n");
+
+        out.append("    @Override\n");
+        out.append("    public void invokeTransitionHandler(int id, Object object, String from, String to, ").append(FSM)
+                .append(" fsm) throws Throwable {\n");
+        out.append("        switch (id) {\n");
+        for (HandlerModel handler : model.transitionHandlers) {
+            out.append("            case ").append(handler.id).append(":\n");
+            out.append("                ").append(receiver(typeName, handler)).append('.').append(handler.method.getSimpleName())
+                    .append("(from, to, fsm);\n");
+            out.append("                return;\n");
+        }
+        appendDefault(out);
+        out.append("    }\n");
+        out.append("}\n");
+
+        try {
+            JavaFileObject file = processingEnv.getFiler().createSourceFile(qualifiedName, model.type);
+            try (Writer writer = file.openWriter()) {
+                writer.write(out.toString());
+            }
+        } catch (IOException ioe) {
+            error(model.type, "Unable to write %s: %s", qualifiedName, ioe);
+        }
+    }
+
+    private void appendStateRegistrations(StringBuilder out, String registryMethod, String typeName, HandlerModel handler) {
+        for (String state : handler.states) {
+            out.append("        registry.").append(registryMethod).append('(').append(handler.id).append(", ")
+                    .append(literal(typeName + '.' + handler.method.getSimpleName())).append(", ")
+                    .append(literal(state)).append(", ")
+                    .append(typeName(handler.messageType)).append(".class, ")
+                    .append(typeName(handler.paramType)).append(".class);\n");
+        }
+    }
+
+    private static void appendDefault(StringBuilder out) {
+        out.append("            default:\n");
+        out.append("                throw new IllegalArgumentException(\"Unknown handler \" + id);\n");
+        out.append("        }\n");
+    }
+
+    private String stateCall(String typeName, HandlerModel handler) {
+        return receiver(typeName, handler) + '.' + handler.method.getSimpleName() + "(state, fsm, instant, ("
+                + typeName(handler.messageType) + ") message, (" + typeName(handler.paramType) + ") params)";
+    }
+
+    private static String receiver(String typeName, HandlerModel handler) {
+        return handler.method.getModifiers().contains(Modifier.STATIC) ? typeName : "((" + typeName + ") object)";
+    }
+
+    // type has already been erased
+    private String typeName(TypeMirror type) {
+        switch (type.getKind()) {
+            case ARRAY:
+                return typeName(((ArrayType) type).getComponentType()) + "[]";
+            case DECLARED:
+                return ((TypeElement) ((DeclaredType) type).asElement()).getQualifiedName().toString();
+            default:
+                return type.toString(); // primitive
+        }
+    }
+
+    private boolean isType(TypeMirror type, String name) {
+        Types types = processingEnv.getTypeUtils();
+        TypeElement element = processingEnv.getElementUtils().getTypeElement(name);
+        return element != null && types.isSameType(types.erasure(type), types.erasure(element.asType()));
+    }
+
+    private boolean isAccessible(TypeMirror type, PackageElement packageElement) {
+        switch (type.getKind()) {
+            case ARRAY:
+                return isAccessible(((ArrayType) type).getComponentType(), packageElement);
+            case DECLARED:
+                return isAccessible((TypeElement) ((DeclaredType) type).asElement(), packageElement);
+            default:
+                return type.getKind().isPrimitive();
+        }
+    }
+
+    private boolean isAccessible(TypeElement type, PackageElement packageElement) {
+        boolean samePackage = processingEnv.getElementUtils().getPackageOf(type).equals(packageElement);
+        Element element = type;
+        while (element instanceof TypeElement) {
+            NestingKind nestingKind = ((TypeElement) element).getNestingKind();
+            if (nestingKind == NestingKind.LOCAL || nestingKind == NestingKind.ANONYMOUS) {
+                return false;
+            }
+            Set<Modifier> modifiers = element.getModifiers();
+            if (modifiers.contains(Modifier.PRIVATE) || !samePackage && !modifiers.contains(Modifier.PUBLIC)) {
+                return false;
+            }
+            element = element.getEnclosingElement();
+        }
+        return true;
+    }
+
+    private static List<? extends AnnotationValue> getValues(AnnotationMirror mirror) {
+        for (Map.Entry<? extends ExecutableElement, ? extends AnnotationValue> entry : mirror.getElementValues().entrySet()) {
+            if (entry.getKey().getSimpleName().contentEquals("value")) {
+                Object value = entry.getValue().getValue();
+                if (value instanceof List) {
+                    @SuppressWarnings("unchecked")
+                    List<? extends AnnotationValue> values = (List<? extends AnnotationValue>) value;
+                    return values;
+                }
+                List<AnnotationValue> single = new ArrayList<>();
+                single.add(entry.getValue());
+                return single;
+            }
+        }
+        return new ArrayList<>();
+    }
+
+    private static List<String> getStrings(AnnotationMirror mirror) {
+        List<String> ret = new ArrayList<>();
+        for (AnnotationValue value : getValues(mirror)) {
+            ret.add((String) value.getValue());
+        }
+        return ret;
+    }
+
+    private static String getString(AnnotationMirror mirror, String name) {
+        for (Map.Entry<? extends ExecutableElement, ? extends AnnotationValue> entry : mirror.getElementValues().entrySet()) {
+            if (entry.getKey().getSimpleName().contentEquals(name)) {
+                return (String) entry.getValue().getValue();
+            }
+        }
+        throw new IllegalStateException("Missing " + name); // javac won't let a required annotation element go missing
+    }
+
+    private static String literal(String value) {
+        StringBuilder sb = new StringBuilder("\"");
+        for (char ch : value.toCharArray()) {
+            switch (ch) {
+                case '"':
+                    sb.append("\\\"");
+                    break;
+                case '\\':
+                    sb.append("\\\\");
+                    break;
+                default:
+                    if (ch < 0x20 || ch > 0x7E) {
+                        sb.append(String.format("\\u%04x", (int) ch));
+                    } else {
+                        sb.append(ch);
+                    }
+                    break;
+            }
+        }
+        return sb.append('"').toString();
+    }
+
+    private void error(Element element, String format, Object... args) {
+        processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, String.format(format, args), element);
+    }
+
+    private final class TypeModel {
+        private final TypeElement type;
+        private final PackageElement packageElement;
+        private final List<HandlerModel> stateHandlers = new ArrayList<>();
+        private final List<HandlerModel> filterHandlers = new ArrayList<>();
+        private final List<HandlerModel> transitionHandlers = new ArrayList<>();
+        private final Set<String> stateKeys = new HashSet<>();
+        private final Set<String> filterKeys = new HashSet<>();
+        private final Set<String> transitionKeys = new HashSet<>();
+
+        TypeModel(TypeElement type) {
+            this.type = type;
+            this.packageElement = processingEnv.getElementUtils().getPackageOf(type);
+        }
+    }
+
+    private static final class HandlerModel {
+        private final ExecutableElement method;
+        private final int id;
+        private final TypeMirror messageType; // erased, null for transition handlers
+        private final TypeMirror paramType; // erased, null for transition handlers
+        private final List<String> states = new ArrayList<>();
+        private final List<String[]> transitions = new ArrayList<>();
+
+        HandlerModel(ExecutableElement method, int id, TypeMirror messageType, TypeMirror paramType) {
+            this.method = method;
+            this.id = id;
+            this.messageType = messageType;
+            this.paramType = paramType;
+        }
+    }
+}
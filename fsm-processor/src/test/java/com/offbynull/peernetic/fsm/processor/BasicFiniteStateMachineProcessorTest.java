@@ -0,0 +1,159 @@
+package com.offbynull.peernetic.fsm.processor;
+
+import com.offbynull.peernetic.fsm.FiniteStateMachine;
+import java.io.File;
+import java.net.URI;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import javax.tools.Diagnostic;
+import javax.tools.DiagnosticCollector;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileObject;
+import javax.tools.SimpleJavaFileObject;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.ToolProvider;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public final class BasicFiniteStateMachineProcessorTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void generatedDispatchTest() throws Throwable {
+        String source = ""
+                + "package test;\n"
+                + "import com.offbynull.peernetic.fsm.*;\n"
+                + "import java.time.Instant;\n"
+                + "import java.util.*;\n"
+                + "public final class Machine {\n"
+                + "    public final List<String> output = new ArrayList<>();\n"
+                + "    @FilterHandler(\"A\")\n"
+                + "    Boolean filter(String state, FiniteStateMachine fsm, Instant instant, Integer message, Object params) {\n"
+                + "        return message >= 0 ? null : false;\n"
+                + "    }\n"
+                + "    @StateHandler(\"A\")\n"
+                + "    void handleInteger(String state, FiniteStateMachine fsm, Instant instant, Integer message, Object params) {\n"
+                + "        output.add(message + \"-\" + params + \"-\" + new Throwable().getStackTrace()[1].getClassName());\n"
+                + "    }\n"
+                + "    @StateHandler({\"A\", \"B\"})\n"
+                + "    void handleNumber(String state, FiniteStateMachine fsm, Instant instant, Number message, Object params) {\n"
+                + "        output.add(state + \"-number\");\n"
+                + "    }\n"
+                + "    @TransitionHandler({@Transition(from = \"A\", to = \"B\")})\n"
+                + "    void transition(String from, String to, FiniteStateMachine fsm) {\n"
+                + "        output.add(from + \"->\" + to);\n"
+                + "    }\n"
+                + "}\n";
+        DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<>();
+        Assert.assertTrue(diagnostics.getDiagnostics().toString(), compile(diagnostics, "test.Machine", source));
+        Assert.assertTrue(new File(folder.getRoot(), "test/Machine_FsmDispatch.class").exists());
+
+        try (URLClassLoader classLoader = new URLClassLoader(new URL[] { folder.getRoot().toURI().toURL() },
+                getClass().getClassLoader())) {
+            Object machine = classLoader.loadClass("test.Machine").newInstance();
+            FiniteStateMachine<Object> fsm = new FiniteStateMachine<>(machine, "A", Object.class);
+            fsm.process(Instant.now(), 1, "p");
+            fsm.process(Instant.now(), -1, "p");
+            fsm.process(Instant.now(), 1L, "p");
+            fsm.setState("B");
+            fsm.process(Instant.now(), 2, "p");
+
+            Object output = machine.getClass().getField("output").get(machine); // List.equals() does the checking, no need to cast
+            Assert.assertEquals(Arrays.asList("1-p-test.Machine_FsmDispatch", "A-number", "A->B", "B-number"), output);
+        }
+    }
+
+    @Test
+    public void badSignatureFailsCompileTest() throws Throwable {
+        String source = ""
+                + "package test;\n"
+                + "import com.offbynull.peernetic.fsm.*;\n"
+                + "import java.time.Instant;\n"
+                + "public final class Bad {\n"
+                + "    @StateHandler(\"S\")\n"
+                + "    public void handle(String state, Instant instant) {\n"
+                + "    }\n"
+                + "}\n";
+        DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<>();
+        Assert.assertFalse(compile(diagnostics, "test.Bad", source));
+        Assert.assertTrue(diagnostics.getDiagnostics().stream().anyMatch(d -> d.getKind() == Diagnostic.Kind.ERROR
+                && d.getMessage(null).equals("Method handle with StateHandler has incorrect arguments")));
+    }
+
+    @Test
+    public void duplicateHandlerFailsCompileTest() throws Throwable {
+        String source = ""
+                + "package test;\n"
+                + "import com.offbynull.peernetic.fsm.*;\n"
+                + "import java.time.Instant;\n"
+                + "public final class Dupe {\n"
+                + "    @StateHandler(\"S\")\n"
+                + "    public void handle1(String state, FiniteStateMachine fsm, Instant instant, String message, Object params) {\n"
+                + "    }\n"
+                + "    @StateHandler(\"S\")\n"
+                + "    public void handle2(String state, FiniteStateMachine fsm, Instant instant, String message, Object params) {\n"
+                + "    }\n"
+                + "}\n";
+        DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<>();
+        Assert.assertFalse(compile(diagnostics, "test.Dupe", source));
+        Assert.assertTrue(diagnostics.getDiagnostics().stream().anyMatch(d -> d.getKind() == Diagnostic.Kind.ERROR
+                && d.getMessage(null).equals("Duplicate StateHandler found: handle2")));
+    }
+
+    @Test
+    public void inaccessibleClassFallsBackToReflectionTest() throws Throwable {
+        String source = ""
+                + "package test;\n"
+                + "import com.offbynull.peernetic.fsm.*;\n"
+                + "import java.time.Instant;\n"
+                + "public final class Outer {\n"
+                + "    private static final class Inner {\n"
+                + "        @StateHandler(\"S\")\n"
+                + "        public void handle(String state, FiniteStateMachine fsm, Instant instant, String message, Object params) {\n"
+                + "        }\n"
+                + "    }\n"
+                + "}\n";
+        DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<>();
+        Assert.assertTrue(diagnostics.getDiagnostics().toString(), compile(diagnostics, "test.Outer", source));
+        Assert.assertTrue(new File(folder.getRoot(), "test/Outer$Inner.class").exists());
+        Assert.assertFalse(new File(folder.getRoot(), "test/Outer_Inner_FsmDispatch.class").exists());
+    }
+
+    private boolean compile(DiagnosticCollector<JavaFileObject> diagnostics, String name, String source) throws Exception {
+        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        try (StandardJavaFileManager fileManager = compiler.getStandardFileManager(diagnostics, null, null)) {
+            File coreClasses = new File(FiniteStateMachine.class.getProtectionDomain().getCodeSource().getLocation().toURI());
+            List<String> options = Arrays.asList(
+                    "-classpath", coreClasses.getAbsolutePath(),
+                    "-d", folder.getRoot().getAbsolutePath(),
+                    "-s", folder.getRoot().getAbsolutePath());
+            JavaFileObject file = new SourceFile(name, source);
+            JavaCompiler.CompilationTask task = compiler.getTask(null, fileManager, diagnostics, options, null,
+                    Collections.singletonList(file));
+            task.setProcessors(Collections.singletonList(new FiniteStateMachineProcessor()));
+            return task.call();
+        }
+    }
+
+    private static final class SourceFile extends SimpleJavaFileObject {
+        private final String source;
+
+        public SourceFile(String name, String source) {
+            super(URI.create("string:///" + name.replace('.', '/') + Kind.SOURCE.extension), Kind.SOURCE);
+            this.source = source;
+        }
+
+        @Override
+        public CharSequence getCharContent(boolean ignoreEncodingErrors) {
+            return source;
+        }
+    }
+}